@@ -1,5 +1,9 @@
 package com.example.bankcards.config;
 
+import com.example.bankcards.service.card.CardStatusRegistry;
+import com.example.bankcards.service.user.UserCache;
+import com.example.bankcards.util.properties.CardProperties;
+import com.example.bankcards.util.properties.UserCacheProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -14,6 +18,8 @@ import org.springframework.data.redis.connection.RedisPassword;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -72,6 +78,20 @@ public class RedisConfig {
                 .build();
     }
 
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       UserCache userCache,
+                                                                       UserCacheProperties userCacheProperties,
+                                                                       CardStatusRegistry cardStatusRegistry,
+                                                                       CardProperties cardProperties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(userCache, new ChannelTopic(userCacheProperties.getEvictionChannel()));
+        container.addMessageListener(cardStatusRegistry,
+                new ChannelTopic(cardProperties.getStatus().getRefreshChannel()));
+        return container;
+    }
+
     @Bean
     public ObjectMapper objectMapper() {
         ObjectMapper mapper = new ObjectMapper();
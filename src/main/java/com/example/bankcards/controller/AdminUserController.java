@@ -2,6 +2,7 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.UserDTO;
 import com.example.bankcards.dto.UserUpdateDTO;
+import com.example.bankcards.dto.responce.SliceResponse;
 import com.example.bankcards.dto.responce.UserResponse;
 import com.example.bankcards.service.UserAdminService;
 import com.example.bankcards.util.mapper.UserMapper;
@@ -44,6 +45,15 @@ public class AdminUserController {
         return service.list(q, pageable).map(mapper::toResponse);
     }
 
+    @GetMapping("/scroll")
+    public SliceResponse<UserResponse> scroll(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+
+        return service.scroll(q, cursor, size).map(mapper::toResponse);
+    }
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public UserResponse create(@Valid @RequestBody UserDTO dto) {
@@ -1,17 +1,41 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferDTO;
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardImportFormat;
+import com.example.bankcards.dto.CardSort;
+import com.example.bankcards.dto.ExportFormat;
 import com.example.bankcards.dto.TransferDTO;
+import com.example.bankcards.dto.TransferDirection;
+import com.example.bankcards.dto.request.CardLookupRequest;
+import com.example.bankcards.dto.responce.BatchTransferResponse;
+import com.example.bankcards.dto.responce.CardBalanceResponse;
+import com.example.bankcards.dto.responce.CardImportResponse;
 import com.example.bankcards.dto.responce.CardResponse;
+import com.example.bankcards.dto.responce.CardRollupResponse;
+import com.example.bankcards.dto.responce.RollupRebuildResponse;
+import com.example.bankcards.dto.responce.SliceResponse;
+import com.example.bankcards.dto.responce.TransferHistoryResponse;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.service.CardImportService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.ExportService;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.RollupService;
+import com.example.bankcards.service.card.CardStatusRegistry;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -19,12 +43,17 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.security.Principal;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
 
 @RestController
 @Validated
@@ -33,7 +62,15 @@ import java.security.Principal;
 @Tag(name = "Cards", description = "Operations with cards")
 public class CardController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IMPORT_ID_HEADER = "Import-Id";
+
     private final CardService cardService;
+    private final IdempotencyService idempotencyService;
+    private final RollupService rollupService;
+    private final CardImportService cardImportService;
+    private final ExportService exportService;
+    private final CardStatusRegistry cardStatusRegistry;
 
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
@@ -42,6 +79,36 @@ public class CardController {
         return cardService.createCard(cardDTO);
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public CardImportResponse importCards(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                          @RequestHeader(value = IMPORT_ID_HEADER, required = false) String importId,
+                                          InputStream body) {
+        return cardImportService.importCards(body, CardImportFormat.fromContentType(contentType), importId);
+    }
+
+    @GetMapping("/import/{importId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public CardImportResponse getImport(@PathVariable String importId) {
+        return cardImportService.getImport(importId);
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportCards(@RequestParam(defaultValue = "NDJSON") ExportFormat format) {
+        return attachment("cards", format, out -> exportService.exportCards(out, format));
+    }
+
+    @GetMapping("/transfers/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportTransfers(@RequestParam(defaultValue = "NDJSON") ExportFormat format,
+                                                                 @RequestParam(required = false)
+                                                                 @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                 @RequestParam(required = false)
+                                                                 @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return attachment("transfers", format, out -> exportService.exportTransfers(out, format, from, to));
+    }
+
     @GetMapping
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public Page<CardResponse> read(
@@ -49,17 +116,83 @@ public class CardController {
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) String status,
             @RequestParam(required = false) String owner,
-            Principal principal) {
+            @AuthenticationPrincipal UserPrincipal principal) {
 
         Pageable pageable = PageRequest.of(page, size);
-        return cardService.getCards(status, owner, pageable, principal.getName());
+        return cardService.getCards(status, owner, pageable, principal);
+    }
+
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public SliceResponse<CardResponse> scroll(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "ID") CardSort sort,
+            @RequestParam(defaultValue = "ASC") Sort.Direction direction,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String owner,
+            @AuthenticationPrincipal UserPrincipal principal) {
+
+        return cardService.scrollCards(status, owner, sort, direction, cursor, size, principal);
     }
 
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public CardResponse getById(@PathVariable Long id,
-                                Principal principal) {
-        return cardService.getCardById(id, principal.getName());
+                                @AuthenticationPrincipal UserPrincipal principal) {
+        return cardService.getCardById(id, principal);
+    }
+
+    @PostMapping("/lookup")
+    @PreAuthorize("hasRole('ADMIN')")
+    public CardResponse lookup(@Valid @RequestBody CardLookupRequest request) {
+        return cardService.getCardByNumber(request.number());
+    }
+
+    @GetMapping("/{id}/balance")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public CardBalanceResponse getBalance(@PathVariable Long id,
+                                          @RequestParam(required = false)
+                                          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf,
+                                          @AuthenticationPrincipal UserPrincipal principal) {
+        return cardService.getBalanceAt(id, asOf, principal);
+    }
+
+    @GetMapping("/{id}/transfers")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public TransferHistoryResponse getTransfers(@PathVariable Long id,
+                                                @RequestParam(defaultValue = "ALL") TransferDirection direction,
+                                                @RequestParam(required = false)
+                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                @RequestParam(required = false)
+                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(defaultValue = "20") int size,
+                                                @AuthenticationPrincipal UserPrincipal principal) {
+        return cardService.getTransferHistory(id, direction, from, to, cursor, size, principal);
+    }
+
+    @GetMapping("/{id}/rollups")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public CardRollupResponse getRollups(@PathVariable Long id,
+                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                         @AuthenticationPrincipal UserPrincipal principal) {
+        return cardService.getRollups(id, from, to, principal);
+    }
+
+    @PostMapping("/rollups/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public RollupRebuildResponse rebuildRollups(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return rollupService.rebuild(from, to);
+    }
+
+    @PostMapping("/statuses/refresh")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<String> refreshStatuses() {
+        return cardStatusRegistry.refreshEverywhere();
     }
 
     @PatchMapping("/{id}")
@@ -69,6 +202,13 @@ public class CardController {
         return cardService.updateCard(id, cardDTO);
     }
 
+    @PatchMapping("/{id}/balance-shards")
+    @PreAuthorize("hasRole('ADMIN')")
+    public CardResponse updateBalanceShards(@PathVariable Long id,
+                                            @RequestParam int count) {
+        return cardService.updateBalanceShards(id, count);
+    }
+
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     @ResponseStatus(HttpStatus.NO_CONTENT)
@@ -79,15 +219,29 @@ public class CardController {
     @PostMapping("/transfer")
     @PreAuthorize("hasRole('USER')")
     public void transfer(@Valid @RequestBody TransferDTO transferDTO,
-                         Principal principal) {
-        cardService.transfer(transferDTO, principal.getName());
+                         @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                         @AuthenticationPrincipal UserPrincipal principal) {
+        idempotencyService.execute(principal.getName(), idempotencyKey, transferDTO, Void.class, () -> {
+            cardService.transfer(transferDTO, principal);
+            return null;
+        });
+    }
+
+    @PostMapping("/transfers/batch")
+    @PreAuthorize("hasRole('USER')")
+    public BatchTransferResponse transferBatch(@Valid @RequestBody BatchTransferDTO batchTransferDTO,
+                                               @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                               @AuthenticationPrincipal UserPrincipal principal) {
+        return idempotencyService.execute(principal.getName(), idempotencyKey, batchTransferDTO,
+                BatchTransferResponse.class,
+                () -> cardService.transferBatch(batchTransferDTO, principal));
     }
 
     @PostMapping("/{id}/block")
     @PreAuthorize("hasRole('USER')")
     public void requestBlock(@PathVariable Long id,
-                             Principal principal) {
-        cardService.requestBlock(id, principal.getName());
+                             @AuthenticationPrincipal UserPrincipal principal) {
+        cardService.requestBlock(id, principal);
     }
 
     @PostMapping("/{id}/block-admin")
@@ -101,4 +255,14 @@ public class CardController {
     public void activateByAdmin(@PathVariable Long id) {
         cardService.activateCardAdmin(id);
     }
+
+    private static ResponseEntity<StreamingResponseBody> attachment(String name,
+                                                                    ExportFormat format,
+                                                                    StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + name + "." + format.getExtension() + "\"")
+                .body(body);
+    }
 }
@@ -0,0 +1,14 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+public record BatchTransferDTO(
+        @NotEmpty
+        List<@Valid @NotNull TransferDTO> transfers,
+        boolean atomic
+) {
+}
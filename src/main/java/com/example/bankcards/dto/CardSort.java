@@ -0,0 +1,45 @@
+package com.example.bankcards.dto;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+
+/**
+ * Sort keys of the cursor-based card listing. Each is paired with the card id as a
+ * tie-breaker so that the order is total and a cursor always resumes at the same row.
+ * {@code BALANCE} sorts on the card row's own balance, without pending sub-balances.
+ * It has no index, since balance is rewritten by every transfer: a user's cards are
+ * found by owner and sorted in memory, and an admin listing by balance is a top-N sort
+ * over the filtered cards.
+ */
+public enum CardSort {
+
+    ID("id"),
+    BALANCE("balance"),
+    EXPIRATION("expiration");
+
+    private final String attribute;
+
+    CardSort(String attribute) {
+        this.attribute = attribute;
+    }
+
+    public String attribute() {
+        return attribute;
+    }
+
+    public String formatKey(Object key) {
+        return switch (this) {
+            case ID -> key.toString();
+            case BALANCE -> ((BigDecimal) key).toPlainString();
+            case EXPIRATION -> new Date(((java.util.Date) key).getTime()).toString();
+        };
+    }
+
+    public Object parseKey(String key) {
+        return switch (this) {
+            case ID -> Long.valueOf(key);
+            case BALANCE -> new BigDecimal(key);
+            case EXPIRATION -> Date.valueOf(key);
+        };
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.bankcards.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+
+public record CardLookupRequest(
+        @NotBlank
+        @Pattern(regexp = "\\d{16}", message = "Card number must be 16 digits")
+        String number
+) {
+}
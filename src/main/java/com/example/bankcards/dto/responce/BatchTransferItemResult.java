@@ -0,0 +1,13 @@
+package com.example.bankcards.dto.responce;
+
+import java.math.BigDecimal;
+
+public record BatchTransferItemResult(
+        int index,
+        Long fromCardId,
+        Long toCardId,
+        BigDecimal amount,
+        boolean success,
+        String error
+) {
+}
@@ -0,0 +1,10 @@
+package com.example.bankcards.dto.responce;
+
+import java.util.List;
+
+public record BatchTransferResponse(
+        int succeeded,
+        int failed,
+        List<BatchTransferItemResult> results
+) {
+}
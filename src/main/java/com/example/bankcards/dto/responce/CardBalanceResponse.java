@@ -0,0 +1,12 @@
+package com.example.bankcards.dto.responce;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record CardBalanceResponse(
+        Long cardId,
+        BigDecimal balance,
+        Long journalSeq,
+        LocalDateTime asOf
+) {
+}
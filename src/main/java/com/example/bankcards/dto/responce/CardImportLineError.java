@@ -0,0 +1,7 @@
+package com.example.bankcards.dto.responce;
+
+public record CardImportLineError(
+        long line,
+        String error
+) {
+}
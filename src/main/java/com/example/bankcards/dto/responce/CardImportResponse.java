@@ -0,0 +1,22 @@
+package com.example.bankcards.dto.responce;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record CardImportResponse(
+        String importId,
+        Status status,
+        long lines,
+        long imported,
+        long failed,
+        List<CardImportLineError> errors,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt
+) {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
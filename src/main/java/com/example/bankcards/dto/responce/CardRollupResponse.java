@@ -0,0 +1,17 @@
+package com.example.bankcards.dto.responce;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+public record CardRollupResponse(
+        Long cardId,
+        LocalDate from,
+        LocalDate to,
+        BigDecimal inflowAmount,
+        long inflowCount,
+        BigDecimal outflowAmount,
+        long outflowCount,
+        List<DailyRollupItem> days
+) {
+}
@@ -0,0 +1,13 @@
+package com.example.bankcards.dto.responce;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record DailyRollupItem(
+        LocalDate day,
+        BigDecimal inflowAmount,
+        long inflowCount,
+        BigDecimal outflowAmount,
+        long outflowCount
+) {
+}
@@ -0,0 +1,10 @@
+package com.example.bankcards.dto.responce;
+
+import java.time.LocalDate;
+
+public record RollupRebuildResponse(
+        LocalDate from,
+        LocalDate to,
+        int chunks
+) {
+}
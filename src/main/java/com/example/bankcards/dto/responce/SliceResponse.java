@@ -0,0 +1,18 @@
+package com.example.bankcards.dto.responce;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One slice of a cursor-based listing. There is no total: {@code nextCursor} is null on
+ * the last slice.
+ */
+public record SliceResponse<T>(
+        List<T> items,
+        String nextCursor
+) {
+
+    public <R> SliceResponse<R> map(Function<? super T, ? extends R> mapper) {
+        return new SliceResponse<>(items.stream().<R>map(mapper).toList(), nextCursor);
+    }
+}
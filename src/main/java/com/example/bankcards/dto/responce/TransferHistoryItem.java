@@ -0,0 +1,14 @@
+package com.example.bankcards.dto.responce;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record TransferHistoryItem(
+        Long id,
+        Long fromCardId,
+        Long toCardId,
+        BigDecimal amount,
+        LocalDateTime createdAt,
+        String direction
+) {
+}
@@ -0,0 +1,9 @@
+package com.example.bankcards.dto.responce;
+
+import java.util.List;
+
+public record TransferHistoryResponse(
+        List<TransferHistoryItem> items,
+        String nextCursor
+) {
+}
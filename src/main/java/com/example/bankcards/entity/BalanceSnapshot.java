@@ -0,0 +1,51 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Setter
+@Getter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "balance_snapshots")
+public class BalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    // newest line folded for the card; with a pooled sequence it does not order snapshots
+    @Column(name = "journal_seq", nullable = false)
+    private Long journalSeq;
+
+    // every journal line written by a transaction below this id is folded in, none above it
+    @Column(name = "journal_xmin", nullable = false)
+    private Long journalXmin;
+
+    // newest created_at among the folded lines, so the snapshot only serves balances as of later instants
+    @Column(name = "journal_cutoff", nullable = false)
+    private LocalDateTime journalCutoff;
+
+    @Column(name = "balance", nullable = false)
+    private BigDecimal balance;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -2,6 +2,7 @@ package com.example.bankcards.entity;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -10,6 +11,8 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -35,7 +38,28 @@ public class Card {
     @Column(name = "number", nullable = false, unique = true)
     private String number;
 
-    @ManyToOne
+    /**
+     * Keyed HMAC of the plain card number, see {@code CardEncryptor.blindIndex}. Null only
+     * for rows the backfill has not reached yet.
+     */
+    @Column(name = "number_hash", unique = true, length = 64)
+    private String numberHash;
+
+    /**
+     * Last four digits in clear, kept so that masked listings need no decryption.
+     */
+    @Column(name = "last4", length = 4)
+    private String last4;
+
+    /**
+     * Key version {@code number} is encrypted under, mirrored from its prefix so the
+     * re-encryption job can find stale rows without reading every ciphertext.
+     */
+    @Builder.Default
+    @Column(name = "number_key_version", nullable = false)
+    private Integer numberKeyVersion = 0;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", nullable = false)
     private User owner;
 
@@ -43,7 +67,7 @@ public class Card {
     @Column(name = "expiration", nullable = false)
     private Date expiration;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "status_id", nullable = false)
     private CardStatus status;
 
@@ -51,10 +75,40 @@ public class Card {
     @Column(name = "balance", nullable = false)
     private BigDecimal balance = BigDecimal.valueOf(0L);
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    /**
+     * Number of sub-balance rows inbound credits are spread over. Above 1, credits land
+     * in card_balance_shards instead of this row and are folded into {@code balance}
+     * when a debit needs them.
+     */
+    @Builder.Default
+    @Column(name = "balance_shards", nullable = false)
+    private Integer balanceShards = 1;
+
+    /**
+     * Sum of the card's shard rows. Not loaded with the card, so lock and transfer reads
+     * stay a single-row fetch; read paths that report a total fill it in through
+     * {@code BalanceShards.loadPending}, and listings and exports sum the shards in
+     * their own query.
+     */
+    @Transient
+    private BigDecimal pendingBalance;
+
     public Long getId() { return id; }
     public String getNumber() { return number; }
     public User getOwner() { return owner; }
     public Date getExpiration() { return expiration; }
     public CardStatus getStatus() { return status; }
     public BigDecimal getBalance() { return balance; }
+
+    public boolean isSharded() {
+        return balanceShards != null && balanceShards > 1;
+    }
+
+    public BigDecimal getTotalBalance() {
+        return pendingBalance != null ? balance.add(pendingBalance) : balance;
+    }
 }
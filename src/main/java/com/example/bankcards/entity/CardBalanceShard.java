@@ -0,0 +1,32 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+
+/**
+ * One sub-balance row of a sharded card. Mapped read-only so listings and exports can
+ * sum a card's shards in the same query; credits and drains go through native
+ * statements in {@code CardRepository}.
+ */
+@Entity
+@Immutable
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "card_balance_shards")
+public class CardBalanceShard {
+
+    @EmbeddedId
+    private CardBalanceShardId id;
+
+    @Column(name = "balance", nullable = false)
+    private BigDecimal balance;
+}
@@ -0,0 +1,24 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Embeddable
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor
+public class CardBalanceShardId implements Serializable {
+
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Column(name = "shard", nullable = false)
+    private Integer shard;
+}
@@ -0,0 +1,42 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * Per-card daily transfer totals. Inbound credits on a sharded card spread over
+ * several slots like the balance does, so a day's totals are the sum over its slots.
+ */
+@Entity
+@Setter
+@Getter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "card_daily_rollups")
+public class CardDailyRollup {
+
+    @EmbeddedId
+    private CardDailyRollupId id;
+
+    @Column(name = "inflow_amount", nullable = false)
+    private BigDecimal inflowAmount;
+
+    @Column(name = "inflow_count", nullable = false)
+    private Long inflowCount;
+
+    @Column(name = "outflow_amount", nullable = false)
+    private BigDecimal outflowAmount;
+
+    @Column(name = "outflow_count", nullable = false)
+    private Long outflowCount;
+}
@@ -1,5 +1,6 @@
 package com.example.bankcards.entity;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -10,10 +11,19 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
-import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
 
+/**
+ * Statuses are reference data that only migrations change, so lazy status proxies are
+ * resolved from a read-only second-level cache region rather than a select. The entity is
+ * immutable to match, so Hibernate never tries to write a cached status back.
+ */
 @Entity
-@Setter
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 @Getter
 @Builder
 @AllArgsConstructor
@@ -0,0 +1,24 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Embeddable
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdempotencyKeyId implements Serializable {
+
+    @Column(name = "scope", nullable = false)
+    private String scope;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String key;
+}
@@ -0,0 +1,62 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One line of the append-only double-entry journal. A transfer posts a DEBIT line for
+ * the source card and a CREDIT line for the target card; balance set outside transfers
+ * (card creation, admin updates) is posted as a single adjustment line with no transfer.
+ */
+@Entity
+@Setter
+@Getter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "journal_entries")
+public class JournalEntry {
+
+    // pooled, so seq order is not commit order across nodes; snapshots cut the journal by txid instead
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "journal_entries_seq")
+    @SequenceGenerator(name = "journal_entries_seq", sequenceName = "journal_entries_seq", allocationSize = 50)
+    @Column(name = "seq")
+    private Long seq;
+
+    @Column(name = "transfer_id")
+    private Long transferId;
+
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "direction", nullable = false)
+    private EntryDirection direction;
+
+    @Column(name = "amount", nullable = false)
+    private BigDecimal amount;
+
+    // id of the writing transaction, set by the database; 0 on lines written before the column existed
+    @Column(name = "txid", insertable = false, updatable = false)
+    private Long txid;
+
+    @Builder.Default
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -2,6 +2,7 @@ package com.example.bankcards.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
@@ -39,6 +40,15 @@ public class User {
     @Enumerated(EnumType.STRING)
     private Role role;
 
+    /**
+     * Bumped whenever issued tokens must stop working: role, username or password
+     * change. Tokens carry the version they were issued with.
+     */
+    @JsonIgnore
+    @Builder.Default
+    @Column(name = "token_version", nullable = false)
+    private Integer tokenVersion = 0;
+
     @JsonIgnore
     @OneToMany(
             mappedBy = "owner",
@@ -0,0 +1,79 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.BalanceSnapshot;
+import com.example.bankcards.repository.projection.LedgerMismatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    @Query("select max(s.journalXmin) from BalanceSnapshot s")
+    Optional<Long> findLatestXmin();
+
+    Optional<BalanceSnapshot> findFirstByCardIdAndJournalCutoffLessThanEqualOrderByJournalXminDesc(
+            Long cardId, LocalDateTime cutoff);
+
+    /**
+     * Rolls every card with journal lines written by transactions in {@code [fromXmin, toXmin)}
+     * forward from its latest snapshot at or below {@code fromXmin}. Only that journal range is scanned.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO balance_snapshots (card_id, journal_seq, journal_xmin, journal_cutoff, balance, created_at)
+            SELECT d.card_id, d.last_seq, :toXmin, GREATEST(s.journal_cutoff, d.last_created),
+                   COALESCE(s.balance, 0) + d.delta, :createdAt
+            FROM (
+                SELECT card_id,
+                       max(seq) AS last_seq,
+                       max(created_at) AS last_created,
+                       sum(CASE WHEN direction = 'CREDIT' THEN amount ELSE -amount END) AS delta
+                FROM journal_entries
+                WHERE txid >= :fromXmin AND txid < :toXmin
+                GROUP BY card_id
+            ) d
+            LEFT JOIN LATERAL (
+                SELECT bs.balance, bs.journal_cutoff
+                FROM balance_snapshots bs
+                WHERE bs.card_id = d.card_id AND bs.journal_xmin <= :fromXmin
+                ORDER BY bs.journal_xmin DESC
+                LIMIT 1
+            ) s ON true
+            ON CONFLICT (card_id, journal_xmin) DO NOTHING
+            """, nativeQuery = true)
+    int insertSnapshots(@Param("fromXmin") long fromXmin,
+                        @Param("toXmin") long toXmin,
+                        @Param("createdAt") LocalDateTime createdAt);
+
+    /**
+     * Compares the snapshots taken at {@code journalXmin} with the live card totals
+     * (card row plus balance shards), discounting journal lines written from that xmin on.
+     */
+    @Query(value = """
+            SELECT s.card_id AS "cardId",
+                   s.balance AS "ledgerBalance",
+                   c.balance + COALESCE(p.pending, 0) - COALESCE(t.delta, 0) AS "cardBalance"
+            FROM balance_snapshots s
+            JOIN cards c ON c.id = s.card_id
+            LEFT JOIN LATERAL (
+                SELECT sum(cs.balance) AS pending
+                FROM card_balance_shards cs
+                WHERE cs.card_id = s.card_id
+            ) p ON true
+            LEFT JOIN LATERAL (
+                SELECT sum(CASE WHEN j.direction = 'CREDIT' THEN j.amount ELSE -j.amount END) AS delta
+                FROM journal_entries j
+                WHERE j.card_id = s.card_id AND j.txid >= :journalXmin
+            ) t ON true
+            WHERE s.journal_xmin = :journalXmin
+              AND s.balance <> c.balance + COALESCE(p.pending, 0) - COALESCE(t.delta, 0)
+            """, nativeQuery = true)
+    List<LedgerMismatch> findMismatches(@Param("journalXmin") long journalXmin);
+}
@@ -0,0 +1,78 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardDailyRollup;
+import com.example.bankcards.entity.CardDailyRollupId;
+import com.example.bankcards.repository.projection.DailyRollupView;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CardDailyRollupRepository extends JpaRepository<CardDailyRollup, CardDailyRollupId> {
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO card_daily_rollups (card_id, day, slot, inflow_amount, inflow_count, outflow_amount, outflow_count)
+            VALUES (:cardId, :day, :slot, :inflowAmount, :inflowCount, :outflowAmount, :outflowCount)
+            ON CONFLICT (card_id, day, slot) DO UPDATE SET
+                inflow_amount = card_daily_rollups.inflow_amount + EXCLUDED.inflow_amount,
+                inflow_count = card_daily_rollups.inflow_count + EXCLUDED.inflow_count,
+                outflow_amount = card_daily_rollups.outflow_amount + EXCLUDED.outflow_amount,
+                outflow_count = card_daily_rollups.outflow_count + EXCLUDED.outflow_count
+            """, nativeQuery = true)
+    int accumulate(@Param("cardId") Long cardId,
+                   @Param("day") LocalDate day,
+                   @Param("slot") int slot,
+                   @Param("inflowAmount") BigDecimal inflowAmount,
+                   @Param("inflowCount") long inflowCount,
+                   @Param("outflowAmount") BigDecimal outflowAmount,
+                   @Param("outflowCount") long outflowCount);
+
+    @Query(value = """
+            SELECT day AS "day",
+                   sum(inflow_amount) AS "inflowAmount",
+                   sum(inflow_count) AS "inflowCount",
+                   sum(outflow_amount) AS "outflowAmount",
+                   sum(outflow_count) AS "outflowCount"
+            FROM card_daily_rollups
+            WHERE card_id = :cardId AND day BETWEEN :from AND :to
+            GROUP BY day
+            ORDER BY day
+            """, nativeQuery = true)
+    List<DailyRollupView> findDaily(@Param("cardId") Long cardId,
+                                    @Param("from") LocalDate from,
+                                    @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = "DELETE FROM card_daily_rollups WHERE day >= :from AND day < :to", nativeQuery = true)
+    int deleteDays(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Recomputes the given days from the transfers table. The created_at range is
+     * answered by the BRIN index, so a chunk only reads the blocks of its own days.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO card_daily_rollups (card_id, day, slot, inflow_amount, inflow_count, outflow_amount, outflow_count)
+            SELECT card_id, day, 0, sum(inflow_amount), sum(inflow_count), sum(outflow_amount), sum(outflow_count)
+            FROM (
+                SELECT to_card_id AS card_id, created_at::date AS day,
+                       amount AS inflow_amount, 1 AS inflow_count, 0 AS outflow_amount, 0 AS outflow_count
+                FROM transfers
+                WHERE created_at >= :from AND created_at < :to
+                UNION ALL
+                SELECT from_card_id, created_at::date, 0, 0, amount, 1
+                FROM transfers
+                WHERE created_at >= :from AND created_at < :to
+            ) flows
+            GROUP BY card_id, day
+            """, nativeQuery = true)
+    int insertFromTransfers(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
@@ -0,0 +1,28 @@
+package com.example.bankcards.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+public interface CardImportRepository {
+
+    /**
+     * Inserts a batch of already encrypted cards together with their opening journal
+     * lines. Cards whose blind index is already taken are skipped; the returned set
+     * holds the blind indexes of the cards that were inserted.
+     */
+    Set<String> insertImported(List<ImportedCard> cards, int keyVersion, LocalDateTime createdAt);
+
+    record ImportedCard(
+            String number,
+            String numberHash,
+            String last4,
+            Long ownerId,
+            LocalDate expiration,
+            Long statusId,
+            BigDecimal balance
+    ) {
+    }
+}
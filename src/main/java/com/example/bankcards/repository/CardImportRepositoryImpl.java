@@ -0,0 +1,100 @@
+package com.example.bankcards.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Binds a whole batch as one array per column and unnests it server side, so a batch
+ * costs one statement and one round trip whatever its size, and the opening journal
+ * lines are written by the same statement from the ids the insert returns.
+ */
+@RequiredArgsConstructor
+public class CardImportRepositoryImpl implements CardImportRepository {
+
+    private static final String INSERT_IMPORTED = """
+            WITH input AS (
+                SELECT * FROM unnest(?, ?, ?, ?, ?, ?, ?)
+                    AS i(number, number_hash, last4, owner_id, expiration, status_id, balance)
+            ), inserted AS (
+                INSERT INTO cards (number, number_hash, last4, number_key_version, owner_id, expiration, status_id, balance)
+                SELECT number, number_hash, last4, ?, owner_id, expiration, status_id, balance FROM input
+                ON CONFLICT (number_hash) DO NOTHING
+                RETURNING id, number_hash, balance
+            ), ledger AS (
+                INSERT INTO journal_entries (card_id, direction, amount, created_at)
+                SELECT id, 'CREDIT', balance, ? FROM inserted WHERE balance > 0
+            )
+            SELECT number_hash FROM inserted
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Set<String> insertImported(List<ImportedCard> cards, int keyVersion, LocalDateTime createdAt) {
+        if (cards.isEmpty()) {
+            return Set.of();
+        }
+        return jdbcTemplate.execute((Connection connection) -> prepare(connection, cards, keyVersion, createdAt),
+                (PreparedStatement statement) -> {
+                    Set<String> inserted = new HashSet<>(cards.size() * 2);
+                    try (var resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            inserted.add(resultSet.getString(1));
+                        }
+                    }
+                    return inserted;
+                });
+    }
+
+    private PreparedStatement prepare(Connection connection,
+                                      List<ImportedCard> cards,
+                                      int keyVersion,
+                                      LocalDateTime createdAt) throws SQLException {
+        int size = cards.size();
+        String[] numbers = new String[size];
+        String[] hashes = new String[size];
+        String[] last4 = new String[size];
+        Long[] owners = new Long[size];
+        Date[] expirations = new Date[size];
+        Long[] statuses = new Long[size];
+        BigDecimal[] balances = new BigDecimal[size];
+        for (int i = 0; i < size; i++) {
+            ImportedCard card = cards.get(i);
+            numbers[i] = card.number();
+            hashes[i] = card.numberHash();
+            last4[i] = card.last4();
+            owners[i] = card.ownerId();
+            expirations[i] = Date.valueOf(card.expiration());
+            statuses[i] = card.statusId();
+            balances[i] = card.balance();
+        }
+
+        PreparedStatement statement = connection.prepareStatement(INSERT_IMPORTED);
+        statement.setArray(1, array(connection, "varchar", numbers));
+        statement.setArray(2, array(connection, "varchar", hashes));
+        statement.setArray(3, array(connection, "varchar", last4));
+        statement.setArray(4, array(connection, "bigint", owners));
+        statement.setArray(5, array(connection, "date", expirations));
+        statement.setArray(6, array(connection, "bigint", statuses));
+        statement.setArray(7, array(connection, "numeric", balances));
+        statement.setInt(8, keyVersion);
+        statement.setTimestamp(9, Timestamp.valueOf(createdAt));
+        return statement;
+    }
+
+    private static Array array(Connection connection, String type, Object[] values) throws SQLException {
+        return connection.createArrayOf(type, values);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.projection.CardListingRow;
+import com.example.bankcards.repository.projection.CardListingSlice;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface CardListingRepository {
+
+    /**
+     * A page of cards matching {@code spec} as listing rows, owner and status joined in.
+     * The page and its total come from a single statement; only a page past the end,
+     * which has no row to carry the total, costs a second count query.
+     */
+    Page<CardListingRow> findListing(Specification<Card> spec, Pageable pageable);
+
+    /**
+     * Up to {@code limit} cards matching {@code spec}, ordered by {@code sortAttribute}
+     * and then id, that come after the row at {@code (afterKey, afterId)}; a null
+     * {@code afterId} starts at the first row. The position is sought rather than
+     * skipped to, and nothing is counted, so any slice costs the same as the first.
+     */
+    CardListingSlice findListingAfter(Specification<Card> spec,
+                                      String sortAttribute,
+                                      boolean descending,
+                                      Object afterKey,
+                                      Long afterId,
+                                      int limit);
+}
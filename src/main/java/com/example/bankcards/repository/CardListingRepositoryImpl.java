@@ -0,0 +1,187 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceShard;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.projection.CardListingRow;
+import com.example.bankcards.repository.projection.CardListingSlice;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.criteria.Subquery;
+import org.hibernate.Session;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Builds the listing as a criteria tuple query so the existing {@code CardSpecifications}
+ * apply unchanged. The total rides along each row as {@code count(id) over ()}, which
+ * replaces the separate count query Spring Data would issue for a page.
+ */
+public class CardListingRepositoryImpl implements CardListingRepository {
+
+    private static final int ROW_COLUMNS = 7;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<CardListingRow> findListing(Specification<Card> spec, Pageable pageable) {
+        HibernateCriteriaBuilder cb = entityManager.unwrap(Session.class).getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Card> card = query.from(Card.class);
+
+        List<Selection<?>> selections = rowSelections(query, card, cb);
+        selections.add(cb.count(card.get("id"), cb.createWindow()));
+        query.multiselect(selections);
+        where(query, spec.toPredicate(card, query, cb));
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by("id");
+        query.orderBy(QueryUtils.toOrders(sort, card, cb));
+
+        TypedQuery<Tuple> typed = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typed.setFirstResult(Math.toIntExact(pageable.getOffset()));
+            typed.setMaxResults(pageable.getPageSize());
+        }
+        List<Tuple> tuples = typed.getResultList();
+
+        List<CardListingRow> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            rows.add(toRow(tuple));
+        }
+
+        long count = !tuples.isEmpty()
+                ? tuples.get(0).get(ROW_COLUMNS, Long.class)
+                : pageable.isPaged() && pageable.getOffset() > 0 ? count(spec) : 0;
+        return new PageImpl<>(rows, pageable, count);
+    }
+
+    @Override
+    public CardListingSlice findListingAfter(Specification<Card> spec,
+                                             String sortAttribute,
+                                             boolean descending,
+                                             Object afterKey,
+                                             Long afterId,
+                                             int limit) {
+        HibernateCriteriaBuilder cb = entityManager.unwrap(Session.class).getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Card> card = query.from(Card.class);
+        Path<Comparable<Object>> key = card.get(sortAttribute);
+        Path<Long> id = card.get("id");
+
+        List<Selection<?>> selections = rowSelections(query, card, cb);
+        selections.add(key);
+        query.multiselect(selections);
+
+        Predicate predicate = spec.toPredicate(card, query, cb);
+        if (afterId != null) {
+            predicate = predicate != null
+                    ? cb.and(predicate, seek(cb, sortAttribute, key, id, descending, afterKey, afterId))
+                    : seek(cb, sortAttribute, key, id, descending, afterKey, afterId);
+        }
+        where(query, predicate);
+        query.orderBy(descending
+                ? List.of(cb.desc(key), cb.desc(id))
+                : List.of(cb.asc(key), cb.asc(id)));
+
+        List<Tuple> tuples = entityManager.createQuery(query)
+                .setMaxResults(limit + 1)
+                .getResultList();
+
+        boolean hasNext = tuples.size() > limit;
+        List<Tuple> slice = hasNext ? tuples.subList(0, limit) : tuples;
+        List<CardListingRow> rows = new ArrayList<>(slice.size());
+        for (Tuple tuple : slice) {
+            rows.add(toRow(tuple));
+        }
+        Object lastKey = slice.isEmpty() ? null : slice.get(slice.size() - 1).get(ROW_COLUMNS);
+        return new CardListingSlice(rows, lastKey, hasNext);
+    }
+
+    /**
+     * {@code key >= k and (key > k or id > i)} rather than the plain disjunction: the
+     * leading range bound is what lets the planner start the (key, id) index scan at the
+     * cursor instead of filtering from the first entry.
+     */
+    private Predicate seek(HibernateCriteriaBuilder cb,
+                           String sortAttribute,
+                           Path<Comparable<Object>> key,
+                           Path<Long> id,
+                           boolean descending,
+                           Object afterKey,
+                           Long afterId) {
+        if ("id".equals(sortAttribute)) {
+            return descending ? cb.lessThan(id, afterId) : cb.greaterThan(id, afterId);
+        }
+        @SuppressWarnings("unchecked")
+        Comparable<Object> bound = (Comparable<Object>) afterKey;
+        if (descending) {
+            return cb.and(cb.lessThanOrEqualTo(key, bound),
+                    cb.or(cb.lessThan(key, bound), cb.lessThan(id, afterId)));
+        }
+        return cb.and(cb.greaterThanOrEqualTo(key, bound),
+                cb.or(cb.greaterThan(key, bound), cb.greaterThan(id, afterId)));
+    }
+
+    private List<Selection<?>> rowSelections(CriteriaQuery<Tuple> query, Root<Card> card, HibernateCriteriaBuilder cb) {
+        Join<Card, User> owner = card.join("owner");
+        Join<Card, CardStatus> status = card.join("status");
+        List<Selection<?>> selections = new ArrayList<>(ROW_COLUMNS + 1);
+        selections.add(card.get("id"));
+        selections.add(card.get("number"));
+        selections.add(card.get("last4"));
+        selections.add(owner.get("username"));
+        selections.add(card.get("expiration"));
+        selections.add(status.get("name"));
+        Subquery<BigDecimal> pending = query.subquery(BigDecimal.class);
+        Root<CardBalanceShard> shard = pending.from(CardBalanceShard.class);
+        pending.select(cb.coalesce(cb.sum(shard.<BigDecimal>get("balance")), BigDecimal.ZERO))
+                .where(cb.equal(shard.get("id").get("cardId"), card.get("id")));
+        selections.add(cb.sum(card.<BigDecimal>get("balance"), pending));
+        return selections;
+    }
+
+    private static CardListingRow toRow(Tuple tuple) {
+        return new CardListingRow(
+                tuple.get(0, Long.class),
+                tuple.get(1, String.class),
+                tuple.get(2, String.class),
+                tuple.get(3, String.class),
+                tuple.get(4, Date.class),
+                tuple.get(5, String.class),
+                tuple.get(6, BigDecimal.class));
+    }
+
+    private static void where(CriteriaQuery<?> query, Predicate predicate) {
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+
+    private long count(Specification<Card> spec) {
+        HibernateCriteriaBuilder cb = entityManager.unwrap(Session.class).getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Card> card = query.from(Card.class);
+        query.select(cb.count(card));
+        where(query, spec.toPredicate(card, query, cb));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
@@ -1,12 +1,187 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.projection.CardExportRow;
+import com.example.bankcards.repository.projection.EncryptedCardNumber;
+import jakarta.persistence.QueryHint;
+import jakarta.persistence.LockModeType;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
-public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificationExecutor<Card> {
+public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificationExecutor<Card>,
+        CardImportRepository, CardListingRepository {
+
+    /**
+     * Owner and status are lazy everywhere else; a single card is almost always shown
+     * or validated right after loading, so both come in with the same select.
+     */
+    @Override
+    @EntityGraph(attributePaths = {"owner", "status"})
+    Optional<Card> findById(Long id);
+
+    /**
+     * A card of one owner, in the same single select as {@link #findById}; empty both when
+     * the card does not exist and when it belongs to someone else.
+     */
+    @EntityGraph(attributePaths = {"owner", "status"})
+    Optional<Card> findByIdAndOwnerId(Long id, Long ownerId);
+
+    boolean existsByIdAndOwnerId(Long id, Long ownerId);
+
+    /**
+     * Cards of one owner among {@code ids}. The owner is matched on the foreign-key column,
+     * so neither users nor card_status is joined and callers that lock get only card rows locked.
+     */
+    @Query("select c from Card c where c.id in :ids and c.owner.id = :ownerId order by c.id")
+    List<Card> findAllByIdAndOwnerId(@Param("ids") Collection<Long> ids, @Param("ownerId") Long ownerId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids and c.owner.id = :ownerId order by c.id")
+    List<Card> findAllByIdAndOwnerIdForUpdate(@Param("ids") Collection<Long> ids, @Param("ownerId") Long ownerId);
+
+    /**
+     * Card numbers are encrypted with a random IV, so equality on {@code number} never
+     * matches; lookups go through the unique blind index instead.
+     */
+    @EntityGraph(attributePaths = {"owner", "status"})
+    Optional<Card> findByNumberHash(String numberHash);
+
+    boolean existsByNumberHash(String numberHash);
+
+    boolean existsByNumberHashAndIdNot(String numberHash, Long id);
+
+    @Query("""
+            select c.id as id, c.number as number, c.numberHash as numberHash, c.last4 as last4
+            from Card c
+            where (c.numberHash is null or c.last4 is null) and c.id > :afterId
+            order by c.id
+            """)
+    List<EncryptedCardNumber> findWithoutDerivedNumber(@Param("afterId") Long afterId, Limit limit);
+
+    /**
+     * Sets a missing blind index. Matches nothing if another card already holds the
+     * same hash, so a duplicate number left over from before the index is reported
+     * instead of failing the whole batch on the unique index.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE cards SET number_hash = :numberHash
+            WHERE id = :id
+              AND number_hash IS NULL
+              AND NOT EXISTS (SELECT 1 FROM cards d WHERE d.number_hash = :numberHash)
+            """, nativeQuery = true)
+    int setNumberHash(@Param("id") Long id, @Param("numberHash") String numberHash);
+
+    @Modifying
+    @Query(value = "UPDATE cards SET last4 = :last4 WHERE id = :id AND last4 IS NULL", nativeQuery = true)
+    int setLast4(@Param("id") Long id, @Param("last4") String last4);
+
+    @Query("""
+            select c.id as id, c.number as number, c.numberHash as numberHash, c.last4 as last4
+            from Card c
+            where c.numberKeyVersion <> :keyVersion and c.id > :afterId
+            order by c.id
+            """)
+    List<EncryptedCardNumber> findEncryptedWithOtherKey(@Param("keyVersion") int keyVersion,
+                                                        @Param("afterId") Long afterId,
+                                                        Limit limit);
+
+    /**
+     * Swaps in a re-encrypted number only if the row still holds the ciphertext it was
+     * computed from, so a concurrent card update is never overwritten.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE cards SET number = :number, number_key_version = :keyVersion
+            WHERE id = :id AND number = :previous
+            """, nativeQuery = true)
+    int replaceNumber(@Param("id") Long id,
+                      @Param("previous") String previous,
+                      @Param("number") String number,
+                      @Param("keyVersion") int keyVersion);
+
+    /**
+     * Every card in id order as plain rows, for exports. Has to be consumed inside a
+     * read-only transaction: the fetch size makes the driver read through a cursor in
+     * chunks, and projection rows are never added to the persistence context.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select c.id as id, c.number as number, c.last4 as last4, o.id as ownerId, o.username as owner,
+                   c.expiration as expiration, s.name as status, c.balance as balance,
+                   (select sum(b.balance) from CardBalanceShard b where b.id.cardId = c.id) as pendingBalance
+            from Card c join c.owner o join c.status s
+            order by c.id
+            """)
+    Stream<CardExportRow> streamAllForExport();
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids order by c.id")
+    List<Card> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Adds {@code delta} unless it would take the card's total balance, shard rows
+     * included, below zero. Returns 0 when the debit is not covered.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE cards SET balance = balance + :delta, version = version + 1
+            WHERE id = :id
+              AND (:delta >= 0 OR balance + :delta
+                   + (SELECT coalesce(sum(s.balance), 0) FROM card_balance_shards s WHERE s.card_id = :id) >= 0)
+            """, nativeQuery = true)
+    int addToBalanceIfCovered(@Param("id") Long id, @Param("delta") BigDecimal delta);
+
+    @Query("select c.balanceShards from Card c where c.id = :id")
+    Optional<Integer> findBalanceShardsById(@Param("id") Long id);
+
+    @Query("select coalesce(sum(s.balance), 0) from CardBalanceShard s where s.id.cardId = :cardId")
+    BigDecimal sumShardBalances(@Param("cardId") Long cardId);
+
+    /**
+     * Adds a credit to one sub-balance row without touching the card row. The upsert
+     * recreates a shard that a concurrent drain has just deleted.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO card_balance_shards (card_id, shard, balance)
+            VALUES (:cardId, :shard, :amount)
+            ON CONFLICT (card_id, shard) DO UPDATE SET balance = card_balance_shards.balance + EXCLUDED.balance
+            """, nativeQuery = true)
+    int creditShard(@Param("cardId") Long cardId, @Param("shard") int shard, @Param("amount") BigDecimal amount);
 
-    boolean existsByNumber(String cardNumber);
+    /**
+     * Removes every sub-balance row of a card and returns their sum, which the caller
+     * adds to the card row in the same transaction.
+     */
+    @Query(value = """
+            WITH drained AS (
+                DELETE FROM card_balance_shards WHERE card_id = :cardId RETURNING balance
+            )
+            SELECT coalesce(sum(balance), 0) FROM drained
+            """, nativeQuery = true)
+    BigDecimal drainShards(@Param("cardId") Long cardId);
 }
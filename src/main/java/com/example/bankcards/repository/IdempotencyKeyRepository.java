@@ -0,0 +1,31 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.entity.IdempotencyKeyId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, IdempotencyKeyId> {
+
+    // a plain insert rather than save(), so a second commit of the same key fails on the primary key
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_keys (scope, idempotency_key, fingerprint, response, created_at)
+            VALUES (:scope, :key, :fingerprint, :response, :createdAt)
+            """, nativeQuery = true)
+    int insert(@Param("scope") String scope,
+               @Param("key") String key,
+               @Param("fingerprint") String fingerprint,
+               @Param("response") String response,
+               @Param("createdAt") LocalDateTime createdAt);
+
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") LocalDateTime before);
+}
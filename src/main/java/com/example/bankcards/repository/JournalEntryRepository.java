@@ -0,0 +1,40 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.JournalEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface JournalEntryRepository extends JpaRepository<JournalEntry, Long> {
+
+    @Query(value = """
+            SELECT seq FROM journal_entries
+            WHERE card_id = :cardId AND created_at <= :asOf
+            ORDER BY created_at DESC, seq DESC
+            LIMIT 1
+            """, nativeQuery = true)
+    Optional<Long> findLastSequenceForCard(@Param("cardId") Long cardId, @Param("asOf") LocalDateTime asOf);
+
+    @Query("""
+            select coalesce(sum(case when e.direction = com.example.bankcards.entity.EntryDirection.CREDIT
+                                     then e.amount else -e.amount end), 0)
+            from JournalEntry e
+            where e.cardId = :cardId and e.txid >= :fromXmin and e.createdAt <= :upTo
+            """)
+    BigDecimal sumNetAmount(@Param("cardId") Long cardId,
+                            @Param("fromXmin") long fromXmin,
+                            @Param("upTo") LocalDateTime upTo);
+
+    /**
+     * Oldest transaction still running. Every journal line written by a transaction below it
+     * is already committed or rolled back, and any line that commits later is at or above it.
+     */
+    @Query(value = "SELECT pg_snapshot_xmin(pg_current_snapshot())::text::bigint", nativeQuery = true)
+    long findCommittedXmin();
+}
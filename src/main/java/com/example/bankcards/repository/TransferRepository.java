@@ -1,9 +1,144 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.responce.TransferHistoryItem;
 import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.repository.projection.TransferExportRow;
+import com.example.bankcards.repository.projection.TransferOutcome;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransferRepository extends JpaRepository<Transfer, Long> {
+
+    /**
+     * Debits, credits and records a transfer in one statement. The debit is guarded by
+     * ownership, status and the card's total balance, shard rows included, so a sharded
+     * card can spend its pending credits and its own row may go below zero until the next
+     * consolidation. The credit only runs if the debit matched, and the
+     * transfer row, its two journal lines and both daily rollups are only written if both
+     * did. A zero count means nothing should commit.
+     */
+    @Transactional
+    @Query(value = """
+            WITH debit AS (
+                UPDATE cards SET balance = balance - :amount, version = version + 1
+                WHERE id = :fromCardId
+                  AND owner_id = :ownerId
+                  AND status_id = :statusId
+                  AND balance + (SELECT coalesce(sum(s.balance), 0) FROM card_balance_shards s
+                                 WHERE s.card_id = :fromCardId) >= :amount
+                RETURNING id
+            ), credit AS (
+                UPDATE cards SET balance = balance + :amount, version = version + 1
+                WHERE id = :toCardId
+                  AND owner_id = :ownerId
+                  AND status_id = :statusId
+                  AND EXISTS (SELECT 1 FROM debit)
+                RETURNING id
+            ), record AS (
+                INSERT INTO transfers (from_card_id, to_card_id, amount, created_at)
+                SELECT :fromCardId, :toCardId, :amount, CAST(:createdAt AS timestamp)
+                FROM debit, credit
+                RETURNING id
+            ), ledger AS (
+                INSERT INTO journal_entries (transfer_id, card_id, direction, amount, created_at)
+                SELECT id, :fromCardId, 'DEBIT', :amount, CAST(:createdAt AS timestamp) FROM record
+                UNION ALL
+                SELECT id, :toCardId, 'CREDIT', :amount, CAST(:createdAt AS timestamp) FROM record
+            ), rollup AS (
+                INSERT INTO card_daily_rollups (card_id, day, slot, inflow_amount, inflow_count, outflow_amount, outflow_count)
+                SELECT card_id, CAST(:createdAt AS date), 0, inflow_amount, inflow_count, outflow_amount, outflow_count
+                FROM (
+                    SELECT :fromCardId AS card_id, 0 AS inflow_amount, 0 AS inflow_count,
+                           :amount AS outflow_amount, 1 AS outflow_count
+                    FROM record
+                    UNION ALL
+                    SELECT :toCardId, :amount, 1, 0, 0 FROM record
+                ) flows
+                ORDER BY card_id
+                ON CONFLICT (card_id, day, slot) DO UPDATE SET
+                    inflow_amount = card_daily_rollups.inflow_amount + EXCLUDED.inflow_amount,
+                    inflow_count = card_daily_rollups.inflow_count + EXCLUDED.inflow_count,
+                    outflow_amount = card_daily_rollups.outflow_amount + EXCLUDED.outflow_amount,
+                    outflow_count = card_daily_rollups.outflow_count + EXCLUDED.outflow_count
+            )
+            SELECT (SELECT count(*) FROM debit) AS "debited",
+                   (SELECT count(*) FROM credit) AS "credited",
+                   (SELECT id FROM record) AS "transferId"
+            """, nativeQuery = true)
+    TransferOutcome transferIfSufficient(@Param("fromCardId") Long fromCardId,
+                                         @Param("toCardId") Long toCardId,
+                                         @Param("ownerId") Long ownerId,
+                                         @Param("statusId") Long statusId,
+                                         @Param("amount") BigDecimal amount,
+                                         @Param("createdAt") LocalDateTime createdAt);
+
+    /**
+     * One keyset page of transfers sent from a card, newest first. The redundant
+     * {@code createdAt <= :cursorCreatedAt} bound lets the seek start inside
+     * idx_transfers_from_card_created instead of filtering rows already returned.
+     * The card ids are read from the foreign-key columns, so no card is joined.
+     */
+    @Query("""
+            select new com.example.bankcards.dto.responce.TransferHistoryItem(
+                t.id, t.fromCard.id, t.toCard.id, t.amount, t.createdAt, 'OUT')
+            from Transfer t
+            where t.fromCard.id = :cardId
+              and t.createdAt >= :from and t.createdAt < :to
+              and t.createdAt <= :cursorCreatedAt
+              and (t.createdAt < :cursorCreatedAt or t.id < :cursorId)
+            order by t.createdAt desc, t.id desc
+            """)
+    List<TransferHistoryItem> findOutgoingHistory(@Param("cardId") Long cardId,
+                                                  @Param("from") LocalDateTime from,
+                                                  @Param("to") LocalDateTime to,
+                                                  @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                                  @Param("cursorId") Long cursorId,
+                                                  Limit limit);
+
+    @Query("""
+            select new com.example.bankcards.dto.responce.TransferHistoryItem(
+                t.id, t.fromCard.id, t.toCard.id, t.amount, t.createdAt, 'IN')
+            from Transfer t
+            where t.toCard.id = :cardId
+              and t.createdAt >= :from and t.createdAt < :to
+              and t.createdAt <= :cursorCreatedAt
+              and (t.createdAt < :cursorCreatedAt or t.id < :cursorId)
+            order by t.createdAt desc, t.id desc
+            """)
+    List<TransferHistoryItem> findIncomingHistory(@Param("cardId") Long cardId,
+                                                  @Param("from") LocalDateTime from,
+                                                  @Param("to") LocalDateTime to,
+                                                  @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                                  @Param("cursorId") Long cursorId,
+                                                  Limit limit);
+
+    /**
+     * Transfers created in {@code [from, to)} in id order, read through a cursor like
+     * {@link CardRepository#streamAllForExport()}.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select t.id as id, t.fromCard.id as fromCardId, t.toCard.id as toCardId,
+                   t.amount as amount, t.createdAt as createdAt
+            from Transfer t
+            where t.createdAt >= :from and t.createdAt < :to
+            order by t.id
+            """)
+    Stream<TransferExportRow> streamForExport(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 }
@@ -1,11 +1,17 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,5 +19,27 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByUsername(String name);
 
+    @Query("select u.id from User u")
+    List<Long> findAllIds();
+
+    @Query("select u.tokenVersion from User u where u.id = :id")
+    Optional<Integer> findTokenVersionById(@Param("id") Long id);
+
+    /**
+     * Swaps in a re-encoded hash of the same password, unless the password was changed
+     * since it was read.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE users SET password = :password WHERE id = :id AND password = :previous",
+            nativeQuery = true)
+    int replacePassword(@Param("id") Long id, @Param("previous") String previous, @Param("password") String password);
+
     Page<User> findByUsernameContainingIgnoreCase(String username, Pageable pageable);
+
+    List<User> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    List<User> findByUsernameContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(String username,
+                                                                            Long afterId,
+                                                                            Limit limit);
 }
@@ -0,0 +1,25 @@
+package com.example.bankcards.repository.projection;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+public interface CardExportRow {
+
+    Long getId();
+
+    String getNumber();
+
+    String getLast4();
+
+    Long getOwnerId();
+
+    String getOwner();
+
+    Date getExpiration();
+
+    String getStatus();
+
+    BigDecimal getBalance();
+
+    BigDecimal getPendingBalance();
+}
@@ -0,0 +1,19 @@
+package com.example.bankcards.repository.projection;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * One row of a card page: exactly the columns {@code CardResponse} is built from, with
+ * {@code balance} already including the pending sub-balances.
+ */
+public record CardListingRow(
+        Long id,
+        String number,
+        String last4,
+        String owner,
+        Date expiration,
+        String status,
+        BigDecimal balance
+) {
+}
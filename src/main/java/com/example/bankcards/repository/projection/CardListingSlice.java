@@ -0,0 +1,14 @@
+package com.example.bankcards.repository.projection;
+
+import java.util.List;
+
+/**
+ * Rows of one keyset slice, plus the raw sort key of the last row to build the next
+ * cursor from and whether more rows follow.
+ */
+public record CardListingSlice(
+        List<CardListingRow> rows,
+        Object lastKey,
+        boolean hasNext
+) {
+}
@@ -0,0 +1,17 @@
+package com.example.bankcards.repository.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public interface DailyRollupView {
+
+    LocalDate getDay();
+
+    BigDecimal getInflowAmount();
+
+    Long getInflowCount();
+
+    BigDecimal getOutflowAmount();
+
+    Long getOutflowCount();
+}
@@ -0,0 +1,12 @@
+package com.example.bankcards.repository.projection;
+
+public interface EncryptedCardNumber {
+
+    Long getId();
+
+    String getNumber();
+
+    String getNumberHash();
+
+    String getLast4();
+}
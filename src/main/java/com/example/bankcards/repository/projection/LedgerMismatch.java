@@ -0,0 +1,12 @@
+package com.example.bankcards.repository.projection;
+
+import java.math.BigDecimal;
+
+public interface LedgerMismatch {
+
+    Long getCardId();
+
+    BigDecimal getLedgerBalance();
+
+    BigDecimal getCardBalance();
+}
@@ -0,0 +1,17 @@
+package com.example.bankcards.repository.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public interface TransferExportRow {
+
+    Long getId();
+
+    Long getFromCardId();
+
+    Long getToCardId();
+
+    BigDecimal getAmount();
+
+    LocalDateTime getCreatedAt();
+}
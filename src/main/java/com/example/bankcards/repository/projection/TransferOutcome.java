@@ -0,0 +1,10 @@
+package com.example.bankcards.repository.projection;
+
+public interface TransferOutcome {
+
+    Long getDebited();
+
+    Long getCredited();
+
+    Long getTransferId();
+}
@@ -6,15 +6,11 @@ import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.repository.UserRepository;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-
 @Service
 @Slf4j
 @AllArgsConstructor
@@ -22,20 +18,16 @@ public class CustomUserDetails implements UserDetailsService {
 
     private final UserRepository userRepository;
 
+    /**
+     * Reads the database, not the user cache: callers may check the password, and the
+     * cache holds no password hashes.
+     */
     @Override
-//    @Cacheable(value = "user_details", key = "#username")
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UserNotFoundException("User not found"));
 
-        SimpleGrantedAuthority authority =
-                new SimpleGrantedAuthority("ROLE_" + user.getRole().name());
-
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                List.of(authority)
-        );
+        return UserPrincipal.of(user);
     }
 
     public User saveUser(String username, String encodedPassword, Role role) {
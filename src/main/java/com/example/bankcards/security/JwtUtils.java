@@ -1,7 +1,12 @@
 package com.example.bankcards.security;
 
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.util.cache.LruCache;
 import com.example.bankcards.util.properties.JwtProperties;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
@@ -11,54 +16,140 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Date;
+import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
 public class JwtUtils {
 
+    static final String USER_ID_CLAIM = "uid";
+    static final String ROLE_CLAIM = "role";
+    static final String TOKEN_VERSION_CLAIM = "tv";
+    static final String TOKEN_TYPE_CLAIM = "typ";
+    static final String ACCESS_TYPE = "access";
+    static final String REFRESH_TYPE = "refresh";
+
     private final JwtProperties jwtProperties;
 
     private SecretKey key;
+    private JwtParser parser;
+    private LruCache<String, VerifiedToken> verifiedTokens;
 
     @PostConstruct
     public void init() {
         this.key = Keys.hmacShaKeyFor(
                 jwtProperties.getSecret().getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser()
+                .verifyWith(key)
+                .build();
+        this.verifiedTokens = jwtProperties.getVerifiedCacheSize() > 0
+                ? new LruCache<>(jwtProperties.getVerifiedCacheSize(),
+                        Duration.ofMillis(jwtProperties.getVerifiedCacheTtlMs()))
+                : null;
     }
 
     public String generateAccessToken(UserDetails userDetails) {
-        return buildToken(userDetails.getUsername(), jwtProperties.getAccessExpirationMs());
+        return buildToken(userDetails, ACCESS_TYPE, jwtProperties.getAccessExpirationMs());
     }
 
     public String generateRefreshToken(UserDetails userDetails) {
-        return buildToken(userDetails.getUsername(), jwtProperties.getRefreshExpirationMs());
+        return buildToken(userDetails, REFRESH_TYPE, jwtProperties.getRefreshExpirationMs());
     }
 
-    private String buildToken(String subject, long expirationMs) {
-        return Jwts.builder()
-                .subject(subject)
+    /**
+     * Access tokens carry the user id, role and token version, so that requests can be
+     * authenticated from the token alone.
+     */
+    private String buildToken(UserDetails userDetails, String type, long expirationMs) {
+        JwtBuilder builder = Jwts.builder()
+                .subject(userDetails.getUsername())
+                .claim(TOKEN_TYPE_CLAIM, type)
                 .issuedAt(new Date())
-                .expiration(new Date(System.currentTimeMillis() + expirationMs))
-                .signWith(key)
-                .compact();
+                .expiration(new Date(System.currentTimeMillis() + expirationMs));
+        if (userDetails instanceof UserPrincipal principal) {
+            builder.claim(USER_ID_CLAIM, principal.getId())
+                    .claim(TOKEN_VERSION_CLAIM, principal.getTokenVersion());
+            if (ACCESS_TYPE.equals(type)) {
+                builder.claim(ROLE_CLAIM, principal.getRole().name());
+            }
+        }
+        return builder.signWith(key).compact();
     }
 
     public String extractUsername(String token) {
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getSubject();
+        return parse(token).getSubject();
+    }
+
+    /**
+     * Verifies an access token and rebuilds its user from the claims. Empty for invalid
+     * or expired tokens, refresh tokens and tokens issued without the claims.
+     * <p>
+     * With the verified-token cache on, a token seen before is answered from the cache
+     * until it expires. Entries are keyed by the signature segment, which already is an
+     * HMAC digest of the token, and a hit only counts if the whole token matches, so a
+     * forged token reusing a cached signature is still verified in full.
+     */
+    public Optional<UserPrincipal> parseAccessToken(String token) {
+        String signature = verifiedTokens != null ? signature(token) : null;
+        if (signature != null) {
+            VerifiedToken cached = verifiedTokens.get(signature);
+            if (cached != null && cached.token().equals(token)) {
+                return Optional.of(cached.principal());
+            }
+        }
+
+        try {
+            Claims claims = parse(token);
+            Number userId = claims.get(USER_ID_CLAIM, Number.class);
+            String role = claims.get(ROLE_CLAIM, String.class);
+            if (!ACCESS_TYPE.equals(claims.get(TOKEN_TYPE_CLAIM, String.class)) || userId == null || role == null) {
+                return Optional.empty();
+            }
+            UserPrincipal principal = new UserPrincipal(
+                    userId.longValue(),
+                    claims.getSubject(),
+                    null,
+                    Role.valueOf(role),
+                    tokenVersion(claims));
+            if (signature != null) {
+                long remainingMs = claims.getExpiration().getTime() - System.currentTimeMillis();
+                verifiedTokens.put(signature, new VerifiedToken(token, principal), Duration.ofMillis(remainingMs));
+            }
+            return Optional.of(principal);
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
         try {
-            String username = extractUsername(token);
-            return username.equals(userDetails.getUsername());
+            Claims claims = parse(token);
+            if (!claims.getSubject().equals(userDetails.getUsername())) {
+                return false;
+            }
+            return !(userDetails instanceof UserPrincipal principal)
+                    || tokenVersion(claims) >= principal.getTokenVersion();
         } catch (JwtException e) {
             return false;
         }
     }
+
+    private Claims parse(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    private static String signature(String token) {
+        int dot = token.lastIndexOf('.');
+        return dot > 0 && dot < token.length() - 1 ? token.substring(dot + 1) : null;
+    }
+
+    private static int tokenVersion(Claims claims) {
+        Number version = claims.get(TOKEN_VERSION_CLAIM, Number.class);
+        return version != null ? version.intValue() : 0;
+    }
+
+    private record VerifiedToken(String token, UserPrincipal principal) {
+    }
 }
@@ -0,0 +1,126 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.LoginRejectedException;
+import com.example.bankcards.util.properties.PasswordProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs password checks on a pool sized to the CPU instead of on request threads. The
+ * pool has a bounded queue and refuses work once it is full, so a login burst costs at
+ * most {@code workers + queue-capacity} waiting request threads and everything beyond
+ * that fails fast with {@link LoginRejectedException}.
+ * <p>
+ * A hash whose BCrypt cost differs from the configured one is re-encoded by the same
+ * task after a successful match and returned as {@link Verification#upgradedHash()}.
+ */
+@Component
+public class PasswordHashing {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
+    private final PasswordEncoder passwordEncoder;
+    private final int bcryptStrength;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+    private final Counter upgraded;
+
+    public PasswordHashing(PasswordEncoder passwordEncoder,
+                           PasswordProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        this.bcryptStrength = properties.getBcryptStrength();
+        this.timeoutMs = properties.getTimeoutMs();
+        int workers = properties.getWorkers() > 0
+                ? properties.getWorkers()
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())),
+                task -> {
+                    Thread thread = new Thread(task, "password-hash-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.rejected = Counter.builder("auth.password.rejected")
+                .description("Logins refused because the password pool queue was full")
+                .register(meterRegistry);
+        this.upgraded = Counter.builder("auth.password.rehashed")
+                .description("Stored password hashes re-encoded with the configured BCrypt cost")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.queue", executor, e -> e.getQueue().size())
+                .description("Password checks waiting for a worker")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public Verification verify(String rawPassword, String encodedPassword) {
+        Future<Verification> future;
+        try {
+            future = executor.submit(() -> check(rawPassword, encodedPassword));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new LoginRejectedException("Too many login attempts, try again later");
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new LoginRejectedException("Too many login attempts, try again later");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new LoginRejectedException("Login interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Verification check(String rawPassword, String encodedPassword) {
+        if (encodedPassword == null || !passwordEncoder.matches(rawPassword, encodedPassword)) {
+            return new Verification(false, null);
+        }
+        if (!needsRehash(encodedPassword)) {
+            return new Verification(true, null);
+        }
+        upgraded.increment();
+        return new Verification(true, passwordEncoder.encode(rawPassword));
+    }
+
+    boolean needsRehash(String encodedPassword) {
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != bcryptStrength;
+    }
+
+    /**
+     * @param upgradedHash new hash to store, or {@code null} when the stored one is current
+     */
+    public record Verification(boolean matches, String upgradedHash) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.cache.LruCache;
+import com.example.bankcards.util.properties.JwtProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Lowest token version still accepted per user, shared between nodes through Redis.
+ * <p>
+ * A key exists only for users whose tokens were revoked, and only for as long as an
+ * access token lives, so for everyone else the check is a cache hit or a Redis miss
+ * and never a database query. Nodes cache the answer for {@code revocation-check-ms},
+ * which bounds how long a revoked token keeps working elsewhere; the node doing the
+ * revocation drops its entry at once.
+ * <p>
+ * While Redis is unreachable a node keeps answering with the last version it saw for the
+ * user, for as long as an access token lives. A user it knows nothing about is checked
+ * against {@code users.token_version}, and if the database fails too the token is refused.
+ */
+@Slf4j
+@Component
+public class TokenVersions {
+
+    private static final String KEY_PREFIX = "auth:token-version:";
+    private static final int REVOKED = Integer.MAX_VALUE;
+
+    private final StringRedisTemplate redisTemplate;
+    private final UserRepository userRepository;
+    private final Duration keyTtl;
+    private final LruCache<Long, Integer> minimumVersions;
+    private final LruCache<Long, Integer> lastKnownVersions;
+
+    public TokenVersions(StringRedisTemplate redisTemplate,
+                         UserRepository userRepository,
+                         JwtProperties jwtProperties) {
+        this.redisTemplate = redisTemplate;
+        this.userRepository = userRepository;
+        this.keyTtl = Duration.ofMillis(jwtProperties.getAccessExpirationMs());
+        this.minimumVersions = new LruCache<>(
+                jwtProperties.getRevocationCacheSize(),
+                Duration.ofMillis(jwtProperties.getRevocationCheckMs()));
+        this.lastKnownVersions = new LruCache<>(jwtProperties.getRevocationCacheSize(), keyTtl);
+    }
+
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        return tokenVersion >= minimumVersion(userId);
+    }
+
+    /**
+     * Rejects every token of the user issued before {@code tokenVersion}.
+     */
+    public void advance(Long userId, int tokenVersion) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + userId, Integer.toString(tokenVersion), keyTtl);
+        remember(userId, tokenVersion);
+    }
+
+    public void revokeAll(Long userId) {
+        advance(userId, REVOKED);
+    }
+
+    private int minimumVersion(Long userId) {
+        Integer cached = minimumVersions.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        int version;
+        try {
+            String stored = redisTemplate.opsForValue().get(KEY_PREFIX + userId);
+            version = stored != null ? Integer.parseInt(stored) : 0;
+        } catch (RuntimeException e) {
+            log.warn("Token version check for user {} fell back: {}", userId, e.getMessage());
+            version = fallbackVersion(userId);
+            // cached for the usual interval, so an outage costs one fallback per user and interval
+            minimumVersions.put(userId, version);
+            return version;
+        }
+        remember(userId, version);
+        return version;
+    }
+
+    /**
+     * The stored {@code token_version} is the version every revocation advances to, and a
+     * deleted user has no row, so the database answer is never more lenient than Redis.
+     */
+    private int fallbackVersion(Long userId) {
+        Integer lastKnown = lastKnownVersions.get(userId);
+        if (lastKnown != null) {
+            return lastKnown;
+        }
+        try {
+            return userRepository.findTokenVersionById(userId).orElse(REVOKED);
+        } catch (RuntimeException e) {
+            log.warn("Token version of user {} unavailable, refusing the token: {}", userId, e.getMessage());
+            return REVOKED;
+        }
+    }
+
+    private void remember(Long userId, int version) {
+        minimumVersions.put(userId, version);
+        lastKnownVersions.put(userId, version);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * Authenticated user as carried by the security context. Built from the database on
+ * login and refresh, and from verified token claims on every other request, in which
+ * case there is no password.
+ */
+@Getter
+public class UserPrincipal implements UserDetails, Principal {
+
+    private final Long id;
+    private final String username;
+    private final String password;
+    private final Role role;
+    private final int tokenVersion;
+    private final List<GrantedAuthority> authorities;
+
+    public UserPrincipal(Long id, String username, String password, Role role, int tokenVersion) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.role = role;
+        this.tokenVersion = tokenVersion;
+        this.authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    public static UserPrincipal of(User user) {
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getPassword(), user.getRole(),
+                user.getTokenVersion() != null ? user.getTokenVersion() : 0);
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
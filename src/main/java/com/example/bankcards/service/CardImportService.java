@@ -0,0 +1,13 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardImportFormat;
+import com.example.bankcards.dto.responce.CardImportResponse;
+
+import java.io.InputStream;
+
+public interface CardImportService {
+
+    CardImportResponse importCards(InputStream body, CardImportFormat format, String importId);
+
+    CardImportResponse getImport(String importId);
+}
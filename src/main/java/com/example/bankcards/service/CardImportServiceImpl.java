@@ -0,0 +1,383 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardImportFormat;
+import com.example.bankcards.dto.responce.CardImportLineError;
+import com.example.bankcards.dto.responce.CardImportResponse;
+import com.example.bankcards.exception.CardException;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.repository.CardImportRepository.ImportedCard;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.card.CardStatusRegistry;
+import com.example.bankcards.util.CardEncryptor;
+import com.example.bankcards.util.cache.LruCache;
+import com.example.bankcards.util.properties.CardProperties;
+import com.example.bankcards.util.validator.CardServiceValidator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Imports cards from a CSV or NDJSON request body without holding it in memory.
+ * <p>
+ * The request thread only reads lines and cuts them into batches. Parsing, validation
+ * and encryption of a batch run on a worker pool, with at most two batches per worker
+ * in flight, so reading stalls instead of buffering when the database falls behind.
+ * Owners are resolved from a set loaded once per import and statuses from the registry,
+ * and each batch is written by one statement in its own transaction, in the order the
+ * batches were read.
+ */
+@Service
+@Slf4j
+public class CardImportServiceImpl implements CardImportService {
+
+    private static final String CSV_HEADER = "number";
+    private static final int CSV_COLUMNS = 4;
+
+    private final CardRepository cardRepository;
+    private final UserRepository userRepository;
+    private final CardStatusRegistry cardStatusRegistry;
+    private final CardServiceValidator cardServiceValidator;
+    private final CardEncryptor cardEncryptor;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final CardProperties cardProperties;
+    private final CardProperties.BulkImport settings;
+    private final ExecutorService workers;
+    private final int maxInFlight;
+    private final LruCache<String, ImportJob> jobs;
+
+    public CardImportServiceImpl(CardRepository cardRepository,
+                                 UserRepository userRepository,
+                                 CardStatusRegistry cardStatusRegistry,
+                                 CardServiceValidator cardServiceValidator,
+                                 CardEncryptor cardEncryptor,
+                                 Validator validator,
+                                 ObjectMapper objectMapper,
+                                 TransactionTemplate transactionTemplate,
+                                 CardProperties cardProperties) {
+        this.cardRepository = cardRepository;
+        this.userRepository = userRepository;
+        this.cardStatusRegistry = cardStatusRegistry;
+        this.cardServiceValidator = cardServiceValidator;
+        this.cardEncryptor = cardEncryptor;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.cardProperties = cardProperties;
+        this.settings = cardProperties.getBulkImport();
+        int parallelism = settings.getWorkers() > 0 ? settings.getWorkers() : Runtime.getRuntime().availableProcessors();
+        this.maxInFlight = parallelism * 2;
+        this.jobs = new LruCache<>(settings.getHistorySize(), Duration.ofMinutes(settings.getHistoryTtlMinutes()));
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "card-import-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public CardImportResponse importCards(InputStream body, CardImportFormat format, String importId) {
+        ImportJob job = start(importId != null && !importId.isBlank() ? importId : UUID.randomUUID().toString());
+        log.info("Starting card import {} ({})", job.id, format);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            Lookups lookups = loadLookups();
+            Deque<CompletableFuture<PreparedBatch>> inFlight = new ArrayDeque<>();
+            List<RawLine> batch = new ArrayList<>(settings.getBatchSize());
+            long lineNumber = 0;
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && format == CardImportFormat.CSV && isCsvHeader(line))) {
+                    continue;
+                }
+                job.lines.incrementAndGet();
+                batch.add(new RawLine(lineNumber, line));
+                if (batch.size() == settings.getBatchSize()) {
+                    submit(batch, format, lookups, inFlight, job);
+                    batch = new ArrayList<>(settings.getBatchSize());
+                }
+            }
+            if (!batch.isEmpty()) {
+                submit(batch, format, lookups, inFlight, job);
+            }
+            while (!inFlight.isEmpty()) {
+                write(await(inFlight.poll()), job);
+            }
+
+            job.finish(CardImportResponse.Status.COMPLETED);
+            log.info("Card import {} finished: {} imported, {} failed", job.id, job.imported.get(), job.failed.get());
+            return job.snapshot();
+        } catch (IOException | UncheckedIOException e) {
+            job.finish(CardImportResponse.Status.FAILED);
+            log.warn("Card import {} aborted while reading the body", job.id, e);
+            throw new CardException("Import body could not be read: " + e.getMessage());
+        } catch (RuntimeException e) {
+            job.finish(CardImportResponse.Status.FAILED);
+            log.error("Card import {} failed", job.id, e);
+            throw e;
+        }
+    }
+
+    public CardImportResponse getImport(String importId) {
+        ImportJob job = jobs.get(importId);
+        if (job == null) {
+            throw new CardNotFoundException("Import not found: " + importId);
+        }
+        return job.snapshot();
+    }
+
+    private ImportJob start(String importId) {
+        synchronized (jobs) {
+            ImportJob existing = jobs.get(importId);
+            if (existing != null && existing.status == CardImportResponse.Status.RUNNING) {
+                throw new CardException("Import is already running: " + importId);
+            }
+            ImportJob job = new ImportJob(importId, settings.getMaxErrors());
+            jobs.put(importId, job);
+            return job;
+        }
+    }
+
+    private Lookups loadLookups() {
+        return new Lookups(
+                new HashSet<>(userRepository.findAllIds()),
+                cardStatusRegistry.requireId(cardProperties.getStatus().getActive()),
+                cardStatusRegistry.requireId(cardProperties.getStatus().getExpired()));
+    }
+
+    private void submit(List<RawLine> batch,
+                        CardImportFormat format,
+                        Lookups lookups,
+                        Deque<CompletableFuture<PreparedBatch>> inFlight,
+                        ImportJob job) {
+        inFlight.add(CompletableFuture.supplyAsync(() -> prepare(batch, format, lookups), workers));
+        while (inFlight.size() >= maxInFlight) {
+            write(await(inFlight.poll()), job);
+        }
+    }
+
+    private static PreparedBatch await(CompletableFuture<PreparedBatch> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Runs on a worker: turns raw lines into encrypted rows and collects the lines that
+     * cannot be imported. Duplicates are left to the write, which sees every batch.
+     */
+    private PreparedBatch prepare(List<RawLine> batch, CardImportFormat format, Lookups lookups) {
+        List<ImportedCard> cards = new ArrayList<>(batch.size());
+        List<Long> lineNumbers = new ArrayList<>(batch.size());
+        List<CardImportLineError> errors = new ArrayList<>();
+
+        for (RawLine raw : batch) {
+            try {
+                CardDTO card = format == CardImportFormat.CSV ? parseCsv(raw.text()) : parseJson(raw.text());
+                String violations = validate(card);
+                if (violations != null) {
+                    errors.add(new CardImportLineError(raw.number(), violations));
+                    continue;
+                }
+                if (!lookups.ownerIds().contains(card.ownerId())) {
+                    errors.add(new CardImportLineError(raw.number(), "User not found: " + card.ownerId()));
+                    continue;
+                }
+
+                cards.add(new ImportedCard(
+                        cardEncryptor.encrypt(card.number()),
+                        cardEncryptor.blindIndex(card.number()),
+                        cardEncryptor.lastFour(card.number()),
+                        card.ownerId(),
+                        card.expiration().toInstant().atZone(ZoneId.systemDefault()).toLocalDate(),
+                        cardServiceValidator.isCardExpired(card.expiration())
+                                ? lookups.expiredStatusId()
+                                : lookups.activeStatusId(),
+                        card.balance()));
+                lineNumbers.add(raw.number());
+            } catch (IllegalArgumentException e) {
+                errors.add(new CardImportLineError(raw.number(), e.getMessage()));
+            }
+        }
+        return new PreparedBatch(cards, lineNumbers, errors);
+    }
+
+    private void write(PreparedBatch batch, ImportJob job) {
+        List<ImportedCard> unique = new ArrayList<>(batch.cards().size());
+        List<Long> uniqueLines = new ArrayList<>(batch.cards().size());
+        List<CardImportLineError> errors = new ArrayList<>(batch.errors());
+        Set<String> seen = new HashSet<>(batch.cards().size() * 2);
+
+        for (int i = 0; i < batch.cards().size(); i++) {
+            ImportedCard card = batch.cards().get(i);
+            if (seen.add(card.numberHash())) {
+                unique.add(card);
+                uniqueLines.add(batch.lineNumbers().get(i));
+            } else {
+                errors.add(new CardImportLineError(batch.lineNumbers().get(i), "Card with this number already exists"));
+            }
+        }
+
+        Set<String> inserted = unique.isEmpty() ? Set.of() : transactionTemplate.execute(status ->
+                cardRepository.insertImported(unique, cardEncryptor.activeKeyVersion(), LocalDateTime.now()));
+        int importedCount = 0;
+        for (int i = 0; i < unique.size(); i++) {
+            if (inserted != null && inserted.contains(unique.get(i).numberHash())) {
+                importedCount++;
+            } else {
+                errors.add(new CardImportLineError(uniqueLines.get(i), "Card with this number already exists"));
+            }
+        }
+
+        errors.sort(Comparator.comparingLong(CardImportLineError::line));
+        job.record(importedCount, errors);
+    }
+
+    private CardDTO parseCsv(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != CSV_COLUMNS) {
+            throw new IllegalArgumentException("Expected " + CSV_COLUMNS + " columns: number,ownerId,expiration,balance");
+        }
+        try {
+            return new CardDTO(
+                    blankToNull(fields[0]),
+                    fields[1].isBlank() ? null : Long.valueOf(fields[1].trim()),
+                    fields[2].isBlank() ? null : Date.from(LocalDate.parse(fields[2].trim())
+                            .atStartOfDay(ZoneId.systemDefault()).toInstant()),
+                    fields[3].isBlank() ? null : new BigDecimal(fields[3].trim()));
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed value: " + e.getMessage());
+        }
+    }
+
+    private CardDTO parseJson(String line) {
+        try {
+            return objectMapper.readValue(line, CardDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private String validate(CardDTO card) {
+        Set<ConstraintViolation<CardDTO>> violations = validator.validate(card);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return line.trim().regionMatches(true, 0, CSV_HEADER, 0, CSV_HEADER.length());
+    }
+
+    private static String blankToNull(String value) {
+        return value.isBlank() ? null : value.trim();
+    }
+
+    private record RawLine(long number, String text) {
+    }
+
+    private record Lookups(Set<Long> ownerIds, Long activeStatusId, Long expiredStatusId) {
+    }
+
+    private record PreparedBatch(List<ImportedCard> cards, List<Long> lineNumbers, List<CardImportLineError> errors) {
+    }
+
+    /**
+     * Progress of one import. Only the request thread writes it; the status endpoint
+     * reads it from other threads, hence the atomics.
+     */
+    private static final class ImportJob {
+
+        private final String id;
+        private final int maxErrors;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicLong lines = new AtomicLong();
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final List<CardImportLineError> errors = new ArrayList<>();
+        private volatile CardImportResponse.Status status = CardImportResponse.Status.RUNNING;
+        private volatile LocalDateTime finishedAt;
+
+        private ImportJob(String id, int maxErrors) {
+            this.id = id;
+            this.maxErrors = maxErrors;
+        }
+
+        private void record(int importedCount, List<CardImportLineError> lineErrors) {
+            imported.addAndGet(importedCount);
+            failed.addAndGet(lineErrors.size());
+            synchronized (errors) {
+                for (CardImportLineError error : lineErrors) {
+                    if (errors.size() >= maxErrors) {
+                        break;
+                    }
+                    errors.add(error);
+                }
+            }
+        }
+
+        private void finish(CardImportResponse.Status finalStatus) {
+            finishedAt = LocalDateTime.now();
+            status = finalStatus;
+        }
+
+        private CardImportResponse snapshot() {
+            List<CardImportLineError> reported;
+            synchronized (errors) {
+                reported = List.copyOf(errors);
+            }
+            return new CardImportResponse(id, status, lines.get(), imported.get(), failed.get(),
+                    reported, startedAt, finishedAt);
+        }
+    }
+}
@@ -1,26 +1,65 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BatchTransferDTO;
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardSort;
 import com.example.bankcards.dto.TransferDTO;
+import com.example.bankcards.dto.TransferDirection;
+import com.example.bankcards.dto.responce.BatchTransferResponse;
+import com.example.bankcards.dto.responce.CardBalanceResponse;
 import com.example.bankcards.dto.responce.CardResponse;
+import com.example.bankcards.dto.responce.CardRollupResponse;
+import com.example.bankcards.dto.responce.SliceResponse;
+import com.example.bankcards.dto.responce.TransferHistoryResponse;
+import com.example.bankcards.security.UserPrincipal;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 public interface CardService {
 
     CardResponse createCard(CardDTO cardDTO);
 
-    Page<CardResponse> getCards(String status, String owner, Pageable pageable, String username);
+    Page<CardResponse> getCards(String status, String owner, Pageable pageable, UserPrincipal principal);
+
+    SliceResponse<CardResponse> scrollCards(String status,
+                                            String owner,
+                                            CardSort sort,
+                                            Sort.Direction direction,
+                                            String cursor,
+                                            int size,
+                                            UserPrincipal principal);
+
+    CardResponse getCardById(Long id, UserPrincipal principal);
+
+    CardResponse getCardByNumber(String number);
 
-    CardResponse getCardById(Long id, String username);
+    CardBalanceResponse getBalanceAt(Long id, LocalDateTime asOf, UserPrincipal principal);
+
+    TransferHistoryResponse getTransferHistory(Long id,
+                                               TransferDirection direction,
+                                               LocalDateTime from,
+                                               LocalDateTime to,
+                                               String cursor,
+                                               int size,
+                                               UserPrincipal principal);
+
+    CardRollupResponse getRollups(Long id, LocalDate from, LocalDate to, UserPrincipal principal);
 
     CardResponse updateCard(Long id, CardDTO cardDTO);
 
+    CardResponse updateBalanceShards(Long id, int shardCount);
+
     void deleteCard(Long id);
 
-    void transfer(TransferDTO transferDTO, String username);
+    void transfer(TransferDTO transferDTO, UserPrincipal principal);
+
+    BatchTransferResponse transferBatch(BatchTransferDTO batchTransferDTO, UserPrincipal principal);
 
-    void requestBlock(Long id, String username);
+    void requestBlock(Long id, UserPrincipal principal);
 
     void blockCardAdmin(Long id);
 
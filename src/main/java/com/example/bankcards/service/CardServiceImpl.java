@@ -1,38 +1,85 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BatchTransferDTO;
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardSort;
 import com.example.bankcards.dto.TransferDTO;
+import com.example.bankcards.dto.TransferDirection;
+import com.example.bankcards.dto.responce.BatchTransferItemResult;
+import com.example.bankcards.dto.responce.BatchTransferResponse;
+import com.example.bankcards.dto.responce.CardBalanceResponse;
 import com.example.bankcards.dto.responce.CardResponse;
+import com.example.bankcards.dto.responce.CardRollupResponse;
+import com.example.bankcards.dto.responce.SliceResponse;
+import com.example.bankcards.dto.responce.TransferHistoryItem;
+import com.example.bankcards.dto.responce.TransferHistoryResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.Transfer;
-import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardException;
 import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.TransferConflictException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.projection.CardListingSlice;
+import com.example.bankcards.repository.projection.TransferOutcome;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.service.transfer.BalanceShards;
+import com.example.bankcards.service.transfer.ShardedTransferEngine;
+import com.example.bankcards.service.transfer.TransferExecutor;
 import com.example.bankcards.util.CardEncryptor;
 import com.example.bankcards.util.CardSpecifications;
+import com.example.bankcards.util.KeysetCursor;
+import com.example.bankcards.util.SortCursor;
 import com.example.bankcards.util.mapper.CardMapper;
 import com.example.bankcards.util.properties.CardProperties;
+import com.example.bankcards.util.properties.PagingProperties;
+import com.example.bankcards.util.properties.TransferProperties;
 import com.example.bankcards.util.validator.CardServiceValidator;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class CardServiceImpl implements CardService {
 
+    private static final String CARDS_DENIED = "Access denied: Cards must belong to user";
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime HISTORY_END = LocalDateTime.of(9999, 12, 31, 0, 0);
+    private static final Comparator<TransferHistoryItem> NEWEST_FIRST = Comparator
+            .comparing(TransferHistoryItem::createdAt)
+            .thenComparing(TransferHistoryItem::id)
+            .reversed();
+
     private final CardProperties cardStatus;
     private final CardRepository cardRepository;
     private final UserService userService;
@@ -40,13 +87,29 @@ public class CardServiceImpl implements CardService {
     private final TransferRepository transferRepository;
     private final CardEncryptor cardEncryptor;
     private final CardMapper cardMapper;
+    private final TransferExecutor transferExecutor;
+    private final TransferProperties transferProperties;
+    private final LedgerService ledgerService;
+    private final RollupService rollupService;
+    private final BalanceShards balanceShards;
+    private final ShardedTransferEngine transferEngine;
+    private final IdempotencyService idempotencyService;
+    private final PagingProperties pagingProperties;
 
     @Transactional
     public CardResponse createCard(@Valid CardDTO cardDTO) {
         log.info("Creating card for ownerId: {}", cardDTO.ownerId());
 
+        String numberHash = cardEncryptor.blindIndex(cardDTO.number());
+        if (cardRepository.existsByNumberHash(numberHash)) {
+            throw new CardException("Card with this number already exists");
+        }
+
         Card card = Card.builder()
                 .number(cardEncryptor.encrypt(cardDTO.number()))
+                .numberHash(numberHash)
+                .last4(cardEncryptor.lastFour(cardDTO.number()))
+                .numberKeyVersion(cardEncryptor.activeKeyVersion())
                 .owner(userService.requireUserById(cardDTO.ownerId()))
                 .expiration(cardDTO.expiration())
                 .balance(cardDTO.balance())
@@ -54,6 +117,7 @@ public class CardServiceImpl implements CardService {
 
         card.setStatus(validator.determineCardStatus(cardDTO.expiration()));
         Card savedCard = cardRepository.save(card);
+        ledgerService.recordAdjustment(savedCard.getId(), savedCard.getBalance());
 
         return cardMapper.toResponseWithMask(savedCard);
     }
@@ -62,84 +126,246 @@ public class CardServiceImpl implements CardService {
     public Page<CardResponse> getCards(String status,
                                        String owner,
                                        Pageable pageable,
-                                       String username) {
-        log.info("Fetching cards for user: {}, status: {}, owner: {}", username, status, owner);
+                                       UserPrincipal principal) {
+        log.info("Fetching cards for user: {}, status: {}, owner: {}", principal.getUsername(), status, owner);
 
-        User currentUser = userService.requireUserByUsername(username);
-        boolean isAdmin = currentUser.getRole() == Role.ADMIN;
+        return cardRepository.findListing(listingSpec(status, owner, principal), pageable)
+                .map(cardMapper::toResponseWithMask);
+    }
+
+    @Transactional(readOnly = true)
+    public SliceResponse<CardResponse> scrollCards(String status,
+                                                   String owner,
+                                                   CardSort sort,
+                                                   Sort.Direction direction,
+                                                   String cursor,
+                                                   int size,
+                                                   UserPrincipal principal) {
+        int maxPageSize = pagingProperties.getMaxPageSize();
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + maxPageSize);
+        }
+        SortCursor position = cursor != null ? SortCursor.decode(cursor, sort.name(), direction) : null;
+
+        CardListingSlice slice = cardRepository.findListingAfter(
+                listingSpec(status, owner, principal),
+                sort.attribute(),
+                direction.isDescending(),
+                position != null ? sort.parseKey(position.key()) : null,
+                position != null ? position.id() : null,
+                size);
+
+        List<CardResponse> items = slice.rows().stream().map(cardMapper::toResponseWithMask).toList();
+        if (!slice.hasNext()) {
+            return new SliceResponse<>(items, null);
+        }
+        Long lastId = slice.rows().get(slice.rows().size() - 1).id();
+        return new SliceResponse<>(items,
+                new SortCursor(sort.name(), direction, sort.formatKey(slice.lastKey()), lastId).encode());
+    }
 
+    private Specification<Card> listingSpec(String status, String owner, UserPrincipal principal) {
         CardStatus filterStatus = status != null ? validator.requireStatus(status) : null;
-        User filterOwner = null;
+        Long filterOwnerId = null;
 
-        if (isAdmin && owner != null) {
-            filterOwner = userService.requireUserByUsername(owner);
-        } else if (!isAdmin) {
-            filterOwner = currentUser;
+        if (isAdmin(principal) && owner != null) {
+            filterOwnerId = userService.requireUserByUsername(owner).getId();
+        } else if (!isAdmin(principal)) {
+            filterOwnerId = principal.getId();
         }
 
-        Specification<Card> spec = Specification.allOf(
+        return Specification.allOf(
                 CardSpecifications.hasStatus(filterStatus),
-                CardSpecifications.hasOwner(filterOwner)
+                CardSpecifications.hasOwnerId(filterOwnerId)
         );
+    }
 
-        return cardRepository.findAll(spec, pageable)
-                .map(cardMapper::toResponseWithMask);
+    @Transactional(readOnly = true)
+    public CardResponse getCardById(Long id, UserPrincipal principal) {
+        Optional<Card> card = isAdmin(principal)
+                ? cardRepository.findById(id)
+                : cardRepository.findByIdAndOwnerId(id, principal.getId());
+
+        return cardMapper.toResponseWithMask(balanceShards.loadPending(
+                card.orElseThrow(() -> inaccessibleCard(id, "Access denied: Card does not belong to user"))));
     }
 
     @Transactional(readOnly = true)
-    public CardResponse getCardById(Long id, String username) {
-        Card card = requireCardById(id);
-        User currentUser = userService.requireUserByUsername(username);
+    public CardResponse getCardByNumber(String number) {
+        return cardRepository.findByNumberHash(cardEncryptor.blindIndex(number))
+                .map(balanceShards::loadPending)
+                .map(cardMapper::toResponseWithMask)
+                .orElseThrow(() -> new CardNotFoundException("Card not found"));
+    }
+
+    @Transactional(readOnly = true)
+    public CardBalanceResponse getBalanceAt(Long id, LocalDateTime asOf, UserPrincipal principal) {
+        requireCardAccess(id, principal);
+
+        return ledgerService.getBalanceAt(id, asOf != null ? asOf : LocalDateTime.now());
+    }
+
+    @Transactional(readOnly = true)
+    public CardRollupResponse getRollups(Long id, LocalDate from, LocalDate to, UserPrincipal principal) {
+        requireCardAccess(id, principal);
+
+        return rollupService.getRollups(id, from, to);
+    }
+
+    /**
+     * Seeks one page past the cursor on the per-direction indexes. Both directions are
+     * read with the same limit and merged, so a page never costs more than two index
+     * range scans of {@code size + 1} rows.
+     */
+    @Transactional(readOnly = true)
+    public TransferHistoryResponse getTransferHistory(Long id,
+                                                      TransferDirection direction,
+                                                      LocalDateTime from,
+                                                      LocalDateTime to,
+                                                      String cursor,
+                                                      int size,
+                                                      UserPrincipal principal) {
+        requireCardAccess(id, principal);
+
+        LocalDateTime lower = from != null ? from : HISTORY_START;
+        LocalDateTime upper = to != null ? to : HISTORY_END;
+        if (!lower.isBefore(upper)) {
+            throw new IllegalArgumentException("History range start must be before its end");
+        }
+
+        int maxPageSize = transferProperties.getHistory().getMaxPageSize();
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + maxPageSize);
+        }
 
-        validator.validateCardAccess(card, currentUser);
+        KeysetCursor position = cursor != null ? KeysetCursor.decode(cursor) : new KeysetCursor(upper, Long.MAX_VALUE);
+        Limit limit = Limit.of(size + 1);
+
+        List<TransferHistoryItem> rows = switch (direction) {
+            case OUT -> transferRepository.findOutgoingHistory(
+                    id, lower, upper, position.createdAt(), position.id(), limit);
+            case IN -> transferRepository.findIncomingHistory(
+                    id, lower, upper, position.createdAt(), position.id(), limit);
+            case ALL -> mergeHistory(
+                    transferRepository.findOutgoingHistory(id, lower, upper, position.createdAt(), position.id(), limit),
+                    transferRepository.findIncomingHistory(id, lower, upper, position.createdAt(), position.id(), limit),
+                    size + 1);
+        };
+
+        if (rows.size() <= size) {
+            return new TransferHistoryResponse(rows, null);
+        }
 
-        return cardMapper.toResponseWithMask(card);
+        List<TransferHistoryItem> page = rows.subList(0, size);
+        TransferHistoryItem last = page.get(size - 1);
+        return new TransferHistoryResponse(page, new KeysetCursor(last.createdAt(), last.id()).encode());
     }
 
     @Transactional
     public CardResponse updateCard(Long id, @Valid CardDTO cardDTO) {
         Card card = requireCardById(id);
+        // the admin sets the total, so pending shard credits are folded in first
+        balanceShards.consolidate(card);
+        ledgerService.recordAdjustment(id, cardDTO.balance().subtract(card.getBalance()));
+
+        String numberHash = cardEncryptor.blindIndex(cardDTO.number());
+        if (cardRepository.existsByNumberHashAndIdNot(numberHash, id)) {
+            throw new CardException("Card with this number already exists");
+        }
 
         card.setNumber(cardEncryptor.encrypt(cardDTO.number()));
+        card.setNumberHash(numberHash);
+        card.setLast4(cardEncryptor.lastFour(cardDTO.number()));
+        card.setNumberKeyVersion(cardEncryptor.activeKeyVersion());
         card.setOwner(userService.requireUserById(cardDTO.ownerId()));
         card.setExpiration(cardDTO.expiration());
         card.setBalance(cardDTO.balance());
 
         updateCardStatusBasedOnExpiration(card, cardDTO.expiration());
+        transferEngine.evict(id);
 
         return cardMapper.toResponse(cardRepository.save(card));
     }
 
+    @Transactional
+    public CardResponse updateBalanceShards(Long id, int shardCount) {
+        int maxCount = transferProperties.getShards().getMaxCount();
+        if (shardCount < 1 || shardCount > maxCount) {
+            throw new IllegalArgumentException("Balance shard count must be between 1 and " + maxCount);
+        }
+
+        Card card = requireCardForUpdate(id);
+        if (shardCount == 1) {
+            balanceShards.consolidate(card);
+        } else {
+            balanceShards.loadPending(card);
+        }
+        card.setBalanceShards(shardCount);
+        balanceShards.evict(id);
+        transferEngine.evict(id);
+
+        log.info("Card {} now spreads inbound credits over {} balance shards", id, shardCount);
+        return cardMapper.toResponseWithMask(cardRepository.save(card));
+    }
+
     @Transactional
     public void deleteCard(Long id) {
         cardRepository.delete(requireCardById(id));
+        transferEngine.evict(id);
     }
 
-    @Transactional
-    public void transfer(@Valid TransferDTO transferDTO, String username) {
-        User currentUser = userService.requireUserByUsername(username);
+    public void transfer(@Valid TransferDTO transferDTO, UserPrincipal currentUser) {
+        List<Long> cardIds = List.of(transferDTO.fromCardId(), transferDTO.toCardId());
+
+        switch (transferProperties.getMode()) {
+            case CONDITIONAL -> transferExecutor.run(cardIds, () -> conditionalTransfer(transferDTO, currentUser));
+            case OPTIMISTIC -> transferExecutor.runWithRetry(() -> optimisticTransfer(transferDTO, currentUser));
+            case ENGINE -> transferEngine.transfer(
+                    transferDTO.fromCardId(), transferDTO.toCardId(), transferDTO.amount(), currentUser);
+            default -> {
+                // a sharded target is credited on a shard row, so neither its stripe nor its row is locked
+                List<Long> lockedIds = balanceShards.isSharded(transferDTO.toCardId())
+                        ? List.of(transferDTO.fromCardId())
+                        : cardIds;
+                transferExecutor.run(lockedIds, () -> lockingTransfer(transferDTO, currentUser, lockedIds));
+            }
+        }
+    }
 
-        Card fromCard = requireCardById(transferDTO.fromCardId());
-        Card toCard = requireCardById(transferDTO.toCardId());
+    public BatchTransferResponse transferBatch(@Valid BatchTransferDTO batchTransferDTO, UserPrincipal currentUser) {
+        List<TransferDTO> transfers = batchTransferDTO.transfers();
+        int maxSize = transferProperties.getBatch().getMaxSize();
+        if (transfers.size() > maxSize) {
+            throw new IllegalArgumentException("Batch exceeds maximum size of " + maxSize + " transfers");
+        }
 
-        validator.validateCardOwnership(fromCard, toCard, currentUser);
-        validator.validateCardStatus(fromCard, toCard);
-        validator.validateSufficientBalance(fromCard, transferDTO.amount());
+        Set<Long> cardIds = new TreeSet<>();
+        transfers.forEach(transfer -> {
+            cardIds.add(transfer.fromCardId());
+            cardIds.add(transfer.toCardId());
+        });
+
+        log.info("Batch transfer of {} items over {} cards for user: {}",
+                transfers.size(), cardIds.size(), currentUser.getUsername());
 
-        performTransfer(fromCard, toCard, transferDTO.amount());
-        createTransferRecord(fromCard, toCard, transferDTO.amount());
+        if (transferProperties.getMode() == TransferProperties.Mode.ENGINE) {
+            return engineBatch(transfers, batchTransferDTO.atomic(), currentUser);
+        }
+
+        return transferExecutor.execute(cardIds, () ->
+                applyBatch(transfers, batchTransferDTO.atomic(), currentUser, cardIds));
     }
 
     @Transactional
-    public void requestBlock(Long id, String username) {
-        Card card = requireCardById(id);
-        User currentUser = userService.requireUserByUsername(username);
+    public void requestBlock(Long id, UserPrincipal principal) {
+        Card card = cardRepository.findByIdAndOwnerId(id, principal.getId())
+                .orElseThrow(() -> inaccessibleCard(id, "Access denied: Card does not belong to user"));
 
-        validator.validateCardOwnership(card, currentUser);
         validator.validateCardIsActive(card);
 
         card.setStatus(validator.requireStatus(cardStatus.getStatus().getBlocked()));
         cardRepository.save(card);
+        transferEngine.evict(id);
     }
 
     @Transactional
@@ -148,6 +374,7 @@ public class CardServiceImpl implements CardService {
         card.setStatus(validator.requireStatus(cardStatus.getStatus().getBlocked()));
 
         cardRepository.save(card);
+        transferEngine.evict(id);
     }
 
     @Transactional
@@ -156,13 +383,237 @@ public class CardServiceImpl implements CardService {
         card.setStatus(validator.requireStatus(cardStatus.getStatus().getActive()));
 
         cardRepository.save(card);
+        transferEngine.evict(id);
     }
 
-    private void performTransfer(Card fromCard, Card toCard, BigDecimal amount) {
-        fromCard.setBalance(fromCard.getBalance().subtract(amount));
-        toCard.setBalance(toCard.getBalance().add(amount));
+    private void lockingTransfer(TransferDTO transferDTO, UserPrincipal currentUser, List<Long> lockedIds) {
+        Map<Long, Card> lockedCards = requireOwnedCards(
+                cardRepository.findAllByIdAndOwnerIdForUpdate(lockedIds, currentUser.getId()), lockedIds);
+        boolean creditToShard = !lockedCards.containsKey(transferDTO.toCardId());
+        Card toCard = creditToShard
+                ? cardRepository.findByIdAndOwnerId(transferDTO.toCardId(), currentUser.getId())
+                        .orElseThrow(() -> inaccessibleCard(transferDTO.toCardId(), CARDS_DENIED))
+                : lockedCards.get(transferDTO.toCardId());
+
+        applyTransfer(lockedCards.get(transferDTO.fromCardId()),
+                toCard,
+                transferDTO.amount(),
+                currentUser,
+                creditToShard);
+    }
+
+    /**
+     * Reads both cards without locks; the version check on flush rejects the commit
+     * if either card changed meanwhile, and the executor re-runs this in a new transaction.
+     */
+    private void optimisticTransfer(TransferDTO transferDTO, UserPrincipal currentUser) {
+        List<Long> cardIds = List.of(transferDTO.fromCardId(), transferDTO.toCardId());
+        Map<Long, Card> cards = requireOwnedCards(
+                cardRepository.findAllByIdAndOwnerId(cardIds, currentUser.getId()), cardIds);
+        Card toCard = cards.get(transferDTO.toCardId());
+
+        applyTransfer(cards.get(transferDTO.fromCardId()),
+                toCard,
+                transferDTO.amount(),
+                currentUser,
+                toCard.isSharded());
+    }
+
+    private void applyTransfer(Card fromCard,
+                               Card toCard,
+                               BigDecimal amount,
+                               UserPrincipal currentUser,
+                               boolean creditToShard) {
+        validator.validateCardOwnership(fromCard, toCard, currentUser);
+        validator.validateCardStatus(fromCard, toCard);
+        balanceShards.consolidateIfShort(fromCard, amount);
+        validator.validateSufficientBalance(fromCard, amount);
+
+        performTransfer(fromCard, toCard, amount, creditToShard);
+        createTransferRecord(fromCard, toCard, amount, creditToShard);
+    }
+
+    private void conditionalTransfer(TransferDTO transferDTO, UserPrincipal currentUser) {
+        // both updates hit the same row for a self-transfer, which Postgres applies only once
+        validator.validateDistinctCards(transferDTO.fromCardId(), transferDTO.toCardId());
+        CardStatus activeStatus = validator.requireStatus(cardStatus.getStatus().getActive());
+
+        TransferOutcome outcome = transferRepository.transferIfSufficient(
+                transferDTO.fromCardId(),
+                transferDTO.toCardId(),
+                currentUser.getId(),
+                activeStatus.getId(),
+                transferDTO.amount(),
+                LocalDateTime.now());
+
+        if (outcome.getDebited() == 0 || outcome.getCredited() == 0) {
+            throw rejectedTransfer(transferDTO, currentUser);
+        }
+    }
+
+    /**
+     * Runs only after the guarded statement matched nothing: re-reads both cards to
+     * report which guard failed. Throwing rolls back a debit whose credit was rejected.
+     */
+    private RuntimeException rejectedTransfer(TransferDTO transferDTO, UserPrincipal currentUser) {
+        Card fromCard = requireCardById(transferDTO.fromCardId());
+        Card toCard = requireCardById(transferDTO.toCardId());
+
+        validator.validateCardOwnership(fromCard, toCard, currentUser);
+        validator.validateCardStatus(fromCard, toCard);
+        // the guard counted shard rows too; folding them is rolled back with the failed transfer
+        balanceShards.consolidateIfShort(fromCard, transferDTO.amount());
+        validator.validateSufficientBalance(fromCard, transferDTO.amount());
+
+        return new TransferConflictException("Card state changed during transfer, retry the transfer");
+    }
+
+    /**
+     * Validates ownership and status once per distinct card, then applies the items in
+     * order against the locked balances. Rejected items are reported, or abort the whole
+     * batch when it is atomic. Each touched card is written once, and the transfer rows
+     * go out through Hibernate JDBC batching.
+     */
+    private BatchTransferResponse applyBatch(List<TransferDTO> transfers,
+                                             boolean atomic,
+                                             UserPrincipal currentUser,
+                                             Collection<Long> cardIds) {
+        Map<Long, Card> cards = new HashMap<>();
+        Map<Long, String> cardErrors = new HashMap<>();
+
+        for (Card card : cardRepository.findAllByIdForUpdate(cardIds)) {
+            cards.put(card.getId(), card);
+            try {
+                validator.validateCardOwnership(card, currentUser);
+                validator.validateCardStatus(card);
+            } catch (RuntimeException e) {
+                cardErrors.put(card.getId(), e.getMessage());
+            }
+        }
+
+        List<BatchTransferItemResult> results = new ArrayList<>(transfers.size());
+        List<Transfer> records = new ArrayList<>();
+        Set<Card> touchedCards = new HashSet<>();
+
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferDTO item = transfers.get(i);
+            Card fromCard = cards.get(item.fromCardId());
+            Card toCard = cards.get(item.toCardId());
+
+            try {
+                validateBatchItem(item, fromCard, toCard, cardErrors);
+            } catch (RuntimeException e) {
+                if (atomic) {
+                    throw new CardException("Transfer #" + i + " rejected: " + e.getMessage());
+                }
+                results.add(new BatchTransferItemResult(
+                        i, item.fromCardId(), item.toCardId(), item.amount(), false, e.getMessage()));
+                continue;
+            }
+
+            fromCard.setBalance(fromCard.getBalance().subtract(item.amount()));
+            toCard.setBalance(toCard.getBalance().add(item.amount()));
+            touchedCards.add(fromCard);
+            touchedCards.add(toCard);
+            records.add(Transfer.builder()
+                    .fromCard(fromCard)
+                    .toCard(toCard)
+                    .amount(item.amount())
+                    .build());
+            results.add(new BatchTransferItemResult(
+                    i, item.fromCardId(), item.toCardId(), item.amount(), true, null));
+        }
+
+        cardRepository.saveAll(touchedCards);
+        transferRepository.saveAll(records);
+        ledgerService.recordTransfers(records);
+        rollupService.recordTransfers(records);
+
+        return new BatchTransferResponse(records.size(), transfers.size() - records.size(), results);
+    }
+
+    /**
+     * Submits every item to the engine at once and waits for all acknowledgements, so
+     * the items share group commits. Items on different shards commit independently,
+     * which is why the engine cannot honour an atomic batch, nor record one outcome for
+     * an idempotent batch in the transaction that applies it.
+     */
+    private BatchTransferResponse engineBatch(List<TransferDTO> transfers,
+                                              boolean atomic,
+                                              UserPrincipal currentUser) {
+        if (atomic) {
+            throw new IllegalArgumentException("Atomic batches are not supported in engine transfer mode");
+        }
+        if (idempotencyService.currentClaim() != null) {
+            throw new IllegalArgumentException("Idempotency-Key is not supported for batches in engine transfer mode");
+        }
 
+        long ackTimeoutMs = transferProperties.getEngine().getAckTimeoutMs();
+        List<CompletableFuture<Void>> acks = transfers.stream()
+                .map(item -> transferEngine.submit(item.fromCardId(), item.toCardId(), item.amount(), currentUser)
+                        .orTimeout(ackTimeoutMs, TimeUnit.MILLISECONDS))
+                .toList();
+
+        List<BatchTransferItemResult> results = new ArrayList<>(transfers.size());
+        int succeeded = 0;
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferDTO item = transfers.get(i);
+            String error = null;
+            try {
+                acks.get(i).join();
+                succeeded++;
+            } catch (CompletionException e) {
+                error = e.getCause() instanceof TimeoutException
+                        ? "Transfer was not acknowledged in time"
+                        : e.getCause().getMessage();
+            }
+            results.add(new BatchTransferItemResult(
+                    i, item.fromCardId(), item.toCardId(), item.amount(), error == null, error));
+        }
+
+        return new BatchTransferResponse(succeeded, transfers.size() - succeeded, results);
+    }
+
+    // a transfer from the card to itself shows up in both directions, so ids are deduplicated
+    private List<TransferHistoryItem> mergeHistory(List<TransferHistoryItem> outgoing,
+                                                   List<TransferHistoryItem> incoming,
+                                                   int limit) {
+        Set<Long> seen = new HashSet<>();
+        List<TransferHistoryItem> merged = new ArrayList<>(outgoing);
+        merged.addAll(incoming);
+        merged.sort(NEWEST_FIRST);
+
+        return merged.stream()
+                .filter(item -> seen.add(item.id()))
+                .limit(limit)
+                .toList();
+    }
+
+    private void validateBatchItem(TransferDTO item, Card fromCard, Card toCard, Map<Long, String> cardErrors) {
+        validator.validateDistinctCards(item.fromCardId(), item.toCardId());
+        if (fromCard == null || toCard == null) {
+            throw new CardNotFoundException("Card not found: " + (fromCard == null ? item.fromCardId() : item.toCardId()));
+        }
+        if (cardErrors.containsKey(item.fromCardId())) {
+            throw new CardException(cardErrors.get(item.fromCardId()));
+        }
+        if (cardErrors.containsKey(item.toCardId())) {
+            throw new CardException(cardErrors.get(item.toCardId()));
+        }
+        // the card is locked and managed, so folded shards are flushed even if the item is rejected
+        balanceShards.consolidateIfShort(fromCard, item.amount());
+        validator.validateSufficientBalance(fromCard, item.amount());
+    }
+
+    private void performTransfer(Card fromCard, Card toCard, BigDecimal amount, boolean creditToShard) {
+        fromCard.setBalance(fromCard.getBalance().subtract(amount));
         cardRepository.save(fromCard);
+
+        if (creditToShard) {
+            balanceShards.credit(toCard, amount);
+            return;
+        }
+        toCard.setBalance(toCard.getBalance().add(amount));
         cardRepository.save(toCard);
     }
 
@@ -172,7 +623,7 @@ public class CardServiceImpl implements CardService {
         }
     }
 
-    private void createTransferRecord(Card fromCard, Card toCard, BigDecimal amount) {
+    private void createTransferRecord(Card fromCard, Card toCard, BigDecimal amount, boolean creditToShard) {
         Transfer transfer = Transfer.builder()
                 .fromCard(fromCard)
                 .toCard(toCard)
@@ -180,10 +631,55 @@ public class CardServiceImpl implements CardService {
                 .build();
 
         transferRepository.save(transfer);
+        ledgerService.recordTransfer(transfer);
+        rollupService.recordTransfer(transfer, creditToShard);
     }
 
     private Card requireCardById(Long cardId) {
         return cardRepository.findById(cardId)
                 .orElseThrow(() -> new CardNotFoundException("Card not found: " + cardId));
     }
+
+    /**
+     * Indexes cards read by an owner-scoped query and fails on the first requested id the
+     * query did not return. Locking reads sort by id, so rows are locked in id order.
+     */
+    private Map<Long, Card> requireOwnedCards(List<Card> found, Collection<Long> cardIds) {
+        Map<Long, Card> cards = new HashMap<>();
+        found.forEach(card -> cards.put(card.getId(), card));
+        for (Long cardId : cardIds) {
+            if (!cards.containsKey(cardId)) {
+                throw inaccessibleCard(cardId, CARDS_DENIED);
+            }
+        }
+        return cards;
+    }
+
+    private void requireCardAccess(Long cardId, UserPrincipal principal) {
+        boolean accessible = isAdmin(principal)
+                ? cardRepository.existsById(cardId)
+                : cardRepository.existsByIdAndOwnerId(cardId, principal.getId());
+        if (!accessible) {
+            throw inaccessibleCard(cardId, "Access denied: Card does not belong to user");
+        }
+    }
+
+    /**
+     * Explains an owner-scoped lookup that matched nothing. Only this failure path pays
+     * the extra query that tells a missing card from someone else's.
+     */
+    private RuntimeException inaccessibleCard(Long cardId, String deniedMessage) {
+        return cardRepository.existsById(cardId)
+                ? new SecurityException(deniedMessage)
+                : new CardNotFoundException("Card not found: " + cardId);
+    }
+
+    private static boolean isAdmin(UserPrincipal principal) {
+        return principal.getRole() == Role.ADMIN;
+    }
+
+    private Card requireCardForUpdate(Long cardId) {
+        return cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new CardNotFoundException("Card not found: " + cardId));
+    }
 }
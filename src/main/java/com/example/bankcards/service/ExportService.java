@@ -0,0 +1,14 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.ExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+public interface ExportService {
+
+    void exportCards(OutputStream out, ExportFormat format) throws IOException;
+
+    void exportTransfers(OutputStream out, ExportFormat format, LocalDateTime from, LocalDateTime to) throws IOException;
+}
@@ -0,0 +1,89 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.ExportFormat;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.projection.CardExportRow;
+import com.example.bankcards.repository.projection.TransferExportRow;
+import com.example.bankcards.util.CardEncryptor;
+import com.example.bankcards.util.ExportWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Streams exports straight from a database cursor to the response. Rows are masked and
+ * written as they arrive, so memory use does not depend on the size of the export. The
+ * transaction stays open for as long as the client takes to read the body.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ExportServiceImpl implements ExportService {
+
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime HISTORY_END = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private final CardRepository cardRepository;
+    private final TransferRepository transferRepository;
+    private final CardEncryptor cardEncryptor;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public void exportCards(OutputStream out, ExportFormat format) throws IOException {
+        ExportWriter writer = ExportWriter.of(format, out, objectMapper,
+                "id", "cardNumber", "ownerId", "owner", "expiryDate", "status", "balance");
+        long exported = 0;
+
+        try (Stream<CardExportRow> rows = cardRepository.streamAllForExport()) {
+            Iterator<CardExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                CardExportRow row = iterator.next();
+                writer.row(
+                        row.getId(),
+                        cardEncryptor.maskStored(row.getLast4(), row.getNumber()),
+                        row.getOwnerId(),
+                        row.getOwner(),
+                        row.getExpiration(),
+                        row.getStatus(),
+                        row.getPendingBalance() != null ? row.getBalance().add(row.getPendingBalance()) : row.getBalance());
+                exported++;
+            }
+        }
+        writer.flush();
+        log.info("Exported {} cards as {}", exported, format);
+    }
+
+    @Transactional(readOnly = true)
+    public void exportTransfers(OutputStream out, ExportFormat format, LocalDateTime from, LocalDateTime to)
+            throws IOException {
+        LocalDateTime lower = from != null ? from : HISTORY_START;
+        LocalDateTime upper = to != null ? to : HISTORY_END;
+        if (!lower.isBefore(upper)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+
+        ExportWriter writer = ExportWriter.of(format, out, objectMapper,
+                "id", "fromCardId", "toCardId", "amount", "createdAt");
+        long exported = 0;
+
+        try (Stream<TransferExportRow> rows = transferRepository.streamForExport(lower, upper)) {
+            Iterator<TransferExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                TransferExportRow row = iterator.next();
+                writer.row(row.getId(), row.getFromCardId(), row.getToCardId(), row.getAmount(), row.getCreatedAt());
+                exported++;
+            }
+        }
+        writer.flush();
+        log.info("Exported {} transfers between {} and {} as {}", exported, lower, upper, format);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.service;
+
+/**
+ * An idempotent request that is running: the key it claimed and the fingerprint of its body.
+ */
+public record IdempotencyClaim(String scope, String key, String fingerprint) {
+}
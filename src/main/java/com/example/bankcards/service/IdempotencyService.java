@@ -0,0 +1,25 @@
+package com.example.bankcards.service;
+
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+
+    /**
+     * Runs {@code action} at most once per {@code (scope, key)} and replays its stored
+     * result for repeats of the same request. A {@code null} key runs the action directly.
+     */
+    <T> T execute(String scope, String key, Object request, Class<T> resultType, Supplier<T> action);
+
+    /**
+     * The idempotent request whose action runs on the calling thread, or {@code null}.
+     */
+    IdempotencyClaim currentClaim();
+
+    /**
+     * Inserts the claim's outcome in the caller's transaction, so that it commits or rolls
+     * back with the work it describes. Does nothing for a {@code null} claim.
+     */
+    void record(IdempotencyClaim claim, Object result);
+
+    int purgeExpired();
+}
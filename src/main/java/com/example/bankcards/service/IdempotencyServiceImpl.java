@@ -0,0 +1,328 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.IdempotencyKeyId;
+import com.example.bankcards.exception.IdempotencyKeyException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.util.cache.LruCache;
+import com.example.bankcards.util.properties.TransferProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency keys backed by the {@code idempotency_keys} table. The action's own
+ * transaction inserts the outcome row (see {@link #record}), so the row exists exactly
+ * when the work committed and its primary key rejects a second commit of the same key.
+ * <p>
+ * Redis and a bounded in-process LRU cache completed outcomes in front of the table.
+ * Concurrent requests with the same key on this node wait on the first one's future;
+ * across nodes the first {@code SET NX} takes a pending lease, renewed while the action
+ * runs, and the rest poll. A lost lease or a Redis outage only costs the duplicate a
+ * rolled-back transaction, never a second commit.
+ */
+@Slf4j
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private final StringRedisTemplate redisTemplate;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final TransferProperties.Idempotency properties;
+    private final LruCache<String, IdempotencyRecord> completedRecords;
+    private final ConcurrentMap<String, CompletableFuture<IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+    private final ThreadLocal<IdempotencyClaim> runningClaim = new ThreadLocal<>();
+    private final ScheduledExecutorService leaseRenewer;
+
+    public IdempotencyServiceImpl(StringRedisTemplate redisTemplate,
+                                  IdempotencyKeyRepository idempotencyKeyRepository,
+                                  ObjectMapper objectMapper,
+                                  TransferProperties transferProperties) {
+        this.redisTemplate = redisTemplate;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.properties = transferProperties.getIdempotency();
+        this.completedRecords = new LruCache<>(
+                properties.getLocalCacheSize(),
+                Duration.ofSeconds(properties.getTtlSeconds()));
+        this.leaseRenewer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "idempotency-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        leaseRenewer.shutdownNow();
+    }
+
+    public <T> T execute(String scope, String key, Object request, Class<T> resultType, Supplier<T> action) {
+        if (key == null) {
+            return action.get();
+        }
+        validateKey(key);
+
+        String redisKey = KEY_PREFIX + scope + ":" + key;
+        String fingerprint = fingerprint(request);
+        IdempotencyClaim claim = new IdempotencyClaim(scope, key, fingerprint);
+
+        IdempotencyRecord completed = completedRecords.get(redisKey);
+        if (completed != null) {
+            return replay(completed, fingerprint, resultType);
+        }
+
+        CompletableFuture<IdempotencyRecord> leader = new CompletableFuture<>();
+        CompletableFuture<IdempotencyRecord> running = inFlight.putIfAbsent(redisKey, leader);
+        if (running != null) {
+            return replay(await(running), fingerprint, resultType);
+        }
+
+        try {
+            IdempotencyRecord record = runOnce(redisKey, claim, action);
+            leader.complete(record);
+            return replay(record, fingerprint, resultType);
+        } catch (RuntimeException e) {
+            leader.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(redisKey, leader);
+        }
+    }
+
+    public IdempotencyClaim currentClaim() {
+        return runningClaim.get();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(IdempotencyClaim claim, Object result) {
+        if (claim == null) {
+            return;
+        }
+        idempotencyKeyRepository.insert(
+                claim.scope(), claim.key(), claim.fingerprint(), write(result), LocalDateTime.now());
+    }
+
+    @Transactional
+    public int purgeExpired() {
+        int purged = idempotencyKeyRepository.deleteCreatedBefore(
+                LocalDateTime.now().minusSeconds(properties.getTtlSeconds()));
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+        return purged;
+    }
+
+    private IdempotencyRecord runOnce(String redisKey, IdempotencyClaim claim, Supplier<?> action) {
+        long deadline = System.currentTimeMillis() + properties.getWaitTimeoutMs();
+
+        while (true) {
+            if (claim(redisKey, claim.fingerprint())) {
+                IdempotencyRecord committed = findCommitted(claim);
+                if (committed != null) {
+                    cache(redisKey, committed);
+                    return committed;
+                }
+                return run(redisKey, claim, action);
+            }
+
+            IdempotencyRecord existing = read(redisKey);
+            if (existing != null && existing.status() == Status.COMPLETED) {
+                completedRecords.put(redisKey, existing);
+                return existing;
+            }
+            // the holder may have committed and then failed to cache the outcome
+            IdempotencyRecord committed = findCommitted(claim);
+            if (committed != null) {
+                cache(redisKey, committed);
+                return committed;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new TransferConflictException("A request with this Idempotency-Key is still in progress");
+            }
+            sleep();
+        }
+    }
+
+    /**
+     * Runs the action under a renewed lease. A failed action releases the key only when
+     * its outcome row did not commit; otherwise the committed outcome stands.
+     */
+    private IdempotencyRecord run(String redisKey, IdempotencyClaim claim, Supplier<?> action) {
+        long renewSeconds = Math.max(1, properties.getPendingTtlSeconds() / 3);
+        ScheduledFuture<?> renewal = leaseRenewer.scheduleAtFixedRate(
+                () -> renew(redisKey), renewSeconds, renewSeconds, TimeUnit.SECONDS);
+        Object result;
+        runningClaim.set(claim);
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            renewal.cancel(false);
+            IdempotencyRecord committed;
+            try {
+                committed = findCommitted(claim);
+            } catch (RuntimeException lookup) {
+                // unknown outcome: the lease runs out and a retry checks the table again
+                e.addSuppressed(lookup);
+                throw e;
+            }
+            if (committed == null) {
+                release(redisKey);
+                throw e;
+            }
+            log.warn("Idempotent request {} committed before failing, keeping its outcome", redisKey, e);
+            cache(redisKey, committed);
+            return committed;
+        } finally {
+            runningClaim.remove();
+            renewal.cancel(false);
+        }
+
+        IdempotencyRecord record = new IdempotencyRecord(Status.COMPLETED, claim.fingerprint(), write(result));
+        cache(redisKey, record);
+        return record;
+    }
+
+    private boolean claim(String redisKey, String fingerprint) {
+        String pending = write(new IdempotencyRecord(Status.PENDING, fingerprint, null));
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(redisKey, pending, Duration.ofSeconds(properties.getPendingTtlSeconds())));
+        } catch (RuntimeException e) {
+            log.warn("Idempotency lease unavailable, relying on the key table: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    private void renew(String redisKey) {
+        try {
+            redisTemplate.expire(redisKey, Duration.ofSeconds(properties.getPendingTtlSeconds()));
+        } catch (RuntimeException e) {
+            log.warn("Idempotency lease {} not renewed: {}", redisKey, e.getMessage());
+        }
+    }
+
+    private void release(String redisKey) {
+        try {
+            redisTemplate.delete(redisKey);
+        } catch (RuntimeException e) {
+            log.warn("Idempotency lease {} not released: {}", redisKey, e.getMessage());
+        }
+    }
+
+    private void cache(String redisKey, IdempotencyRecord record) {
+        completedRecords.put(redisKey, record);
+        try {
+            redisTemplate.opsForValue().set(redisKey, write(record), Duration.ofSeconds(properties.getTtlSeconds()));
+        } catch (RuntimeException e) {
+            log.warn("Idempotency outcome {} not cached: {}", redisKey, e.getMessage());
+        }
+    }
+
+    private IdempotencyRecord findCommitted(IdempotencyClaim claim) {
+        return idempotencyKeyRepository.findById(new IdempotencyKeyId(claim.scope(), claim.key()))
+                .map(row -> new IdempotencyRecord(Status.COMPLETED, row.getFingerprint(), row.getResponse()))
+                .orElse(null);
+    }
+
+    private IdempotencyRecord read(String redisKey) {
+        String value = redisTemplate.opsForValue().get(redisKey);
+        return value == null ? null : read(value, IdempotencyRecord.class);
+    }
+
+    private <T> T replay(IdempotencyRecord record, String fingerprint, Class<T> resultType) {
+        if (!record.fingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyException("Idempotency-Key was already used for a different request");
+        }
+        return read(record.body(), resultType);
+    }
+
+    private IdempotencyRecord await(CompletableFuture<IdempotencyRecord> running) {
+        try {
+            return running.get(properties.getWaitTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new TransferConflictException("A request with this Idempotency-Key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferConflictException("Interrupted while waiting for idempotent request");
+        }
+    }
+
+    private void validateKey(String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1-" + MAX_KEY_LENGTH + " characters");
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot fingerprint idempotent request", e);
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize idempotent result", e);
+        }
+    }
+
+    private <T> T read(String value, Class<T> type) {
+        try {
+            return objectMapper.readValue(value, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot deserialize idempotent result", e);
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_INTERVAL_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferConflictException("Interrupted while waiting for idempotent request");
+        }
+    }
+
+    enum Status {
+        PENDING,
+        COMPLETED
+    }
+
+    record IdempotencyRecord(Status status, String fingerprint, String body) {
+    }
+}
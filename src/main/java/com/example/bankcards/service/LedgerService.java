@@ -0,0 +1,21 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.responce.CardBalanceResponse;
+import com.example.bankcards.entity.Transfer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface LedgerService {
+
+    void recordTransfer(Transfer transfer);
+
+    void recordTransfers(Collection<Transfer> transfers);
+
+    void recordAdjustment(Long cardId, BigDecimal delta);
+
+    CardBalanceResponse getBalanceAt(Long cardId, LocalDateTime asOf);
+
+    int takeSnapshot();
+}
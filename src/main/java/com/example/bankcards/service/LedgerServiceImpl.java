@@ -0,0 +1,144 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.responce.CardBalanceResponse;
+import com.example.bankcards.entity.BalanceSnapshot;
+import com.example.bankcards.entity.EntryDirection;
+import com.example.bankcards.entity.JournalEntry;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.repository.BalanceSnapshotRepository;
+import com.example.bankcards.repository.JournalEntryRepository;
+import com.example.bankcards.repository.projection.LedgerMismatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Service
+@Slf4j
+public class LedgerServiceImpl implements LedgerService {
+
+    // at or below every journal line's txid, so a card without snapshots is summed from the start
+    private static final long JOURNAL_START = 0L;
+
+    private final JournalEntryRepository journalEntryRepository;
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+    private final Counter snapshotCounter;
+    private final Counter mismatchCounter;
+
+    public LedgerServiceImpl(JournalEntryRepository journalEntryRepository,
+                             BalanceSnapshotRepository balanceSnapshotRepository,
+                             MeterRegistry meterRegistry) {
+        this.journalEntryRepository = journalEntryRepository;
+        this.balanceSnapshotRepository = balanceSnapshotRepository;
+        this.snapshotCounter = meterRegistry.counter("ledger.snapshot.cards");
+        this.mismatchCounter = meterRegistry.counter("ledger.reconcile.mismatches");
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfer(Transfer transfer) {
+        journalEntryRepository.saveAll(linesOf(transfer));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfers(Collection<Transfer> transfers) {
+        List<JournalEntry> lines = new ArrayList<>(transfers.size() * 2);
+        transfers.forEach(transfer -> lines.addAll(linesOf(transfer)));
+        journalEntryRepository.saveAll(lines);
+    }
+
+    /**
+     * Posts a balance set outside a transfer (card issue, admin correction) as a single
+     * line, so the journal still sums to every card balance.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAdjustment(Long cardId, BigDecimal delta) {
+        if (delta.signum() == 0) {
+            return;
+        }
+
+        journalEntryRepository.save(JournalEntry.builder()
+                .cardId(cardId)
+                .direction(delta.signum() > 0 ? EntryDirection.CREDIT : EntryDirection.DEBIT)
+                .amount(delta.abs())
+                .build());
+    }
+
+    /**
+     * Resolves {@code asOf} to the card's last journal line at that time, then adds the
+     * lines created by {@code asOf} that the newest snapshot usable at that time leaves out.
+     */
+    @Transactional(readOnly = true)
+    public CardBalanceResponse getBalanceAt(Long cardId, LocalDateTime asOf) {
+        Long journalSeq = journalEntryRepository.findLastSequenceForCard(cardId, asOf).orElse(null);
+        if (journalSeq == null) {
+            return new CardBalanceResponse(cardId, BigDecimal.ZERO, null, asOf);
+        }
+
+        BalanceSnapshot snapshot = balanceSnapshotRepository
+                .findFirstByCardIdAndJournalCutoffLessThanEqualOrderByJournalXminDesc(cardId, asOf)
+                .orElse(null);
+        BigDecimal base = snapshot != null ? snapshot.getBalance() : BigDecimal.ZERO;
+        long from = snapshot != null ? snapshot.getJournalXmin() : JOURNAL_START;
+
+        BigDecimal balance = base.add(journalEntryRepository.sumNetAmount(cardId, from, asOf));
+        return new CardBalanceResponse(cardId, balance, journalSeq, asOf);
+    }
+
+    /**
+     * Snapshots every card with journal activity since the previous snapshot, then checks
+     * those cards against their live balances. The journal is cut by the id of the writing
+     * transaction rather than by seq or created_at: a pooled seq and an application clock
+     * can both be lower on a line that commits later. Cutting at the oldest running
+     * transaction only folds lines whose transactions have finished, and a line that
+     * commits afterwards is always at or above the cut, so the next run picks it up.
+     */
+    @Transactional
+    public int takeSnapshot() {
+        long fromXmin = balanceSnapshotRepository.findLatestXmin().orElse(JOURNAL_START);
+        long toXmin = journalEntryRepository.findCommittedXmin();
+
+        if (toXmin <= fromXmin) {
+            return 0;
+        }
+
+        int cards = balanceSnapshotRepository.insertSnapshots(fromXmin, toXmin, LocalDateTime.now());
+        if (cards == 0) {
+            return 0;
+        }
+        snapshotCounter.increment(cards);
+        log.info("Ledger snapshot up to transaction {} covers {} cards", toXmin, cards);
+
+        List<LedgerMismatch> mismatches = balanceSnapshotRepository.findMismatches(toXmin);
+        mismatches.forEach(mismatch -> log.error("Ledger mismatch for card {}: journal {}, card {}",
+                mismatch.getCardId(), mismatch.getLedgerBalance(), mismatch.getCardBalance()));
+        mismatchCounter.increment(mismatches.size());
+
+        return cards;
+    }
+
+    private List<JournalEntry> linesOf(Transfer transfer) {
+        return List.of(
+                JournalEntry.builder()
+                        .transferId(transfer.getId())
+                        .cardId(transfer.getFromCard().getId())
+                        .direction(EntryDirection.DEBIT)
+                        .amount(transfer.getAmount())
+                        .createdAt(transfer.getCreatedAt())
+                        .build(),
+                JournalEntry.builder()
+                        .transferId(transfer.getId())
+                        .cardId(transfer.getToCard().getId())
+                        .direction(EntryDirection.CREDIT)
+                        .amount(transfer.getAmount())
+                        .createdAt(transfer.getCreatedAt())
+                        .build());
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.responce.CardRollupResponse;
+import com.example.bankcards.dto.responce.RollupRebuildResponse;
+import com.example.bankcards.entity.Transfer;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+public interface RollupService {
+
+    void recordTransfer(Transfer transfer, boolean spreadInflow);
+
+    void recordTransfers(Collection<Transfer> transfers);
+
+    CardRollupResponse getRollups(Long cardId, LocalDate from, LocalDate to);
+
+    RollupRebuildResponse rebuild(LocalDate from, LocalDate to);
+}
@@ -0,0 +1,199 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.responce.CardRollupResponse;
+import com.example.bankcards.dto.responce.DailyRollupItem;
+import com.example.bankcards.dto.responce.RollupRebuildResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.repository.CardDailyRollupRepository;
+import com.example.bankcards.util.properties.RollupProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+public class RollupServiceImpl implements RollupService {
+
+    private final CardDailyRollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final RollupProperties rollupProperties;
+    private final ExecutorService rebuildExecutor;
+
+    public RollupServiceImpl(CardDailyRollupRepository rollupRepository,
+                             TransactionTemplate transactionTemplate,
+                             RollupProperties rollupProperties) {
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.rollupProperties = rollupProperties;
+        AtomicInteger threads = new AtomicInteger();
+        this.rebuildExecutor = Executors.newFixedThreadPool(rollupProperties.getRebuild().getParallelism(), task -> {
+            Thread thread = new Thread(task, "rollup-rebuild-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * Adds one transfer to the rollups of both cards inside the transfer's transaction.
+     * Rows are written in card id order so that concurrent transfers between the same
+     * pair of cards cannot deadlock on them. Credits to a sharded card land on a random
+     * slot so that the rollup row does not become the hot spot the shards removed.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfer(Transfer transfer, boolean spreadInflow) {
+        Card fromCard = transfer.getFromCard();
+        Card toCard = transfer.getToCard();
+        LocalDate day = transfer.getCreatedAt().toLocalDate();
+        BigDecimal amount = transfer.getAmount();
+        int inflowSlot = spreadInflow ? ThreadLocalRandom.current().nextInt(toCard.getBalanceShards()) : 0;
+
+        if (fromCard.getId() < toCard.getId()) {
+            rollupRepository.accumulate(fromCard.getId(), day, 0, BigDecimal.ZERO, 0, amount, 1);
+            rollupRepository.accumulate(toCard.getId(), day, inflowSlot, amount, 1, BigDecimal.ZERO, 0);
+        } else {
+            rollupRepository.accumulate(toCard.getId(), day, inflowSlot, amount, 1, BigDecimal.ZERO, 0);
+            rollupRepository.accumulate(fromCard.getId(), day, 0, BigDecimal.ZERO, 0, amount, 1);
+        }
+    }
+
+    /**
+     * Folds a group of transfers into one row update per card and day. Only card ids
+     * are read, so lazy card references are never initialized.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfers(Collection<Transfer> transfers) {
+        Map<Long, Map<LocalDate, Flow>> flows = new TreeMap<>();
+        for (Transfer transfer : transfers) {
+            LocalDate day = transfer.getCreatedAt().toLocalDate();
+            flows.computeIfAbsent(transfer.getFromCard().getId(), id -> new TreeMap<>())
+                    .computeIfAbsent(day, d -> new Flow())
+                    .outflow(transfer.getAmount());
+            flows.computeIfAbsent(transfer.getToCard().getId(), id -> new TreeMap<>())
+                    .computeIfAbsent(day, d -> new Flow())
+                    .inflow(transfer.getAmount());
+        }
+
+        flows.forEach((cardId, days) -> days.forEach((day, flow) -> rollupRepository.accumulate(
+                cardId, day, 0, flow.inflowAmount, flow.inflowCount, flow.outflowAmount, flow.outflowCount)));
+    }
+
+    @Transactional(readOnly = true)
+    public CardRollupResponse getRollups(Long cardId, LocalDate from, LocalDate to) {
+        validateRange(from, to);
+
+        List<DailyRollupItem> days = rollupRepository.findDaily(cardId, from, to).stream()
+                .map(view -> new DailyRollupItem(view.getDay(),
+                        view.getInflowAmount(), view.getInflowCount(),
+                        view.getOutflowAmount(), view.getOutflowCount()))
+                .toList();
+
+        BigDecimal inflowAmount = BigDecimal.ZERO;
+        BigDecimal outflowAmount = BigDecimal.ZERO;
+        long inflowCount = 0;
+        long outflowCount = 0;
+        for (DailyRollupItem day : days) {
+            inflowAmount = inflowAmount.add(day.inflowAmount());
+            outflowAmount = outflowAmount.add(day.outflowAmount());
+            inflowCount += day.inflowCount();
+            outflowCount += day.outflowCount();
+        }
+
+        return new CardRollupResponse(cardId, from, to, inflowAmount, inflowCount, outflowAmount, outflowCount, days);
+    }
+
+    /**
+     * Recomputes closed days from the transfers table in parallel chunks, each in its own
+     * transaction. Open days are refused: a transfer committing into a day that is being
+     * rebuilt could be counted twice or not at all.
+     */
+    public RollupRebuildResponse rebuild(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Rollup range start must not be after its end");
+        }
+        RollupProperties.Rebuild settings = rollupProperties.getRebuild();
+        LocalDate firstOpenDay = LocalDateTime.now().minusMinutes(settings.getCloseAfterMinutes()).toLocalDate();
+        if (!to.isBefore(firstOpenDay)) {
+            throw new IllegalArgumentException("Rollups can only be rebuilt for days before " + firstOpenDay);
+        }
+
+        List<CompletableFuture<Integer>> chunks = new ArrayList<>();
+        for (LocalDate start = from; !start.isAfter(to); start = start.plusDays(settings.getChunkDays())) {
+            LocalDate chunkStart = start;
+            LocalDate chunkEnd = min(start.plusDays(settings.getChunkDays()), to.plusDays(1));
+            chunks.add(CompletableFuture.supplyAsync(() -> rebuildChunk(chunkStart, chunkEnd), rebuildExecutor));
+        }
+
+        CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).whenComplete((ignored, error) -> {
+            if (error != null) {
+                log.error("Rollup rebuild of {}..{} failed", from, to, error);
+            } else {
+                log.info("Rollup rebuild of {}..{} finished in {} chunks", from, to, chunks.size());
+            }
+        });
+
+        return new RollupRebuildResponse(from, to, chunks.size());
+    }
+
+    private int rebuildChunk(LocalDate start, LocalDate end) {
+        Integer rows = transactionTemplate.execute(status -> {
+            rollupRepository.deleteDays(start, end);
+            return rollupRepository.insertFromTransfers(start.atStartOfDay(), end.atStartOfDay());
+        });
+        log.info("Rebuilt rollups for {}..{}: {} rows", start, end.minusDays(1), rows);
+        return rows != null ? rows : 0;
+    }
+
+    private void validateRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Rollup range start must not be after its end");
+        }
+        int maxRangeDays = rollupProperties.getMaxRangeDays();
+        if (from.plusDays(maxRangeDays).isBefore(to)) {
+            throw new IllegalArgumentException("Rollup range must not exceed " + maxRangeDays + " days");
+        }
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static final class Flow {
+        private BigDecimal inflowAmount = BigDecimal.ZERO;
+        private long inflowCount;
+        private BigDecimal outflowAmount = BigDecimal.ZERO;
+        private long outflowCount;
+
+        private void inflow(BigDecimal amount) {
+            inflowAmount = inflowAmount.add(amount);
+            inflowCount++;
+        }
+
+        private void outflow(BigDecimal amount) {
+            outflowAmount = outflowAmount.add(amount);
+            outflowCount++;
+        }
+    }
+}
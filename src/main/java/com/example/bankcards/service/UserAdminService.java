@@ -2,6 +2,7 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.UserDTO;
 import com.example.bankcards.dto.UserUpdateDTO;
+import com.example.bankcards.dto.responce.SliceResponse;
 import com.example.bankcards.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -10,6 +11,8 @@ public interface UserAdminService {
 
     Page<User> list(String q, Pageable pageable);
 
+    SliceResponse<User> scroll(String q, String cursor, int size);
+
     User create(UserDTO dto);
 
     User update(Long id, UserUpdateDTO dto);
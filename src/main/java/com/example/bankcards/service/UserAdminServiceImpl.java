@@ -2,20 +2,32 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.UserDTO;
 import com.example.bankcards.dto.UserUpdateDTO;
+import com.example.bankcards.dto.responce.SliceResponse;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.TokenVersions;
+import com.example.bankcards.service.user.UserCache;
+import com.example.bankcards.util.SortCursor;
+import com.example.bankcards.util.properties.PagingProperties;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 public class UserAdminServiceImpl implements UserAdminService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TokenVersions tokenVersions;
+    private final UserCache userCache;
+    private final PagingProperties pagingProperties;
 
     public Page<User> list(String q, Pageable pageable) {
         if (q == null || q.isBlank()) {
@@ -24,6 +36,31 @@ public class UserAdminServiceImpl implements UserAdminService {
         return userRepository.findByUsernameContainingIgnoreCase(q, pageable);
     }
 
+    /**
+     * Users in id order after the cursor, sought through the primary key instead of an
+     * offset and without a count.
+     */
+    public SliceResponse<User> scroll(String q, String cursor, int size) {
+        int maxPageSize = pagingProperties.getMaxPageSize();
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + maxPageSize);
+        }
+        long afterId = cursor != null ? SortCursor.decode(cursor, "ID", Sort.Direction.ASC).id() : 0L;
+        Limit limit = Limit.of(size + 1);
+
+        List<User> rows = q == null || q.isBlank()
+                ? userRepository.findByIdGreaterThanOrderByIdAsc(afterId, limit)
+                : userRepository.findByUsernameContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(q, afterId, limit);
+        if (rows.size() <= size) {
+            return new SliceResponse<>(rows, null);
+        }
+
+        List<User> slice = rows.subList(0, size);
+        Long lastId = slice.get(size - 1).getId();
+        return new SliceResponse<>(slice,
+                new SortCursor("ID", Sort.Direction.ASC, lastId.toString(), lastId).encode());
+    }
+
     public User create(UserDTO dto) {
         if (userRepository.findByUsername(dto.username()).isPresent()) {
             throw new IllegalArgumentException("Username already taken");
@@ -39,16 +76,30 @@ public class UserAdminServiceImpl implements UserAdminService {
         User u = userRepository
                 .findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("User not found: " + id));
+        String previousUsername = u.getUsername();
+        boolean revokeTokens = false;
         if (dto.username() != null && !dto.username().isBlank()) {
+            revokeTokens |= !dto.username().equals(u.getUsername());
             u.setUsername(dto.username());
         }
         if (dto.password() != null && !dto.password().isBlank()) {
+            revokeTokens = true;
             u.setPassword(passwordEncoder.encode(dto.password()));
         }
         if (dto.role() != null) {
+            revokeTokens |= dto.role() != u.getRole();
             u.setRole(dto.role());
         }
-        return userRepository.save(u);
+        if (revokeTokens) {
+            u.setTokenVersion(u.getTokenVersion() + 1);
+        }
+
+        User saved = userRepository.save(u);
+        userCache.evict(id, previousUsername, saved.getUsername());
+        if (revokeTokens) {
+            tokenVersions.advance(saved.getId(), saved.getTokenVersion());
+        }
+        return saved;
     }
 
     public void delete(Long id) {
@@ -56,5 +107,7 @@ public class UserAdminServiceImpl implements UserAdminService {
                 .findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("User not found: " + id));
         userRepository.delete(u);
+        userCache.evict(id, u.getUsername());
+        tokenVersions.revokeAll(id);
     }
 }
@@ -10,12 +10,13 @@ import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.CustomUserDetails;
 import com.example.bankcards.security.JwtUtils;
+import com.example.bankcards.security.PasswordHashing;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.service.user.UserCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -29,7 +30,8 @@ public class UserServiceImpl implements UserService {
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
     private final JwtUtils jwtUtils;
-    private final AuthenticationManager authManager;
+    private final UserCache userCache;
+    private final PasswordHashing passwordHashing;
 
     @Transactional
     public AuthResponse registration(RegisterRequest request) {
@@ -47,20 +49,25 @@ public class UserServiceImpl implements UserService {
         return generateAuthResponse(user);
     }
 
-    @Transactional
+    /**
+     * Looks the user up once and checks the password on the password pool. Deliberately
+     * not transactional: no connection is held while BCrypt runs. Reads the database
+     * rather than the user cache, which holds no password hashes.
+     */
     public AuthResponse login(LoginRequest request) {
-        checkUserExists(request.username());
         log.info("Login attempt for user: {}", request.username());
+        User user = userRepository.findByUsername(request.username())
+                .orElseThrow(() -> new UserNotFoundException("User not found: " + request.username()));
 
-        authManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        request.username(),
-                        request.password()
-                )
-        );
+        PasswordHashing.Verification verification = passwordHashing.verify(request.password(), user.getPassword());
+        if (!verification.matches()) {
+            throw new BadCredentialsException("Bad credentials");
+        }
+        if (verification.upgradedHash() != null) {
+            upgradePassword(user, verification.upgradedHash());
+        }
 
-        UserDetails user = userDetailsService.loadUserByUsername(request.username());
-        return generateAuthResponse(user);
+        return generateAuthResponse(UserPrincipal.of(user));
     }
 
     public AuthResponse refresh(RefreshRequest request) {
@@ -80,12 +87,12 @@ public class UserServiceImpl implements UserService {
     }
 
     public User requireUserByUsername(String username) {
-        return userRepository.findByUsername(username)
+        return userCache.findByUsername(username, userRepository::findByUsername)
                 .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
     }
 
     public User requireUserById(Long userId) {
-        return userRepository.findById(userId)
+        return userCache.findById(userId, userRepository::findById)
                 .orElseThrow(() -> new UserNotFoundException("User not found: " + userId));
     }
 
@@ -95,11 +102,13 @@ public class UserServiceImpl implements UserService {
         }
     }
 
-    private void checkUserExists(String username) {
+    private void upgradePassword(User user, String upgradedHash) {
         try {
-            userDetailsService.loadUserByUsername(username);
-        } catch (UsernameNotFoundException ex) {
-            throw new UserNotFoundException("User not found: " + username);
+            if (userRepository.replacePassword(user.getId(), user.getPassword(), upgradedHash) > 0) {
+                userCache.evict(user.getId(), user.getUsername());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Password hash of user {} not upgraded: {}", user.getId(), e.getMessage());
         }
     }
 
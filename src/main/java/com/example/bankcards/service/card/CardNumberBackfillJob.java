@@ -0,0 +1,96 @@
+package com.example.bankcards.service.card;
+
+import com.example.bankcards.exception.EncryptionException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.projection.EncryptedCardNumber;
+import com.example.bankcards.util.CardEncryptor;
+import com.example.bankcards.util.properties.EncryptionProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Fills the columns derived from the plain card number, {@code number_hash} and
+ * {@code last4}, for rows written before they existed. Rows are read in id order in
+ * batches, each number is decrypted once outside the database, and each batch is
+ * written in its own short transaction. New cards get both columns on create, so once a
+ * full pass finds nothing left the job stops querying.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "encryption.backfill", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CardNumberBackfillJob {
+
+    private final CardRepository cardRepository;
+    private final CardEncryptor cardEncryptor;
+    private final EncryptionProperties encryptionProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile boolean completed;
+
+    @Scheduled(fixedDelayString = "${encryption.backfill.interval-ms:60000}")
+    public void backfill() {
+        if (completed) {
+            return;
+        }
+        try {
+            int updated = backfillAll();
+            completed = true;
+            if (updated > 0) {
+                log.info("Card number backfill finished: {} cards updated", updated);
+            }
+        } catch (RuntimeException e) {
+            log.error("Card number backfill failed", e);
+        }
+    }
+
+    int backfillAll() {
+        int batchSize = encryptionProperties.getBackfill().getBatchSize();
+        long afterId = 0;
+        int updated = 0;
+
+        List<EncryptedCardNumber> batch;
+        while (!(batch = cardRepository.findWithoutDerivedNumber(afterId, Limit.of(batchSize))).isEmpty()) {
+            List<EncryptedCardNumber> rows = batch;
+            Integer written = transactionTemplate.execute(status -> fillBatch(rows));
+            updated += written != null ? written : 0;
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+        return updated;
+    }
+
+    private int fillBatch(List<EncryptedCardNumber> rows) {
+        int written = 0;
+        for (EncryptedCardNumber row : rows) {
+            String number;
+            try {
+                number = cardEncryptor.decrypt(row.getNumber());
+            } catch (EncryptionException e) {
+                log.warn("Card {} number cannot be decrypted, left without derived columns", row.getId());
+                continue;
+            }
+            boolean changed = false;
+            if (row.getLast4() == null) {
+                changed = cardRepository.setLast4(row.getId(), cardEncryptor.lastFour(number)) > 0;
+            }
+            if (row.getNumberHash() == null) {
+                if (cardRepository.setNumberHash(row.getId(), cardEncryptor.blindIndex(number)) > 0) {
+                    changed = true;
+                } else {
+                    log.warn("Card {} duplicates the number of another card, left without index", row.getId());
+                }
+            }
+            if (changed) {
+                written++;
+            }
+        }
+        return written;
+    }
+}
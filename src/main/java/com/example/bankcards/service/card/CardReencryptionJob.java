@@ -0,0 +1,204 @@
+package com.example.bankcards.service.card;
+
+import com.example.bankcards.exception.EncryptionException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.projection.EncryptedCardNumber;
+import com.example.bankcards.util.CardEncryptor;
+import com.example.bankcards.util.properties.EncryptionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rewrites card numbers encrypted under an old key version with the active one.
+ * <p>
+ * Cards are walked in id order in chunks of rows whose {@code number_key_version} is not
+ * the active version, so a run that is stopped resumes by simply running again: rewritten
+ * rows no longer match. Decrypting and encrypting a chunk is spread over a small worker
+ * pool, then the chunk is written in one short transaction with a compare-and-set on the
+ * old ciphertext. The job paces itself on that write: when a chunk takes longer than
+ * {@code target-latency-ms} the pause between chunks doubles, and it halves again once
+ * the database keeps up.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "encryption.reencryption", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CardReencryptionJob {
+
+    private final CardRepository cardRepository;
+    private final CardEncryptor cardEncryptor;
+    private final EncryptionProperties.Reencryption settings;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService coordinator;
+    private final ExecutorService workers;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong pauseMs = new AtomicLong();
+    private final Counter reencrypted;
+    private final Counter conflicts;
+    private final Timer chunkWrite;
+
+    public CardReencryptionJob(CardRepository cardRepository,
+                               CardEncryptor cardEncryptor,
+                               EncryptionProperties encryptionProperties,
+                               TransactionTemplate transactionTemplate,
+                               MeterRegistry meterRegistry) {
+        this.cardRepository = cardRepository;
+        this.cardEncryptor = cardEncryptor;
+        this.settings = encryptionProperties.getReencryption();
+        this.transactionTemplate = transactionTemplate;
+        this.coordinator = Executors.newSingleThreadExecutor(daemon("card-reencrypt"));
+        this.workers = Executors.newFixedThreadPool(settings.getWorkers(), daemon("card-reencrypt-worker"));
+        this.reencrypted = Counter.builder("encryption.reencrypt.cards")
+                .description("Card numbers rewritten under the active key version")
+                .register(meterRegistry);
+        this.conflicts = Counter.builder("encryption.reencrypt.conflicts")
+                .description("Re-encrypted numbers dropped because the card changed meanwhile")
+                .register(meterRegistry);
+        this.chunkWrite = Timer.builder("encryption.reencrypt.chunk")
+                .description("Time to write one re-encrypted chunk")
+                .register(meterRegistry);
+        Gauge.builder("encryption.reencrypt.pause", pauseMs, AtomicLong::get)
+                .description("Current pause between re-encryption chunks in milliseconds")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Starts a pass on the job's own thread, so the throttling pauses never hold up the
+     * shared scheduler. A pass still in progress is left to finish.
+     */
+    @Scheduled(fixedDelayString = "${encryption.reencryption.interval-ms:300000}")
+    public void reencrypt() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        coordinator.execute(() -> {
+            try {
+                int rewritten = reencryptAll();
+                if (rewritten > 0) {
+                    log.info("Card re-encryption pass finished: {} cards moved to key version {}",
+                            rewritten, cardEncryptor.activeKeyVersion());
+                }
+            } catch (RuntimeException e) {
+                log.error("Card re-encryption pass failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    int reencryptAll() {
+        int keyVersion = cardEncryptor.activeKeyVersion();
+        Limit chunkSize = Limit.of(settings.getChunkSize());
+        long afterId = 0;
+        int rewritten = 0;
+
+        List<EncryptedCardNumber> chunk;
+        while (!Thread.currentThread().isInterrupted()
+                && !(chunk = cardRepository.findEncryptedWithOtherKey(keyVersion, afterId, chunkSize)).isEmpty()) {
+            List<EncryptedCardNumber> rows = chunk;
+            String[] replacements = reencryptChunk(rows);
+
+            long started = System.nanoTime();
+            Integer written = transactionTemplate.execute(status -> writeChunk(rows, replacements, keyVersion));
+            long elapsedNanos = System.nanoTime() - started;
+            chunkWrite.record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+            rewritten += written != null ? written : 0;
+            afterId = rows.get(rows.size() - 1).getId();
+            throttle(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        }
+        return rewritten;
+    }
+
+    private String[] reencryptChunk(List<EncryptedCardNumber> rows) {
+        String[] replacements = new String[rows.size()];
+        int slices = Math.min(settings.getWorkers(), rows.size());
+        int sliceSize = (rows.size() + slices - 1) / slices;
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(slices);
+        for (int start = 0; start < rows.size(); start += sliceSize) {
+            int from = start;
+            int to = Math.min(start + sliceSize, rows.size());
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int i = from; i < to; i++) {
+                    replacements[i] = reencryptOrSkip(rows.get(i));
+                }
+            }, workers));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        return replacements;
+    }
+
+    private String reencryptOrSkip(EncryptedCardNumber row) {
+        try {
+            return cardEncryptor.reencrypt(row.getNumber());
+        } catch (EncryptionException e) {
+            log.warn("Card {} number cannot be decrypted with any known key, skipped", row.getId());
+            return null;
+        }
+    }
+
+    private int writeChunk(List<EncryptedCardNumber> rows, String[] replacements, int keyVersion) {
+        int written = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (replacements[i] == null) {
+                continue;
+            }
+            EncryptedCardNumber row = rows.get(i);
+            if (cardRepository.replaceNumber(row.getId(), row.getNumber(), replacements[i], keyVersion) > 0) {
+                written++;
+            } else {
+                conflicts.increment();
+            }
+        }
+        reencrypted.increment(written);
+        return written;
+    }
+
+    private void throttle(long writeMillis) {
+        long pause = pauseMs.updateAndGet(current -> writeMillis > settings.getTargetLatencyMs()
+                ? Math.min(settings.getMaxPauseMs(), Math.max(current * 2, writeMillis))
+                : current / 2);
+        if (pause > 0) {
+            try {
+                Thread.sleep(pause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger threads = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, name + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.bankcards.service.card;
+
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.StatusCardException;
+import com.example.bankcards.repository.CardStatusRepository;
+import com.example.bankcards.util.properties.CardProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The {@code card_status} table, read once at startup into an immutable name to status
+ * map. Statuses only change through migrations or by hand, so validation compares ids
+ * against this map instead of selecting the status it needs on every check.
+ * <p>
+ * The statuses handed out are detached copies; assigning one to a managed card only
+ * writes its id. After changing the table, {@link #refreshEverywhere} reloads this node
+ * and publishes on the refresh channel so every other node reloads too.
+ */
+@Slf4j
+@Component
+public class CardStatusRegistry implements MessageListener {
+
+    private final CardStatusRepository cardStatusRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final CardProperties cardProperties;
+    private volatile Map<String, CardStatus> byName = Map.of();
+
+    public CardStatusRegistry(CardStatusRepository cardStatusRepository,
+                              StringRedisTemplate redisTemplate,
+                              CardProperties cardProperties) {
+        this.cardStatusRepository = cardStatusRepository;
+        this.redisTemplate = redisTemplate;
+        this.cardProperties = cardProperties;
+    }
+
+    @PostConstruct
+    public void refresh() {
+        byName = cardStatusRepository.findAll().stream()
+                .map(status -> new CardStatus(status.getId(), status.getName()))
+                .collect(Collectors.toUnmodifiableMap(CardStatus::getName, Function.identity()));
+        log.info("Loaded {} card statuses", byName.size());
+    }
+
+    public List<String> refreshEverywhere() {
+        refresh();
+        try {
+            redisTemplate.convertAndSend(cardProperties.getStatus().getRefreshChannel(), "refresh");
+        } catch (RuntimeException e) {
+            log.warn("Card status refresh not propagated: {}", e.getMessage());
+        }
+        return byName.keySet().stream().sorted().toList();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        refresh();
+    }
+
+    public CardStatus require(String name) {
+        CardStatus status = byName.get(name);
+        if (status == null) {
+            throw new StatusCardException("Status not found: " + name);
+        }
+        return status;
+    }
+
+    public Long requireId(String name) {
+        return require(name).getId();
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.bankcards.service.idempotency;
+
+import com.example.bankcards.service.IdempotencyService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Deletes idempotency outcomes older than the key TTL. Several nodes may run it at once;
+ * the delete is idempotent.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyPurgeJob {
+
+    private final IdempotencyService idempotencyService;
+
+    @Scheduled(fixedDelayString = "${transfer.idempotency.purge-interval-ms:3600000}",
+            initialDelayString = "${transfer.idempotency.purge-interval-ms:3600000}")
+    public void purge() {
+        try {
+            idempotencyService.purgeExpired();
+        } catch (RuntimeException e) {
+            log.error("Idempotency key purge failed", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.bankcards.service.ledger;
+
+import com.example.bankcards.service.LedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the incremental ledger snapshot. Several nodes may run it at once; the unique
+ * (card_id, journal_xmin) constraint makes a repeated snapshot a no-op.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "ledger.snapshot", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class LedgerSnapshotJob {
+
+    private final LedgerService ledgerService;
+
+    @Scheduled(fixedDelayString = "${ledger.snapshot.interval-ms:60000}",
+            initialDelayString = "${ledger.snapshot.interval-ms:60000}")
+    public void snapshot() {
+        try {
+            ledgerService.takeSnapshot();
+        } catch (RuntimeException e) {
+            log.error("Ledger snapshot failed", e);
+        }
+    }
+}
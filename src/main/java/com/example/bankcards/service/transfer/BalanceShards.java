@@ -0,0 +1,80 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.cache.LruCache;
+import com.example.bankcards.util.properties.TransferProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sub-balance rows for hot cards. A sharded card takes credits on one of its K shard
+ * rows instead of the card row, so concurrent inbound transfers only collide when they
+ * pick the same shard. Shard rows always count toward the card total, which keeps a
+ * stale shard count harmless: a credit routed to a shard of an unsharded card is just
+ * folded in by the next debit.
+ */
+@Component
+public class BalanceShards {
+
+    private final CardRepository cardRepository;
+    private final LruCache<Long, Integer> shardCounts;
+
+    public BalanceShards(CardRepository cardRepository, TransferProperties transferProperties) {
+        this.cardRepository = cardRepository;
+        TransferProperties.Shards shards = transferProperties.getShards();
+        this.shardCounts = new LruCache<>(shards.getCacheSize(), Duration.ofMillis(shards.getCacheTtlMs()));
+    }
+
+    /**
+     * Answers from a short-lived cache so lock planning, which runs before the
+     * transaction opens, does not cost a query per transfer.
+     */
+    public boolean isSharded(Long cardId) {
+        Integer count = shardCounts.get(cardId);
+        if (count == null) {
+            count = cardRepository.findBalanceShardsById(cardId).orElse(1);
+            shardCounts.put(cardId, count);
+        }
+        return count > 1;
+    }
+
+    public void credit(Card card, BigDecimal amount) {
+        int shard = ThreadLocalRandom.current().nextInt(Math.max(1, card.getBalanceShards()));
+        cardRepository.creditShard(card.getId(), shard, amount);
+    }
+
+    /**
+     * Folds every shard into the card row when the row alone cannot cover the debit.
+     * The card must be locked or version-checked by the caller.
+     */
+    public void consolidateIfShort(Card card, BigDecimal amount) {
+        if (card.getBalance().compareTo(amount) >= 0) {
+            return;
+        }
+        consolidate(card);
+    }
+
+    public BigDecimal consolidate(Card card) {
+        BigDecimal drained = cardRepository.drainShards(card.getId());
+        card.setBalance(card.getBalance().add(drained));
+        card.setPendingBalance(BigDecimal.ZERO);
+        return drained;
+    }
+
+    /**
+     * Fills in the card's pending shard total for read paths that report it, since the
+     * card itself is loaded without it.
+     */
+    public Card loadPending(Card card) {
+        card.setPendingBalance(cardRepository.sumShardBalances(card.getId()));
+        return card;
+    }
+
+    public void evict(Long cardId) {
+        shardCounts.invalidate(cardId);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.util.properties.TransferProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-JVM striped lock table for cards. Transfers touching the same card queue here
+ * instead of waiting on Postgres row locks while holding a pooled connection.
+ * Stripes are always acquired in ascending index order, so two transfers over the
+ * same pair of cards can never wait on each other in opposite order.
+ */
+@Component
+public class CardLockTable {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final long timeoutMs;
+
+    public CardLockTable(TransferProperties properties) {
+        int requested = Math.max(1, properties.getLock().getStripes());
+        int size = requested == 1 ? 1 : Integer.highestOneBit(requested - 1) << 1;
+
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+        this.timeoutMs = properties.getLock().getTimeoutMs();
+    }
+
+    public Lease acquire(Long... cardIds) {
+        return acquire(Arrays.asList(cardIds));
+    }
+
+    public Lease acquire(Collection<Long> cardIds) {
+        int[] order = cardIds.stream()
+                .filter(Objects::nonNull)
+                .mapToInt(this::stripeOf)
+                .distinct()
+                .sorted()
+                .toArray();
+
+        List<ReentrantLock> held = new ArrayList<>(order.length);
+        try {
+            for (int index : order) {
+                ReentrantLock lock = stripes[index];
+                if (!lock.tryLock(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new TransferConflictException("Card is busy, retry the transfer later");
+                }
+                held.add(lock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release(held);
+            throw new TransferConflictException("Interrupted while waiting for card lock");
+        } catch (RuntimeException e) {
+            release(held);
+            throw e;
+        }
+        return new Lease(held);
+    }
+
+    int stripeOf(Long cardId) {
+        long hash = cardId * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private static void release(List<ReentrantLock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+    }
+
+    public static final class Lease implements AutoCloseable {
+
+        private final List<ReentrantLock> held;
+
+        private Lease(List<ReentrantLock> held) {
+            this.held = held;
+        }
+
+        @Override
+        public void close() {
+            release(held);
+        }
+    }
+}
@@ -0,0 +1,562 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.exception.CardException;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.service.IdempotencyClaim;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.RollupService;
+import com.example.bankcards.util.properties.TransferProperties;
+import com.example.bankcards.util.validator.CardServiceValidator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer transfer engine. Card ids hash to a fixed set of shards, and each shard
+ * thread owns the in-memory balances of its cards and drains commands from a lock-free
+ * queue, so no two threads ever touch the same balance. Applied transfers collect into
+ * a group that is written to Postgres in one transaction every few milliseconds, and
+ * callers are acknowledged only once that transaction commits.
+ * <p>
+ * A shard only spends committed money: a debit reserves funds against the committed
+ * balance, and a credit becomes spendable once its group commits. A failed group
+ * therefore never leaves a later debit uncovered.
+ * <p>
+ * Cross-shard transfers take two steps. The source shard validates the source card,
+ * reserves the amount and hands a credit to the target shard. The target shard validates
+ * its card and commits the transfer row with both balance deltas in its own group, then
+ * settles the reservation on the source shard. If the target rejects the credit or its
+ * commit fails, the source shard releases the reservation instead.
+ * <p>
+ * A transfer submitted for an idempotent request carries its claim, and the group commit
+ * inserts the claim's outcome row with the transfer row.
+ * <p>
+ * Cached balances are this node's view only. Another node in engine mode, or any write
+ * outside the engine, can move a balance underneath it, so every debit in a group commit
+ * is also guarded in SQL: a debit the stored balance does not cover fails its transfer,
+ * and the shards reload the cards involved. Each shard keeps at most
+ * {@code transfer.engine.max-cached-cards} accounts and drops accounts idle for
+ * {@code transfer.engine.idle-evict-ms}; accounts with an open reservation are kept.
+ */
+@Slf4j
+@Component
+public class ShardedTransferEngine {
+
+    private final CardRepository cardRepository;
+    private final TransferRepository transferRepository;
+    private final LedgerService ledgerService;
+    private final RollupService rollupService;
+    private final IdempotencyService idempotencyService;
+    private final CardServiceValidator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final TransferProperties transferProperties;
+    private final Timer commitTimer;
+    private final DistributionSummary groupSize;
+    private final Counter commitFailures;
+
+    private volatile Shard[] shards = new Shard[0];
+
+    public ShardedTransferEngine(CardRepository cardRepository,
+                                 TransferRepository transferRepository,
+                                 LedgerService ledgerService,
+                                 RollupService rollupService,
+                                 IdempotencyService idempotencyService,
+                                 CardServiceValidator validator,
+                                 TransactionTemplate transactionTemplate,
+                                 TransferProperties transferProperties,
+                                 MeterRegistry meterRegistry) {
+        this.cardRepository = cardRepository;
+        this.transferRepository = transferRepository;
+        this.ledgerService = ledgerService;
+        this.rollupService = rollupService;
+        this.idempotencyService = idempotencyService;
+        this.validator = validator;
+        this.transactionTemplate = transactionTemplate;
+        this.transferProperties = transferProperties;
+        this.commitTimer = Timer.builder("transfer.engine.commit")
+                .description("Time to write one group of engine transfers to the database")
+                .register(meterRegistry);
+        this.groupSize = DistributionSummary.builder("transfer.engine.group.size")
+                .description("Transfers written per group commit")
+                .register(meterRegistry);
+        this.commitFailures = Counter.builder("transfer.engine.commit.failures")
+                .description("Group commits that rolled back")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (transferProperties.getMode() != TransferProperties.Mode.ENGINE) {
+            return;
+        }
+
+        int configured = transferProperties.getEngine().getShards();
+        int count = configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+        Shard[] started = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            started[i] = new Shard(i);
+        }
+        shards = started;
+        for (Shard shard : started) {
+            shard.thread.start();
+        }
+        log.info("Transfer engine started with {} shards", count);
+    }
+
+    @PreDestroy
+    public void stop() {
+        Shard[] running = shards;
+        for (Shard shard : running) {
+            shard.running = false;
+            LockSupport.unpark(shard.thread);
+        }
+        for (Shard shard : running) {
+            try {
+                shard.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Submits a transfer and blocks until its group commit completes. Validation
+     * failures surface as the same exceptions the other transfer modes throw.
+     */
+    public void transfer(Long fromCardId, Long toCardId, BigDecimal amount, UserPrincipal currentUser) {
+        try {
+            enqueue(fromCardId, toCardId, amount, currentUser, idempotencyService.currentClaim())
+                    .get(transferProperties.getEngine().getAckTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause
+                    ? cause
+                    : new TransferConflictException("Transfer failed: " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            throw new TransferConflictException("Transfer was not acknowledged in time, check the balance before retrying");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferConflictException("Interrupted while waiting for transfer");
+        }
+    }
+
+    public CompletableFuture<Void> submit(Long fromCardId, Long toCardId, BigDecimal amount, UserPrincipal currentUser) {
+        return enqueue(fromCardId, toCardId, amount, currentUser, null);
+    }
+
+    /**
+     * Drops a card's cached state after it was changed outside the engine. Runs after
+     * the surrounding transaction commits so that the shard reloads the new state.
+     */
+    public void evict(Long cardId) {
+        if (shards.length == 0) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    shardFor(cardId).enqueue(new EvictCommand(cardId));
+                }
+            });
+        } else {
+            shardFor(cardId).enqueue(new EvictCommand(cardId));
+        }
+    }
+
+    public boolean isRunning() {
+        return shards.length > 0;
+    }
+
+    int shardOf(Long cardId) {
+        return Math.floorMod(Long.hashCode(cardId * 0x9E3779B97F4A7C15L), shards.length);
+    }
+
+    private CompletableFuture<Void> enqueue(Long fromCardId,
+                                           Long toCardId,
+                                           BigDecimal amount,
+                                           UserPrincipal currentUser,
+                                           IdempotencyClaim claim) {
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        shardFor(fromCardId).enqueue(new TransferCommand(fromCardId, toCardId, amount, currentUser, claim, ack));
+        return ack;
+    }
+
+    private Shard shardFor(Long cardId) {
+        if (shards.length == 0) {
+            throw new IllegalStateException("Transfer engine is not running, set transfer.mode=engine");
+        }
+        return shards[shardOf(cardId)];
+    }
+
+    private void validateCard(Card card, UserPrincipal currentUser) {
+        validator.validateCardOwnership(card, currentUser);
+        validator.validateCardStatus(card);
+    }
+
+    private sealed interface Command
+            permits TransferCommand, CreditCommand, SettleCommand, ReleaseCommand, EvictCommand {
+    }
+
+    private record TransferCommand(Long fromCardId,
+                                   Long toCardId,
+                                   BigDecimal amount,
+                                   UserPrincipal user,
+                                   IdempotencyClaim claim,
+                                   CompletableFuture<Void> ack) implements Command {
+    }
+
+    private record CreditCommand(TransferCommand transfer) implements Command {
+    }
+
+    private record SettleCommand(Long cardId, BigDecimal amount) implements Command {
+    }
+
+    private record ReleaseCommand(Long cardId, BigDecimal amount) implements Command {
+    }
+
+    private record EvictCommand(Long cardId) implements Command {
+    }
+
+    private record Applied(TransferCommand transfer, boolean crossShard, LocalDateTime createdAt) {
+    }
+
+    private static final class Account {
+        private Card card;
+        private BigDecimal committed;
+        private BigDecimal reserved = BigDecimal.ZERO;
+        private boolean stale;
+        private long lastUsed = System.nanoTime();
+
+        private Account(Card card) {
+            this.card = card;
+            this.committed = card.getTotalBalance();
+        }
+
+        private BigDecimal available() {
+            return committed.subtract(reserved);
+        }
+    }
+
+    private final class Shard implements Runnable {
+
+        private final int index;
+        private final Thread thread;
+        private final Queue<Command> queue = new ConcurrentLinkedQueue<>();
+        // access order, so the least recently used accounts come first when trimming
+        private final LinkedHashMap<Long, Account> accounts = new LinkedHashMap<>(16, 0.75f, true);
+        private final List<Applied> group = new ArrayList<>();
+        private long groupOpenedAt;
+        private volatile boolean running = true;
+
+        private Shard(int index) {
+            this.index = index;
+            this.thread = new Thread(this, "transfer-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private void enqueue(Command command) {
+            queue.offer(command);
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            long intervalNanos = TimeUnit.MILLISECONDS.toNanos(transferProperties.getEngine().getCommitIntervalMs());
+
+            while (running) {
+                drain();
+                if (group.isEmpty()) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                long waited = System.nanoTime() - groupOpenedAt;
+                if (waited >= intervalNanos) {
+                    commit();
+                } else {
+                    LockSupport.parkNanos(this, intervalNanos - waited);
+                }
+            }
+
+            drain();
+            if (!group.isEmpty()) {
+                commit();
+            }
+        }
+
+        private void drain() {
+            Command command;
+            while ((command = queue.poll()) != null) {
+                try {
+                    handle(command);
+                } catch (RuntimeException e) {
+                    log.error("Transfer shard {} failed to handle {}", index, command, e);
+                }
+                trim();
+            }
+        }
+
+        private void handle(Command command) {
+            switch (command) {
+                case TransferCommand transfer -> debit(transfer);
+                case CreditCommand credit -> credit(credit.transfer());
+                case SettleCommand settle -> settle(settle.cardId(), settle.amount());
+                case ReleaseCommand release -> release(release.cardId(), release.amount());
+                case EvictCommand evict -> evict(evict.cardId());
+            }
+        }
+
+        private void debit(TransferCommand transfer) {
+            try {
+                validator.validateDistinctCards(transfer.fromCardId(), transfer.toCardId());
+                Account from = account(transfer.fromCardId());
+                validateCard(from.card, transfer.user());
+                if (from.available().compareTo(transfer.amount()) < 0) {
+                    throw new CardException("Insufficient balance on source card");
+                }
+
+                int targetShard = shardOf(transfer.toCardId());
+                if (targetShard == index) {
+                    validateCard(account(transfer.toCardId()).card, transfer.user());
+                    from.reserved = from.reserved.add(transfer.amount());
+                    append(new Applied(transfer, false, LocalDateTime.now()));
+                } else {
+                    from.reserved = from.reserved.add(transfer.amount());
+                    shards[targetShard].enqueue(new CreditCommand(transfer));
+                }
+            } catch (RuntimeException e) {
+                transfer.ack().completeExceptionally(e);
+            }
+        }
+
+        private void credit(TransferCommand transfer) {
+            try {
+                validateCard(account(transfer.toCardId()).card, transfer.user());
+                append(new Applied(transfer, true, LocalDateTime.now()));
+            } catch (RuntimeException e) {
+                shardFor(transfer.fromCardId()).enqueue(new ReleaseCommand(transfer.fromCardId(), transfer.amount()));
+                transfer.ack().completeExceptionally(e);
+            }
+        }
+
+        private void settle(Long cardId, BigDecimal amount) {
+            Account account = accounts.get(cardId);
+            account.committed = account.committed.subtract(amount);
+            account.reserved = account.reserved.subtract(amount);
+            dropIfStale(cardId, account);
+        }
+
+        private void release(Long cardId, BigDecimal amount) {
+            Account account = accounts.get(cardId);
+            account.reserved = account.reserved.subtract(amount);
+            dropIfStale(cardId, account);
+        }
+
+        /**
+         * Status and owner are refreshed right away. The balance is only reloaded once
+         * no reservation is outstanding, because the database cannot yet reflect those.
+         */
+        private void evict(Long cardId) {
+            Account account = accounts.get(cardId);
+            if (account == null) {
+                return;
+            }
+            if (account.reserved.signum() == 0) {
+                accounts.remove(cardId);
+                return;
+            }
+            cardRepository.findById(cardId).ifPresent(card -> account.card = card);
+            account.stale = true;
+        }
+
+        private void dropIfStale(Long cardId, Account account) {
+            if (account.stale && account.reserved.signum() == 0) {
+                accounts.remove(cardId);
+            }
+        }
+
+        private Account account(Long cardId) {
+            Account account = accounts.get(cardId);
+            if (account == null) {
+                Card card = cardRepository.findById(cardId)
+                        .orElseThrow(() -> new CardNotFoundException("Card not found: " + cardId));
+                card.setPendingBalance(cardRepository.sumShardBalances(cardId));
+                account = new Account(card);
+                accounts.put(cardId, account);
+            }
+            account.lastUsed = System.nanoTime();
+            return account;
+        }
+
+        /**
+         * Drops least recently used accounts while the shard holds too many, and idle
+         * ones. Only accounts without a reservation are dropped; the next transfer
+         * reloads them from the database.
+         */
+        private void trim() {
+            TransferProperties.Engine engine = transferProperties.getEngine();
+            long idleBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(engine.getIdleEvictMs());
+            Iterator<Account> eldest = accounts.values().iterator();
+            while (eldest.hasNext()) {
+                Account account = eldest.next();
+                if (accounts.size() <= engine.getMaxCachedCards() && account.lastUsed - idleBefore > 0) {
+                    return;
+                }
+                if (account.reserved.signum() == 0) {
+                    eldest.remove();
+                }
+            }
+        }
+
+        private void append(Applied applied) {
+            if (group.isEmpty()) {
+                groupOpenedAt = System.nanoTime();
+            }
+            group.add(applied);
+            if (group.size() >= transferProperties.getEngine().getMaxGroupSize()) {
+                commit();
+            }
+        }
+
+        /**
+         * Commits the group in one transaction. If that fails, the transfers are committed
+         * one by one, so that a single bad transfer, such as one whose idempotency key
+         * already committed or whose debit the stored balance no longer covers, fails alone
+         * and the rest of the group still goes through.
+         */
+        private void commit() {
+            List<Applied> batch = new ArrayList<>(group);
+            group.clear();
+
+            if (tryPersist(batch)) {
+                groupSize.record(batch.size());
+                batch.forEach(this::complete);
+                return;
+            }
+            if (batch.size() == 1) {
+                rollBack(batch.get(0));
+                return;
+            }
+            for (Applied applied : batch) {
+                if (tryPersist(List.of(applied))) {
+                    groupSize.record(1);
+                    complete(applied);
+                } else {
+                    rollBack(applied);
+                }
+            }
+        }
+
+        private boolean tryPersist(List<Applied> batch) {
+            try {
+                commitTimer.record(() -> transactionTemplate.executeWithoutResult(status -> persist(batch)));
+                return true;
+            } catch (RuntimeException e) {
+                commitFailures.increment();
+                log.error("Transfer shard {} failed to commit {} transfers", index, batch.size(), e);
+                return false;
+            }
+        }
+
+        /**
+         * Writes the transfer rows, their journal lines and one balance update per card.
+         * Cards are updated in id order so that shards writing overlapping cards cannot
+         * deadlock each other.
+         */
+        private void persist(List<Applied> batch) {
+            List<Transfer> records = new ArrayList<>(batch.size());
+            Map<Long, BigDecimal> deltas = new TreeMap<>();
+
+            for (Applied applied : batch) {
+                TransferCommand transfer = applied.transfer();
+                records.add(Transfer.builder()
+                        .fromCard(cardRepository.getReferenceById(transfer.fromCardId()))
+                        .toCard(cardRepository.getReferenceById(transfer.toCardId()))
+                        .amount(transfer.amount())
+                        .createdAt(applied.createdAt())
+                        .build());
+                deltas.merge(transfer.fromCardId(), transfer.amount().negate(), BigDecimal::add);
+                deltas.merge(transfer.toCardId(), transfer.amount(), BigDecimal::add);
+            }
+
+            deltas.forEach((cardId, delta) -> {
+                if (delta.signum() != 0 && cardRepository.addToBalanceIfCovered(cardId, delta) == 0) {
+                    throw new TransferConflictException("Stored balance does not cover the debit on card " + cardId);
+                }
+            });
+            transferRepository.saveAll(records);
+            ledgerService.recordTransfers(records);
+            rollupService.recordTransfers(records);
+            batch.forEach(applied -> idempotencyService.record(applied.transfer().claim(), null));
+        }
+
+        private void reload(Long cardId) {
+            shardFor(cardId).enqueue(new EvictCommand(cardId));
+        }
+
+        private void complete(Applied applied) {
+            TransferCommand transfer = applied.transfer();
+            Account to = accounts.get(transfer.toCardId());
+            if (to != null) {
+                to.committed = to.committed.add(transfer.amount());
+            }
+
+            if (applied.crossShard()) {
+                shardFor(transfer.fromCardId()).enqueue(new SettleCommand(transfer.fromCardId(), transfer.amount()));
+            } else {
+                settle(transfer.fromCardId(), transfer.amount());
+            }
+            transfer.ack().complete(null);
+        }
+
+        /**
+         * Releases the reservation and reloads both cards, since the stored balances may
+         * differ from the cached ones. Both happen before the caller hears of the failure,
+         * so its retry sees the reloaded state.
+         */
+        private void rollBack(Applied applied) {
+            TransferCommand transfer = applied.transfer();
+            if (applied.crossShard()) {
+                shardFor(transfer.fromCardId()).enqueue(new ReleaseCommand(transfer.fromCardId(), transfer.amount()));
+            } else {
+                release(transfer.fromCardId(), transfer.amount());
+            }
+            reload(transfer.fromCardId());
+            reload(transfer.toCardId());
+            transfer.ack().completeExceptionally(
+                    new TransferConflictException("Transfer could not be committed, retry the transfer"));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.util.properties.TransferProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs balance-changing work for a set of cards. The locking modes take the in-JVM
+ * stripes first and only then open the transaction, so queued transfers do not hold
+ * DB connections. The optimistic mode takes no locks and instead retries the whole
+ * transaction with jittered backoff when a card version check fails.
+ * <p>
+ * When the work runs for an idempotent request, its outcome row is inserted at the end
+ * of the same transaction, so the key is recorded if and only if the transfer commits.
+ */
+@Slf4j
+@Component
+public class TransferExecutor {
+
+    private final CardLockTable cardLockTable;
+    private final TransactionTemplate transactionTemplate;
+    private final TransferProperties transferProperties;
+    private final IdempotencyService idempotencyService;
+    private final Timer executionTimer;
+    private final Counter optimisticRetries;
+    private final Counter optimisticExhausted;
+    private final DistributionSummary optimisticAttempts;
+
+    public TransferExecutor(CardLockTable cardLockTable,
+                            TransactionTemplate transactionTemplate,
+                            TransferProperties transferProperties,
+                            IdempotencyService idempotencyService,
+                            MeterRegistry meterRegistry) {
+        this.cardLockTable = cardLockTable;
+        this.transactionTemplate = transactionTemplate;
+        this.transferProperties = transferProperties;
+        this.idempotencyService = idempotencyService;
+
+        String mode = transferProperties.getMode().name().toLowerCase();
+        this.executionTimer = Timer.builder("transfer.execution")
+                .description("Time to apply a transfer, including lock waits and retries")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        this.optimisticRetries = Counter.builder("transfer.optimistic.retries")
+                .description("Transactions retried after a card version conflict")
+                .register(meterRegistry);
+        this.optimisticExhausted = Counter.builder("transfer.optimistic.exhausted")
+                .description("Transfers rejected after running out of retry attempts")
+                .register(meterRegistry);
+        this.optimisticAttempts = DistributionSummary.builder("transfer.optimistic.attempts")
+                .description("Attempts needed per successful optimistic transfer")
+                .register(meterRegistry);
+    }
+
+    public void run(Collection<Long> cardIds, Runnable work) {
+        execute(cardIds, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public <T> T execute(Collection<Long> cardIds, Supplier<T> work) {
+        return executionTimer.record(() -> {
+            try (CardLockTable.Lease ignored = cardLockTable.acquire(cardIds)) {
+                return transactionTemplate.execute(status -> {
+                    T result = work.get();
+                    idempotencyService.record(idempotencyService.currentClaim(), result);
+                    return result;
+                });
+            }
+        });
+    }
+
+    public void runWithRetry(Runnable work) {
+        executionTimer.record(() -> retryOnConflict(work));
+    }
+
+    private void retryOnConflict(Runnable work) {
+        TransferProperties.Retry retry = transferProperties.getRetry();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    work.run();
+                    idempotencyService.record(idempotencyService.currentClaim(), null);
+                });
+                optimisticAttempts.record(attempt);
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= retry.getMaxAttempts()) {
+                    optimisticExhausted.increment();
+                    log.warn("Transfer gave up after {} optimistic attempts", attempt);
+                    throw new TransferConflictException("Cards are being updated concurrently, retry the transfer later");
+                }
+                optimisticRetries.increment();
+                backoff(attempt, retry);
+            }
+        }
+    }
+
+    private static void backoff(int attempt, TransferProperties.Retry retry) {
+        long ceiling = Math.min(retry.getMaxBackoffMs(), retry.getInitialBackoffMs() << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferConflictException("Interrupted while retrying transfer");
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.bankcards.service.user;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.util.cache.LruCache;
+import com.example.bankcards.util.properties.UserCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Two-tier cache of user rows: a bounded in-process LRU with a short TTL in front of
+ * Redis, in front of the database. Users are cached both by id and by username, as a
+ * compact delimited string rather than a serialized entity, and handed out as fresh
+ * detached {@link User} copies. Password hashes are never cached; credential checks
+ * read the database.
+ * <p>
+ * {@link #evict} drops the entries on this node and in Redis, then publishes the id and
+ * usernames on the eviction channel so every other node drops its local entries too.
+ * A node that misses the message serves the stale row for at most the local TTL.
+ * <p>
+ * Every Redis key has a generation counter that eviction bumps. A lookup reads the
+ * generation with the value and writes a loaded row back only if the generation is still
+ * the one it saw, so a row read from the database before a concurrent update cannot be
+ * stored after that update's eviction. The local tier is guarded the same way by a
+ * count of local evictions. Redis being unavailable only costs the second tier; lookups
+ * fall through to the loader.
+ */
+@Slf4j
+@Component
+public class UserCache implements MessageListener {
+
+    // v2: entries no longer carry the password hash, so v1 values are never decoded
+    private static final String ID_KEY_PREFIX = "user:v2:id:";
+    private static final String NAME_KEY_PREFIX = "user:v2:name:";
+    private static final String GENERATION_KEY_PREFIX = "user:v2:gen:";
+    private static final char SEPARATOR = '|';
+
+    /** Sets KEYS[1] only while the generation in KEYS[2] is still ARGV[1] ('' when absent). */
+    private static final RedisScript<Long> STORE_SCRIPT = new DefaultRedisScript<>("""
+            if (redis.call('GET', KEYS[2]) or '') ~= ARGV[1] then
+                return 0
+            end
+            redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[3])
+            return 1
+            """, Long.class);
+
+    /** Deletes each value key in KEYS[1..n] and bumps its generation in KEYS[n+1..2n]. */
+    private static final RedisScript<Long> EVICT_SCRIPT = new DefaultRedisScript<>("""
+            local n = #KEYS / 2
+            for i = 1, n do
+                redis.call('DEL', KEYS[i])
+                redis.call('INCR', KEYS[n + i])
+                redis.call('EXPIRE', KEYS[n + i], ARGV[1])
+            end
+            return n
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final UserCacheProperties properties;
+    private final Duration redisTtl;
+    private final LruCache<Long, String> localById;
+    private final LruCache<String, String> localByName;
+    private final AtomicLong localEvictions = new AtomicLong();
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+
+    public UserCache(StringRedisTemplate redisTemplate,
+                     UserCacheProperties properties,
+                     MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.redisTtl = Duration.ofSeconds(properties.getRedisTtlSeconds());
+        Duration localTtl = Duration.ofMillis(properties.getLocalTtlMs());
+        this.localById = new LruCache<>(properties.getLocalSize(), localTtl);
+        this.localByName = new LruCache<>(properties.getLocalSize(), localTtl);
+        this.localHits = counter(meterRegistry, "local", "hit");
+        this.localMisses = counter(meterRegistry, "local", "miss");
+        this.redisHits = counter(meterRegistry, "redis", "hit");
+        this.redisMisses = counter(meterRegistry, "redis", "miss");
+    }
+
+    public Optional<User> findById(Long id, Function<Long, Optional<User>> loader) {
+        if (id == null) {
+            return loader.apply(null);
+        }
+        return find(id, localById, ID_KEY_PREFIX + id, () -> loader.apply(id));
+    }
+
+    public Optional<User> findByUsername(String username, Function<String, Optional<User>> loader) {
+        if (username == null) {
+            return loader.apply(null);
+        }
+        return find(username, localByName, NAME_KEY_PREFIX + username, () -> loader.apply(username));
+    }
+
+    public void evict(Long id, String... usernames) {
+        List<String> keys = new ArrayList<>(usernames.length + 1);
+        keys.add(ID_KEY_PREFIX + id);
+        StringBuilder message = new StringBuilder().append(id);
+        for (String username : usernames) {
+            if (username != null) {
+                keys.add(NAME_KEY_PREFIX + username);
+                message.append('\n').append(username);
+            }
+        }
+        evictLocal(message.toString());
+
+        int valueKeys = keys.size();
+        for (int i = 0; i < valueKeys; i++) {
+            keys.add(generationKey(keys.get(i)));
+        }
+        try {
+            // the generation has to outlive any entry stored under the previous one
+            redisTemplate.execute(EVICT_SCRIPT, keys, String.valueOf(redisTtl.toSeconds()));
+            redisTemplate.convertAndSend(properties.getEvictionChannel(), message.toString());
+        } catch (RuntimeException e) {
+            log.warn("User cache eviction for user {} not propagated: {}", id, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        evictLocal(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private <K> Optional<User> find(K key,
+                                    LruCache<K, String> local,
+                                    String redisKey,
+                                    Supplier<Optional<User>> loader) {
+        String cached = local.get(key);
+        if (cached != null) {
+            localHits.increment();
+            return Optional.of(decode(cached));
+        }
+        localMisses.increment();
+
+        long evictions = localEvictions.get();
+        String generationKey = generationKey(redisKey);
+        List<String> redis = readRedis(redisKey, generationKey);
+        cached = redis != null ? redis.get(0) : null;
+        if (cached != null) {
+            redisHits.increment();
+            storeLocal(key, local, cached, evictions);
+            return Optional.of(decode(cached));
+        }
+        redisMisses.increment();
+
+        Optional<User> loaded = loader.get();
+        loaded.ifPresent(user -> {
+            String encoded = encode(user);
+            // without Redis there is no generation to compare, so only the local TTL bounds staleness
+            if (redis == null || storeRedis(redisKey, generationKey, redis.get(1), encoded)) {
+                storeLocal(key, local, encoded, evictions);
+            }
+        });
+        return loaded;
+    }
+
+    private <K> void storeLocal(K key, LruCache<K, String> local, String encoded, long evictions) {
+        if (localEvictions.get() == evictions) {
+            local.put(key, encoded);
+        }
+    }
+
+    private boolean storeRedis(String key, String generationKey, String generation, String encoded) {
+        try {
+            Long stored = redisTemplate.execute(STORE_SCRIPT, List.of(key, generationKey),
+                    generation != null ? generation : "", encoded, String.valueOf(redisTtl.toSeconds()));
+            return stored != null && stored == 1L;
+        } catch (RuntimeException e) {
+            log.debug("User cache write of {} failed: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    /** The value and its generation in one round trip, or {@code null} if Redis failed. */
+    private List<String> readRedis(String key, String generationKey) {
+        try {
+            return redisTemplate.opsForValue().multiGet(List.of(key, generationKey));
+        } catch (RuntimeException e) {
+            log.debug("User cache read of {} failed: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void evictLocal(String message) {
+        localEvictions.incrementAndGet();
+        String[] parts = message.split("\n");
+        localById.invalidate(Long.valueOf(parts[0]));
+        for (int i = 1; i < parts.length; i++) {
+            localByName.invalidate(parts[i]);
+        }
+    }
+
+    private static String generationKey(String key) {
+        return GENERATION_KEY_PREFIX + key;
+    }
+
+    /**
+     * {@code id|tokenVersion|role|username}. The username goes last since it is the only
+     * field that may contain the separator.
+     */
+    static String encode(User user) {
+        return new StringBuilder(96)
+                .append(user.getId()).append(SEPARATOR)
+                .append(user.getTokenVersion() != null ? user.getTokenVersion() : 0).append(SEPARATOR)
+                .append(user.getRole() != null ? user.getRole().name() : "").append(SEPARATOR)
+                .append(user.getUsername())
+                .toString();
+    }
+
+    static User decode(String value) {
+        String[] fields = value.split("\\|", 4);
+        return User.builder()
+                .id(Long.valueOf(fields[0]))
+                .tokenVersion(Integer.valueOf(fields[1]))
+                .role(fields[2].isEmpty() ? null : Role.valueOf(fields[2]))
+                .username(fields[3])
+                .build();
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String tier, String result) {
+        return Counter.builder("user.cache.gets")
+                .description("User lookups by cache tier and outcome")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.bankcards.util;
 
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.projection.CardListingRow;
 import com.example.bankcards.exception.EncryptionException;
 import com.example.bankcards.util.properties.EncryptionProperties;
 import lombok.extern.slf4j.Slf4j;
@@ -7,47 +9,111 @@ import org.mapstruct.Named;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
 
+/**
+ * AES-GCM encryption of card numbers, stored as Base64 of {@code iv || ciphertext || tag}.
+ * <p>
+ * Each thread keeps its own initialized {@link Cipher} pair and scratch buffers, so the
+ * hot paths ({@link #maskCardNumber} runs once per row of every card page) do not look
+ * up a provider, seed a {@link SecureRandom} or copy through intermediate arrays. IVs
+ * come from one shared, thread-safe {@link SecureRandom}: random 96-bit IVs stay unique
+ * across application instances sharing the key, which a per-process counter would not
+ * guarantee.
+ * <p>
+ * Keys are versioned. Ciphertexts written under version {@code n > 0} carry a
+ * {@code "v<n>:"} prefix, while unprefixed ones belong to the legacy {@code key} (version 0).
+ * Any version in the keyring can be decrypted, and new values are always written under
+ * {@code active-key-version}. This is what lets the key be rotated while the re-encryption
+ * job rewrites old rows in the background.
+ * <p>
+ * Because the IV is random, equal numbers never share a ciphertext. Lookups and the
+ * uniqueness check go through {@link #blindIndex}, a keyed HMAC of the number under a
+ * separate key, which is deterministic but useless without that key.
+ */
 @Slf4j
 @Component
 public class CardEncryptor {
 
-    private final SecretKeySpec secretKey;
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getEncoder();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
+    private static final String INDEX_ALGORITHM = "HmacSHA256";
+    private static final HexFormat HEX = HexFormat.of();
+    private static final char VERSION_MARKER = 'v';
+    private static final char VERSION_SEPARATOR = ':';
+    // "v" + up to 9 digits + ":"
+    private static final int MAX_PREFIX_LENGTH = 11;
+
+    private final Map<Integer, SecretKeySpec> keyring;
+    private final int activeKeyVersion;
+    private final SecretKeySpec activeKey;
+    private final String activePrefix;
+    private final SecretKeySpec indexKey;
     private final EncryptionProperties properties;
+    private final Charset charset;
+    private final int ivLength;
+    private final int tagBits;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Engine> engines = ThreadLocal.withInitial(Engine::new);
+    private final String maskPrefix;
+    private final String maskSuffix;
 
     public CardEncryptor(EncryptionProperties properties) {
         this.properties = properties;
         validateKey(properties.getKey());
+        validateMaskingPattern(properties.getMaskingPattern());
+        validateIndexKey(properties.getIndexKey(), properties.getKey());
 
-        this.secretKey = new SecretKeySpec(
-                properties.getKey().getBytes(StandardCharsets.UTF_8),
-                "AES"
+        this.keyring = buildKeyring(properties);
+        this.activeKeyVersion = properties.getActiveKeyVersion();
+        this.activeKey = keyring.get(activeKeyVersion);
+        if (activeKey == null) {
+            throw new EncryptionException("No key configured for active key version " + activeKeyVersion);
+        }
+        this.activePrefix = prefix(activeKeyVersion);
+        this.indexKey = new SecretKeySpec(
+                properties.getIndexKey().getBytes(StandardCharsets.UTF_8),
+                INDEX_ALGORITHM
         );
+        this.charset = Charset.forName(properties.getCharset());
+        this.ivLength = properties.getIvLength();
+        this.tagBits = properties.getTagLength() * 8;
+
+        String pattern = properties.getMaskingPattern();
+        int placeholder = pattern.indexOf("%s");
+        this.maskPrefix = pattern.substring(0, placeholder);
+        this.maskSuffix = pattern.substring(placeholder + 2);
 
-        log.info("CardEncryptor initialized successfully with algorithm: {}", properties.getAlgorithm());
+        // fail at startup rather than on the first request if the algorithm is unavailable
+        engines.get();
+
+        log.info("CardEncryptor initialized successfully with algorithm: {}, active key version: {}, known versions: {}",
+                properties.getAlgorithm(), activeKeyVersion, keyring.keySet());
     }
 
     @Named("encrypt")
     public String encrypt(String data) {
         try {
-            Cipher cipher = Cipher.getInstance(properties.getAlgorithm());
-            byte[] iv = new byte[properties.getIvLength()];
-            new SecureRandom().nextBytes(iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey,
-                    new GCMParameterSpec(properties.getTagLength() * 8, iv));
-
-            byte[] encrypted = cipher.doFinal(data.getBytes(properties.getCharset()));
-            byte[] encryptedWithIv = new byte[properties.getIvLength() + encrypted.length];
-            System.arraycopy(iv, 0, encryptedWithIv, 0, properties.getIvLength());
-            System.arraycopy(encrypted, 0, encryptedWithIv, properties.getIvLength(), encrypted.length);
-
-            return Base64.getEncoder().encodeToString(encryptedWithIv);
-
+            Engine engine = engines.get();
+            ByteBuffer plain = engine.encode(data);
+            int sealedLength = encrypt(plain, engine.sealed(ivLength + plain.remaining() + properties.getTagLength()));
+            return engine.toBase64(activePrefix, sealedLength);
         } catch (Exception e) {
             throw new EncryptionException("Encryption failed");
         }
@@ -56,40 +122,139 @@ public class CardEncryptor {
     @Named("decrypt")
     public String decrypt(String encryptedData) {
         try {
-            byte[] decoded = Base64.getDecoder().decode(encryptedData);
-            byte[] iv = new byte[properties.getIvLength()];
-            byte[] encrypted = new byte[decoded.length - properties.getIvLength()];
-            System.arraycopy(decoded, 0, iv, 0, properties.getIvLength());
-            System.arraycopy(decoded, properties.getIvLength(), encrypted, 0, encrypted.length);
+            Engine engine = engines.get();
+            int prefixLength = prefixLength(encryptedData);
+            int keyVersion = prefixLength == 0 ? 0 : parseVersion(encryptedData, prefixLength);
+            ByteBuffer sealed = engine.fromBase64(encryptedData, prefixLength);
+            ByteBuffer plain = engine.plain(sealed.remaining());
+            decrypt(keyVersion, sealed, plain);
+            return engine.decode(plain.flip());
+        } catch (Exception e) {
+            throw new EncryptionException("Decryption failed");
+        }
+    }
+
+    /**
+     * Decrypts a value written under any known key version and encrypts it again under
+     * the active one.
+     */
+    public String reencrypt(String encryptedData) {
+        return encrypt(decrypt(encryptedData));
+    }
+
+    public int activeKeyVersion() {
+        return activeKeyVersion;
+    }
 
-            Cipher cipher = Cipher.getInstance(properties.getAlgorithm());
-            cipher.init(Cipher.DECRYPT_MODE, secretKey,
-                    new GCMParameterSpec(properties.getTagLength() * 8, iv));
+    /**
+     * Key version a stored value was written under, read from its prefix alone.
+     */
+    public int keyVersion(String encryptedData) {
+        int prefixLength = prefixLength(encryptedData);
+        return prefixLength == 0 ? 0 : parseVersion(encryptedData, prefixLength);
+    }
 
-            return new String(cipher.doFinal(encrypted), properties.getCharset());
+    /**
+     * Deterministic HMAC-SHA256 of the card number as 64 hex characters, stored in
+     * {@code cards.number_hash} and used for equality lookups and uniqueness.
+     */
+    @Named("blindIndex")
+    public String blindIndex(String number) {
+        try {
+            Engine engine = engines.get();
+            ByteBuffer plain = engine.encode(number);
+            engine.mac.update(plain);
+            return HEX.formatHex(engine.mac.doFinal());
         } catch (Exception e) {
+            throw new EncryptionException("Card number indexing failed");
+        }
+    }
+
+    /**
+     * Encrypts the remaining bytes of {@code plaintext} into {@code out} as
+     * {@code iv || ciphertext || tag} and returns the number of bytes written. The raw
+     * output carries no key version, so callers keep {@link #activeKeyVersion()} next to it
+     * and pass it back to {@link #decrypt(int, ByteBuffer, ByteBuffer)}.
+     */
+    public int encrypt(ByteBuffer plaintext, ByteBuffer out) {
+        try {
+            Engine engine = engines.get();
+            random.nextBytes(engine.iv);
+            engine.encryptCipher.init(Cipher.ENCRYPT_MODE, activeKey, new GCMParameterSpec(tagBits, engine.iv));
+            out.put(engine.iv);
+            return ivLength + engine.encryptCipher.doFinal(plaintext, out);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            throw new EncryptionException("Encryption failed");
+        }
+    }
+
+    /**
+     * Decrypts {@code iv || ciphertext || tag} from the remaining bytes of {@code sealed}
+     * with the given key version into {@code out} and returns the number of plaintext
+     * bytes written.
+     */
+    public int decrypt(int keyVersion, ByteBuffer sealed, ByteBuffer out) {
+        try {
+            Engine engine = engines.get();
+            SecretKeySpec key = keyring.get(keyVersion);
+            if (key == null) {
+                throw new EncryptionException("Unknown key version " + keyVersion);
+            }
+            if (sealed.remaining() < ivLength + properties.getTagLength()) {
+                throw new EncryptionException("Decryption failed");
+            }
+            sealed.get(engine.iv);
+            engine.decryptCipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(tagBits, engine.iv));
+            return engine.decryptCipher.doFinal(sealed, out);
+        } catch (GeneralSecurityException | RuntimeException e) {
             throw new EncryptionException("Decryption failed");
         }
     }
 
+    /**
+     * Masks a card from its stored last four digits, falling back to decrypting the
+     * number for rows the backfill has not reached yet.
+     */
+    @Named("maskCard")
+    public String maskCard(Card card) {
+        return maskStored(card.getLast4(), card.getNumber());
+    }
+
+    @Named("maskListing")
+    public String maskListing(CardListingRow row) {
+        return maskStored(row.last4(), row.number());
+    }
+
+    @Named("maskStored")
+    public String maskStored(String last4, String encryptedCardNumber) {
+        if (last4 != null) {
+            return maskPrefix + last4 + maskSuffix;
+        }
+        return maskCardNumber(encryptedCardNumber);
+    }
+
+    @Named("lastFour")
+    public String lastFour(String number) {
+        return number.substring(number.length() - 4);
+    }
+
     @Named("maskCardNumber")
     public String maskCardNumber(String encryptedCardNumber) {
         try {
             String decrypted = decrypt(encryptedCardNumber);
             return mask(decrypted);
         } catch (Exception e) {
-            return String.format(properties.getMaskingPattern(), "****");
+            return maskPrefix + "****" + maskSuffix;
         }
     }
 
     @Named("mask")
     private String mask(String decryptedNumber) {
         if (decryptedNumber == null || decryptedNumber.length() < 4) {
-            return String.format(properties.getMaskingPattern(), "****");
+            return maskPrefix + "****" + maskSuffix;
         }
 
-        String lastFour = decryptedNumber.substring(decryptedNumber.length() - 4);
-        return String.format(properties.getMaskingPattern(), lastFour);
+        return maskPrefix + decryptedNumber.substring(decryptedNumber.length() - 4) + maskSuffix;
     }
 
     private void validateKey(String key) {
@@ -97,4 +262,188 @@ public class CardEncryptor {
             throw new EncryptionException("Encryption key must be 16 characters long");
         }
     }
+
+    private static Map<Integer, SecretKeySpec> buildKeyring(EncryptionProperties properties) {
+        Map<Integer, SecretKeySpec> keys = new HashMap<>();
+        keys.put(0, new SecretKeySpec(properties.getKey().getBytes(StandardCharsets.UTF_8), "AES"));
+        properties.getKeyring().forEach((version, key) -> {
+            if (version == null || version < 1) {
+                throw new EncryptionException("Keyring versions must be positive, version 0 is the legacy key");
+            }
+            if (key == null || (key.length() != 16 && key.length() != 24 && key.length() != 32)) {
+                throw new EncryptionException("Keyring key " + version + " must be 16, 24 or 32 characters long");
+            }
+            keys.put(version, new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "AES"));
+        });
+        return Map.copyOf(keys);
+    }
+
+    private static String prefix(int keyVersion) {
+        return keyVersion == 0 ? "" : VERSION_MARKER + Integer.toString(keyVersion) + VERSION_SEPARATOR;
+    }
+
+    /**
+     * Length of the {@code "v<n>:"} prefix, or 0 for a legacy value. The separator is
+     * outside the Base64 alphabet, so a legacy value starting with 'v' cannot match.
+     */
+    private static int prefixLength(String encryptedData) {
+        if (encryptedData.isEmpty() || encryptedData.charAt(0) != VERSION_MARKER) {
+            return 0;
+        }
+        int limit = Math.min(encryptedData.length(), MAX_PREFIX_LENGTH);
+        for (int i = 1; i < limit; i++) {
+            if (encryptedData.charAt(i) == VERSION_SEPARATOR) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int parseVersion(String encryptedData, int prefixLength) {
+        try {
+            return Integer.parseInt(encryptedData, 1, prefixLength - 1, 10);
+        } catch (NumberFormatException e) {
+            throw new EncryptionException("Decryption failed");
+        }
+    }
+
+    private void validateIndexKey(String key, String encryptionKey) {
+        if (key == null || key.length() < 16) {
+            throw new EncryptionException("Index key must be at least 16 characters long");
+        }
+        if (key.equals(encryptionKey)) {
+            throw new EncryptionException("Index key must differ from the encryption key");
+        }
+    }
+
+    private void validateMaskingPattern(String pattern) {
+        if (pattern == null || !pattern.contains("%s")) {
+            throw new EncryptionException("Masking pattern must contain %s");
+        }
+    }
+
+    /**
+     * Per-thread cipher state and scratch buffers. Buffers only ever grow, and card
+     * numbers are short, so they settle at their final size after the first call.
+     */
+    private final class Engine {
+
+        private final Cipher encryptCipher;
+        private final Cipher decryptCipher;
+        private final Mac mac;
+        private final byte[] iv = new byte[ivLength];
+        private final CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        private final CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        private ByteBuffer plain = ByteBuffer.allocate(64);
+        private ByteBuffer sealed = ByteBuffer.allocate(128);
+        private CharBuffer text = CharBuffer.allocate(64);
+        private byte[] base64 = new byte[192];
+        private byte[] raw = new byte[0];
+        private byte[] ascii = new byte[0];
+
+        private Engine() {
+            try {
+                encryptCipher = Cipher.getInstance(properties.getAlgorithm());
+                decryptCipher = Cipher.getInstance(properties.getAlgorithm());
+                mac = Mac.getInstance(INDEX_ALGORITHM);
+                mac.init(indexKey);
+            } catch (GeneralSecurityException e) {
+                throw new EncryptionException("Encryption algorithm unavailable: " + properties.getAlgorithm());
+            }
+        }
+
+        private ByteBuffer plain(int capacity) {
+            if (plain.capacity() < capacity) {
+                plain = ByteBuffer.allocate(capacity);
+            }
+            return plain.clear();
+        }
+
+        private ByteBuffer sealed(int capacity) {
+            if (sealed.capacity() < capacity) {
+                sealed = ByteBuffer.allocate(capacity);
+            }
+            return sealed.clear();
+        }
+
+        // the JDK Base64 coders read their whole source array, so these are sized exactly
+        private byte[] raw(int length) {
+            if (raw.length != length) {
+                raw = new byte[length];
+            }
+            return raw;
+        }
+
+        private byte[] ascii(int length) {
+            if (ascii.length != length) {
+                ascii = new byte[length];
+            }
+            return ascii;
+        }
+
+        private ByteBuffer encode(String data) {
+            ByteBuffer out = plain((int) (data.length() * encoder.maxBytesPerChar()));
+            encoder.reset();
+            CoderResult result = encoder.encode(CharBuffer.wrap(data), out, true);
+            if (result.isError() || encoder.flush(out).isError()) {
+                throw new EncryptionException("Encryption failed");
+            }
+            return out.flip();
+        }
+
+        private String decode(ByteBuffer in) {
+            int capacity = (int) (in.remaining() * decoder.maxCharsPerByte());
+            if (text.capacity() < capacity) {
+                text = CharBuffer.allocate(capacity);
+            }
+            text.clear();
+            decoder.reset();
+            CoderResult result = decoder.decode(in, text, true);
+            if (result.isError() || decoder.flush(text).isError()) {
+                throw new EncryptionException("Decryption failed");
+            }
+            return new String(text.array(), 0, text.position());
+        }
+
+        /**
+         * Encodes the first {@code length} sealed bytes behind {@code prefix}.
+         */
+        private String toBase64(String prefix, int length) {
+            byte[] src = raw(length);
+            System.arraycopy(sealed.array(), 0, src, 0, length);
+            int outLength = (length + 2) / 3 * 4;
+            if (base64.length < outLength) {
+                base64 = new byte[outLength];
+            }
+            int written = BASE64_ENCODER.encode(src, base64);
+            String encoded = new String(base64, 0, written, StandardCharsets.ISO_8859_1);
+            return prefix.isEmpty() ? encoded : prefix.concat(encoded);
+        }
+
+        /**
+         * Decodes padded standard Base64 starting at {@code start} into the sealed buffer
+         * and returns it ready for reading.
+         */
+        private ByteBuffer fromBase64(String encoded, int start) {
+            int length = encoded.length() - start;
+            if (length == 0 || length % 4 != 0) {
+                throw new EncryptionException("Decryption failed");
+            }
+            byte[] src = ascii(length);
+            for (int i = 0; i < length; i++) {
+                char c = encoded.charAt(start + i);
+                if (c >= 128) {
+                    throw new EncryptionException("Decryption failed");
+                }
+                src[i] = (byte) c;
+            }
+            ByteBuffer out = sealed(length / 4 * 3);
+            return out.limit(BASE64_DECODER.decode(src, out.array()));
+        }
+
+    }
 }
@@ -14,4 +14,8 @@ public class CardSpecifications {
     public static Specification<Card> hasOwner(User owner) {
         return (root, query, cb) -> owner == null ? null : cb.equal(root.get("owner"), owner);
     }
+
+    public static Specification<Card> hasOwnerId(Long ownerId) {
+        return (root, query, cb) -> ownerId == null ? null : cb.equal(root.get("owner").get("id"), ownerId);
+    }
 }
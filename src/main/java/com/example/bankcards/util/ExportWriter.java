@@ -0,0 +1,124 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.dto.ExportFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Writes export rows one at a time as CSV or NDJSON. Nothing but the current row and
+ * the output buffer is held, so an export of any size runs in constant memory.
+ * Dates are written as ISO strings in both formats.
+ */
+public abstract class ExportWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    protected final String[] columns;
+
+    protected ExportWriter(String[] columns) {
+        this.columns = columns;
+    }
+
+    public static ExportWriter of(ExportFormat format, OutputStream out, ObjectMapper objectMapper, String... columns)
+            throws IOException {
+        return format == ExportFormat.CSV
+                ? new Csv(out, columns)
+                : new Ndjson(out, objectMapper, columns);
+    }
+
+    public abstract void row(Object... values) throws IOException;
+
+    public abstract void flush() throws IOException;
+
+    protected static Object normalize(Object value) {
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate().toString();
+        }
+        if (value instanceof Date date) {
+            return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toString();
+        }
+        if (value instanceof java.time.temporal.TemporalAccessor temporal) {
+            return temporal.toString();
+        }
+        return value;
+    }
+
+    private static final class Csv extends ExportWriter {
+
+        private final Writer writer;
+
+        private Csv(OutputStream out, String[] columns) throws IOException {
+            super(columns);
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            row((Object[]) columns);
+        }
+
+        @Override
+        public void row(Object... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeField(normalize(values[i]));
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        private void writeField(Object value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private static final class Ndjson extends ExportWriter {
+
+        private final JsonGenerator generator;
+
+        private Ndjson(OutputStream out, ObjectMapper objectMapper, String[] columns) throws IOException {
+            super(columns);
+            this.generator = objectMapper.getFactory()
+                    .createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void row(Object... values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < values.length; i++) {
+                generator.writeFieldName(columns[i]);
+                generator.writeObject(normalize(values[i]));
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.bankcards.util;
+
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last row of a sorted keyset slice, handed to clients as an opaque
+ * token. Besides the sort key and the id tie-breaker it records which sort produced it,
+ * so a cursor replayed against another sort is refused instead of skipping rows.
+ */
+public record SortCursor(String sort, Sort.Direction direction, String key, Long id) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        String raw = sort + SEPARATOR + direction + SEPARATOR + id + SEPARATOR + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SortCursor decode(String token, String sort, Sort.Direction direction) {
+        SortCursor cursor;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            cursor = new SortCursor(parts[0], Sort.Direction.valueOf(parts[1]), parts[3], Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid page cursor");
+        }
+        if (!cursor.sort().equals(sort) || cursor.direction() != direction) {
+            throw new IllegalArgumentException("Page cursor was issued for another sort order");
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.bankcards.util.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded, access-ordered cache whose entries also expire after a TTL.
+ * Meant as a small in-process tier in front of Redis or the database.
+ */
+public class LruCache<K, V> {
+
+    private final int maxSize;
+    private final long defaultTtlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    public LruCache(int maxSize, Duration defaultTtl) {
+        this.maxSize = maxSize;
+        this.defaultTtlNanos = defaultTtl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > LruCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt - System.nanoTime() <= 0) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        put(key, value, defaultTtlNanos);
+    }
+
+    public void put(K key, V value, Duration ttl) {
+        put(key, value, Math.min(ttl.toNanos(), defaultTtlNanos));
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void put(K key, V value, long ttlNanos) {
+        if (ttlNanos <= 0) {
+            entries.remove(key);
+            return;
+        }
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+}
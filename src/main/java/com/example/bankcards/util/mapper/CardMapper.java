@@ -4,6 +4,7 @@ import com.example.bankcards.dto.responce.CardResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.projection.CardListingRow;
 import com.example.bankcards.util.CardEncryptor;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -16,14 +17,20 @@ public interface CardMapper {
     @Mapping(source = "owner", target = "owner", qualifiedByName = "mapOwner")
     @Mapping(source = "expiration", target = "expiryDate")
     @Mapping(source = "status", target = "status", qualifiedByName = "mapStatus")
+    @Mapping(source = "totalBalance", target = "balance")
     CardResponse toResponse(Card card);
 
-    @Mapping(source = "number", target = "cardNumber", qualifiedByName = "maskCardNumber")
+    @Mapping(source = "card", target = "cardNumber", qualifiedByName = "maskCard")
     @Mapping(source = "owner", target = "owner", qualifiedByName = "mapOwner")
     @Mapping(source = "expiration", target = "expiryDate")
     @Mapping(source = "status", target = "status", qualifiedByName = "mapStatus")
+    @Mapping(source = "totalBalance", target = "balance")
     CardResponse toResponseWithMask(Card card);
 
+    @Mapping(source = "row", target = "cardNumber", qualifiedByName = "maskListing")
+    @Mapping(source = "expiration", target = "expiryDate")
+    CardResponse toResponseWithMask(CardListingRow row);
+
     @Named("mapOwner")
     default String mapOwner(User user) {
         return user != null ? user.getUsername() : null;
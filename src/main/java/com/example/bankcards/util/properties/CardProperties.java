@@ -13,6 +13,7 @@ public class CardProperties {
 
     private Status status = new Status();
     private Number number = new Number();
+    private BulkImport bulkImport = new BulkImport();
 
     @Getter
     @Setter
@@ -20,6 +21,10 @@ public class CardProperties {
         private String active;
         private String blocked;
         private String expired;
+        /**
+         * Redis channel on which a node asks every other node to reload the statuses.
+         */
+        private String refreshChannel = "card-status:refresh";
     }
 
     @Getter
@@ -28,4 +33,17 @@ public class CardProperties {
         private String maskPattern;
         private int visibleDigits;
     }
+
+    @Getter
+    @Setter
+    public static class BulkImport {
+        private int batchSize = 1000;
+        /**
+         * Threads that parse and encrypt batches; 0 uses one per available core.
+         */
+        private int workers = 0;
+        private int maxErrors = 1000;
+        private int historySize = 100;
+        private long historyTtlMinutes = 1440;
+    }
 }
@@ -4,15 +4,41 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "encryption")
 public class EncryptionProperties {
 
     private String key;
+    private int activeKeyVersion;
+    private Map<Integer, String> keyring = new HashMap<>();
     private String algorithm;
     private int ivLength;
     private int tagLength;
     private String charset;
     private String maskingPattern;
+    private String indexKey;
+    private Backfill backfill = new Backfill();
+    private Reencryption reencryption = new Reencryption();
+
+    @Data
+    public static class Backfill {
+        private boolean enabled = true;
+        private int batchSize = 500;
+        private long intervalMs = 60000;
+    }
+
+    @Data
+    public static class Reencryption {
+        private boolean enabled = true;
+        private long intervalMs = 300000;
+        private int chunkSize = 200;
+        private int workers = 2;
+        // chunk write time the job backs off above, so it stays out of request p99
+        private long targetLatencyMs = 50;
+        private long maxPauseMs = 5000;
+    }
 }
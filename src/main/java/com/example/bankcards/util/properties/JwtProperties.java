@@ -14,4 +14,15 @@ public class JwtProperties {
     private String secret;
     private long accessExpirationMs;
     private long refreshExpirationMs;
+    /**
+     * How long a node trusts its cached token version of a user before asking Redis
+     * again, i.e. the longest a revoked access token keeps working on another node.
+     */
+    private long revocationCheckMs = 10000;
+    private int revocationCacheSize = 100000;
+    /**
+     * Access tokens kept after their first verification; 0 verifies every request.
+     */
+    private int verifiedCacheSize = 10000;
+    private long verifiedCacheTtlMs = 300000;
 }
@@ -0,0 +1,22 @@
+package com.example.bankcards.util.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "ledger")
+public class LedgerProperties {
+
+    private Snapshot snapshot = new Snapshot();
+
+    @Getter
+    @Setter
+    public static class Snapshot {
+        private boolean enabled = true;
+        private long intervalMs = 60000;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.bankcards.util.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "paging")
+public class PagingProperties {
+
+    /**
+     * Largest slice the cursor-based listings return in one response.
+     */
+    private int maxPageSize = 100;
+}
@@ -0,0 +1,29 @@
+package com.example.bankcards.util.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "spring.security.password")
+public class PasswordProperties {
+
+    /**
+     * BCrypt cost for new hashes. Stored hashes with another cost are re-hashed on the
+     * next successful login.
+     */
+    private int bcryptStrength = 10;
+    /**
+     * Threads doing BCrypt work; 0 means one per available processor.
+     */
+    private int workers = 0;
+    /**
+     * Logins allowed to wait for a worker. Beyond that, logins are refused at once
+     * instead of holding request threads.
+     */
+    private int queueCapacity = 64;
+    private long timeoutMs = 5000;
+}
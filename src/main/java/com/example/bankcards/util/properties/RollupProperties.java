@@ -0,0 +1,25 @@
+package com.example.bankcards.util.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "rollup")
+public class RollupProperties {
+
+    private int maxRangeDays = 366;
+    private Rebuild rebuild = new Rebuild();
+
+    @Getter
+    @Setter
+    public static class Rebuild {
+        private int chunkDays = 7;
+        private int parallelism = 4;
+        // days newer than this are still receiving transfers and are not rebuilt
+        private long closeAfterMinutes = 5;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bankcards.util.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "transfer")
+public class TransferProperties {
+
+    private Mode mode = Mode.PESSIMISTIC;
+    private Lock lock = new Lock();
+    private Retry retry = new Retry();
+    private Batch batch = new Batch();
+    private Idempotency idempotency = new Idempotency();
+    private Shards shards = new Shards();
+    private Engine engine = new Engine();
+    private History history = new History();
+
+    public enum Mode {
+        PESSIMISTIC,
+        CONDITIONAL,
+        OPTIMISTIC,
+        ENGINE
+    }
+
+    @Getter
+    @Setter
+    public static class Lock {
+        private int stripes = 1024;
+        private long timeoutMs = 5000;
+    }
+
+    @Getter
+    @Setter
+    public static class Retry {
+        private int maxAttempts = 5;
+        private long initialBackoffMs = 5;
+        private long maxBackoffMs = 200;
+    }
+
+    @Getter
+    @Setter
+    public static class Batch {
+        private int maxSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Idempotency {
+        private long ttlSeconds = 86400;
+        private long pendingTtlSeconds = 60;
+        private int localCacheSize = 10000;
+        private long waitTimeoutMs = 10000;
+        private long purgeIntervalMs = 3600000;
+    }
+
+    @Getter
+    @Setter
+    public static class Shards {
+        private int maxCount = 64;
+        private int cacheSize = 10000;
+        private long cacheTtlMs = 30000;
+    }
+
+    @Getter
+    @Setter
+    public static class Engine {
+        // 0 means one shard per available processor
+        private int shards = 0;
+        private long commitIntervalMs = 2;
+        private int maxGroupSize = 512;
+        private long ackTimeoutMs = 5000;
+        // per shard; accounts with an open reservation are never dropped
+        private int maxCachedCards = 10000;
+        private long idleEvictMs = 300000;
+    }
+
+    @Getter
+    @Setter
+    public static class History {
+        private int maxPageSize = 100;
+    }
+}
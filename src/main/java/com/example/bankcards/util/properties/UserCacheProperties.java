@@ -0,0 +1,18 @@
+package com.example.bankcards.util.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "user.cache")
+public class UserCacheProperties {
+
+    private int localSize = 10000;
+    private long localTtlMs = 30000;
+    private long redisTtlSeconds = 600;
+    private String evictionChannel = "user-cache:evict";
+}
@@ -0,0 +1,160 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.CardEncryptor;
+import com.example.bankcards.util.properties.EncryptionProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one card number through {@link CardEncryptor} against the previous
+ * implementation, which looked up a {@link Cipher} and seeded a {@link SecureRandom} on
+ * every call. {@code mask} is what every row of a card page pays. Run through
+ * {@link #main} to get {@code gc.alloc.rate.norm} (bytes allocated per op) next to ns/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardEncryptorBenchmark {
+
+    private static final String NUMBER = "4111111111111111";
+
+    private CardEncryptor current;
+    private LegacyCardEncryptor legacy;
+    private String encrypted;
+    private ByteBuffer plain;
+    private ByteBuffer sealed;
+    private ByteBuffer decrypted;
+
+    @Setup
+    public void setUp() {
+        EncryptionProperties properties = new EncryptionProperties();
+        properties.setKey("0123456789abcdef");
+        properties.setAlgorithm("AES/GCM/NoPadding");
+        properties.setIvLength(12);
+        properties.setTagLength(16);
+        properties.setCharset("UTF-8");
+        properties.setMaskingPattern("**** **** **** %s");
+        properties.setIndexKey("fedcba9876543210fedcba9876543210");
+
+        current = new CardEncryptor(properties);
+        legacy = new LegacyCardEncryptor(properties);
+        encrypted = current.encrypt(NUMBER);
+        plain = ByteBuffer.wrap(NUMBER.getBytes(StandardCharsets.UTF_8));
+        sealed = ByteBuffer.allocate(64);
+        decrypted = ByteBuffer.allocate(64);
+    }
+
+    @Benchmark
+    public String legacyEncrypt() {
+        return legacy.encrypt(NUMBER);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return current.encrypt(NUMBER);
+    }
+
+    @Benchmark
+    public String legacyMask() {
+        return legacy.maskCardNumber(encrypted);
+    }
+
+    @Benchmark
+    public String mask() {
+        return current.maskCardNumber(encrypted);
+    }
+
+    @Benchmark
+    public int byteBufferRoundTrip() {
+        current.encrypt(plain.rewind(), sealed.clear());
+        return current.decrypt(current.activeKeyVersion(), sealed.flip(), decrypted.clear());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CardEncryptorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+
+    /**
+     * The encryptor as it was before per-thread ciphers, kept verbatim as the baseline.
+     */
+    static final class LegacyCardEncryptor {
+
+        private final SecretKeySpec secretKey;
+        private final EncryptionProperties properties;
+
+        LegacyCardEncryptor(EncryptionProperties properties) {
+            this.properties = properties;
+            this.secretKey = new SecretKeySpec(properties.getKey().getBytes(StandardCharsets.UTF_8), "AES");
+        }
+
+        String encrypt(String data) {
+            try {
+                Cipher cipher = Cipher.getInstance(properties.getAlgorithm());
+                byte[] iv = new byte[properties.getIvLength()];
+                new SecureRandom().nextBytes(iv);
+                cipher.init(Cipher.ENCRYPT_MODE, secretKey,
+                        new GCMParameterSpec(properties.getTagLength() * 8, iv));
+
+                byte[] encrypted = cipher.doFinal(data.getBytes(properties.getCharset()));
+                byte[] encryptedWithIv = new byte[properties.getIvLength() + encrypted.length];
+                System.arraycopy(iv, 0, encryptedWithIv, 0, properties.getIvLength());
+                System.arraycopy(encrypted, 0, encryptedWithIv, properties.getIvLength(), encrypted.length);
+
+                return Base64.getEncoder().encodeToString(encryptedWithIv);
+            } catch (Exception e) {
+                throw new IllegalStateException("Encryption failed", e);
+            }
+        }
+
+        String decrypt(String encryptedData) {
+            try {
+                byte[] decoded = Base64.getDecoder().decode(encryptedData);
+                byte[] iv = new byte[properties.getIvLength()];
+                byte[] encrypted = new byte[decoded.length - properties.getIvLength()];
+                System.arraycopy(decoded, 0, iv, 0, properties.getIvLength());
+                System.arraycopy(decoded, properties.getIvLength(), encrypted, 0, encrypted.length);
+
+                Cipher cipher = Cipher.getInstance(properties.getAlgorithm());
+                cipher.init(Cipher.DECRYPT_MODE, secretKey,
+                        new GCMParameterSpec(properties.getTagLength() * 8, iv));
+
+                return new String(cipher.doFinal(encrypted), properties.getCharset());
+            } catch (Exception e) {
+                throw new IllegalStateException("Decryption failed", e);
+            }
+        }
+
+        String maskCardNumber(String encryptedCardNumber) {
+            String decrypted = decrypt(encryptedCardNumber);
+            return String.format(properties.getMaskingPattern(), decrypted.substring(decrypted.length() - 4));
+        }
+    }
+}
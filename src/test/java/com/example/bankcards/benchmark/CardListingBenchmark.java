@@ -0,0 +1,104 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.dto.responce.CardResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.util.CardEncryptor;
+import com.example.bankcards.util.mapper.CardMapper;
+import com.example.bankcards.util.mapper.CardMapperImpl;
+import com.example.bankcards.util.properties.EncryptionProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The mapping half of {@code CardServiceImpl.getCards}: one page of loaded cards turned
+ * into masked responses. {@code decrypt} is a page of rows the last4 backfill has not
+ * reached, which costs an AES-GCM decryption per row; {@code last4} reads the stored
+ * digits.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardListingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int pageSize;
+
+    @Param({"decrypt", "last4"})
+    public String masking;
+
+    private CardMapper cardMapper;
+    private Page<Card> page;
+
+    @Setup
+    public void setUp() {
+        EncryptionProperties properties = new EncryptionProperties();
+        properties.setKey("0123456789abcdef");
+        properties.setAlgorithm("AES/GCM/NoPadding");
+        properties.setIvLength(12);
+        properties.setTagLength(16);
+        properties.setCharset("UTF-8");
+        properties.setMaskingPattern("**** **** **** %s");
+        properties.setIndexKey("fedcba9876543210fedcba9876543210");
+        CardEncryptor cardEncryptor = new CardEncryptor(properties);
+
+        cardMapper = new CardMapperImpl();
+        ReflectionTestUtils.setField(cardMapper, "cardEncryptor", cardEncryptor);
+
+        User owner = User.builder().id(1L).username("user1").role(Role.USER).build();
+        CardStatus active = CardStatus.builder().name("ACTIVE").build();
+
+        List<Card> cards = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            String number = String.format("4000%012d", i);
+            cards.add(Card.builder()
+                    .id((long) i)
+                    .number(cardEncryptor.encrypt(number))
+                    .last4("last4".equals(masking) ? cardEncryptor.lastFour(number) : null)
+                    .owner(owner)
+                    .expiration(new Date())
+                    .status(active)
+                    .balance(BigDecimal.TEN)
+                    .build());
+        }
+        page = new PageImpl<>(cards);
+    }
+
+    @Benchmark
+    public Page<CardResponse> getCardsPage() {
+        return page.map(cardMapper::toResponseWithMask);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CardListingBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.security.JwtAuthFilter;
+import com.example.bankcards.security.JwtUtils;
+import com.example.bankcards.security.TokenVersions;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.util.properties.JwtProperties;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authentication of one request carrying a bearer token. {@code legacy} is the token
+ * work of the old filter without its database lookup: a parser built and the signature
+ * verified twice, once to read the subject and once more to validate. {@code parse} is
+ * the token work of the current filter, one verification with the prebuilt parser, and
+ * is the one to compare with {@code legacy}. {@code verify} is the whole current filter
+ * with the verified-token cache off, so it also pays for the security context and the
+ * authentication details; {@code cached} is the same with the cache on, for a client
+ * that sends the same access token on every request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(3)
+public class JwtAuthFilterBenchmark {
+
+    private static final String SECRET = "a78c7e3ad8f446d9b6156a67b40b9dc28fa1d9ce72d884a195347d5b13886ad9";
+
+    @Param({"legacy", "parse", "verify", "cached"})
+    public String path;
+
+    private JwtUtils jwtUtils;
+    private JwtAuthFilter filter;
+    private SecretKey key;
+    private String token;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private FilterChain chain;
+
+    @Setup
+    public void setUp() {
+        JwtProperties properties = new JwtProperties();
+        properties.setSecret(SECRET);
+        properties.setAccessExpirationMs(TimeUnit.HOURS.toMillis(1));
+        properties.setRefreshExpirationMs(TimeUnit.HOURS.toMillis(2));
+        properties.setVerifiedCacheSize("cached".equals(path) ? 10000 : 0);
+        jwtUtils = new JwtUtils(properties);
+        jwtUtils.init();
+
+        // a plain override rather than a mock, whose invocation handling would dominate the cached path
+        TokenVersions tokenVersions = new TokenVersions(null, null, properties) {
+            @Override
+            public boolean isCurrent(Long userId, int tokenVersion) {
+                return true;
+            }
+        };
+        filter = new JwtAuthFilter(jwtUtils, tokenVersions);
+
+        key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        token = jwtUtils.generateAccessToken(new UserPrincipal(42L, "user42", "encoded", Role.USER, 0));
+        request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        response = new MockHttpServletResponse();
+        chain = (req, res) -> {
+        };
+    }
+
+    @Benchmark
+    public Object authenticate() throws Exception {
+        if ("legacy".equals(path)) {
+            String subject = Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload().getSubject();
+            return subject.equals(Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload().getSubject());
+        }
+        if ("parse".equals(path)) {
+            return jwtUtils.parseAccessToken(token);
+        }
+        SecurityContextHolder.clearContext();
+        filter.doFilter(request, response, chain);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtAuthFilterBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.exception.LoginRejectedException;
+import com.example.bankcards.security.PasswordHashing;
+import com.example.bankcards.util.properties.PasswordProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mixed load of logins and card reads sharing the request threads. {@code inline} checks
+ * BCrypt on the calling thread, as login did before; {@code pooled} goes through
+ * {@link PasswordHashing} with one worker per processor and a short queue. The card read
+ * is a fixed amount of CPU standing in for a cached read. Rejected logins back off for
+ * the advertised {@code Retry-After} scale and are counted separately.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class LoginBenchmark {
+
+    private static final int LOGIN_THREADS = 8;
+    private static final int READ_THREADS = 8;
+    private static final long CARD_READ_TOKENS = 20_000;
+
+    private BCryptPasswordEncoder encoder;
+    private PasswordHashing passwordHashing;
+    private String stored;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long accepted;
+        public long rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            accepted = 0;
+            rejected = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        encoder = new BCryptPasswordEncoder(10);
+        stored = encoder.encode("password123");
+        PasswordProperties properties = new PasswordProperties();
+        properties.setBcryptStrength(10);
+        properties.setQueueCapacity(2);
+        passwordHashing = new PasswordHashing(encoder, properties, new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        passwordHashing.shutdown();
+    }
+
+    @Benchmark
+    @Group("inline")
+    @GroupThreads(LOGIN_THREADS)
+    public boolean inlineLogin(Outcomes outcomes) {
+        boolean matches = encoder.matches("password123", stored);
+        outcomes.accepted++;
+        return matches;
+    }
+
+    @Benchmark
+    @Group("inline")
+    @GroupThreads(READ_THREADS)
+    public void inlineCardRead() {
+        Blackhole.consumeCPU(CARD_READ_TOKENS);
+    }
+
+    @Benchmark
+    @Group("pooled")
+    @GroupThreads(LOGIN_THREADS)
+    public boolean pooledLogin(Outcomes outcomes) throws InterruptedException {
+        try {
+            boolean matches = passwordHashing.verify("password123", stored).matches();
+            outcomes.accepted++;
+            return matches;
+        } catch (LoginRejectedException e) {
+            outcomes.rejected++;
+            Thread.sleep(50);
+            return false;
+        }
+    }
+
+    @Benchmark
+    @Group("pooled")
+    @GroupThreads(READ_THREADS)
+    public void pooledCardRead() {
+        Blackhole.consumeCPU(CARD_READ_TOKENS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LoginBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.service.transfer.CardLockTable;
+import com.example.bankcards.util.properties.TransferProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers per second through {@link CardLockTable} when every transfer debits one of
+ * {@code hotCards} cards and credits a random cold card. The consumed CPU tokens stand in
+ * for the locked row update, so the numbers show how the stripes queue, not DB latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class TransferContentionBenchmark {
+
+    private static final int COLD_CARDS = 4096;
+    private static final long ROW_WORK_TOKENS = 200;
+
+    @Param({"1", "8", "64", "512"})
+    public int hotCards;
+
+    private CardLockTable lockTable;
+    private long[] balances;
+
+    @Setup
+    public void setUp() {
+        lockTable = new CardLockTable(new TransferProperties());
+        balances = new long[hotCards + COLD_CARDS];
+    }
+
+    @Benchmark
+    public void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(hotCards);
+        int to = hotCards + random.nextInt(COLD_CARDS);
+
+        try (CardLockTable.Lease ignored = lockTable.acquire((long) from, (long) to)) {
+            balances[from] -= 1;
+            balances[to] += 1;
+            Blackhole.consumeCPU(ROW_WORK_TOKENS);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TransferContentionBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -9,6 +9,7 @@ import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.CustomUserDetails;
 import com.example.bankcards.security.JwtAuthFilter;
 import com.example.bankcards.security.JwtUtils;
+import com.example.bankcards.security.TokenVersions;
 import com.example.bankcards.service.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -63,6 +64,9 @@ class UserControllerTest {
     @MockitoBean
     private JwtUtils jwtUtils;
 
+    @MockitoBean
+    private TokenVersions tokenVersions;
+
     @BeforeEach
     public void setUp() {
         mockMvc = MockMvcBuilders
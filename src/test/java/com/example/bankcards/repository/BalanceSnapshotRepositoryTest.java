@@ -0,0 +1,120 @@
+package com.example.bankcards.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Takes snapshots on an embedded Postgres with the real migrations while another
+ * connection holds an uncommitted journal line, which needs real transaction ids.
+ * Not transactional itself, so that every snapshot sees what has committed.
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=none")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BalanceSnapshotRepositoryTest {
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Autowired
+    private JournalEntryRepository journalEntryRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        try {
+            postgres = EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    void insertSnapshots_ShouldFoldLineThatCommitsAfterCut_InNextSnapshot() throws Exception {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        Long ownerId = jdbc.queryForObject(
+                "INSERT INTO users (username, password, role) VALUES ('alice', 'x', 'USER') RETURNING id", Long.class);
+        Long cardId = jdbc.queryForObject("""
+                INSERT INTO cards (number, number_hash, last4, owner_id, expiration, status_id, balance)
+                VALUES ('enc-1111', 'hash-1111', '1111', ?, date '2030-01-01',
+                        (SELECT id FROM card_status WHERE name = 'ACTIVE'), 0)
+                RETURNING id
+                """, Long.class, ownerId);
+        String line = """
+                INSERT INTO journal_entries (card_id, direction, amount, created_at) VALUES (%d, 'CREDIT', %d, %s)
+                """;
+        jdbc.update(line.formatted(cardId, 100, "now()"));
+
+        long firstCut;
+        try (Connection late = dataSource.getConnection()) {
+            late.setAutoCommit(false);
+            try (Statement statement = late.createStatement()) {
+                // stamped well before the first cut, as a slow node's clock would
+                statement.executeUpdate(line.formatted(cardId, 40, "now() - interval '1 hour'"));
+            }
+
+            firstCut = snapshot(0);
+            late.commit();
+        }
+        assertEquals(0, new BigDecimal("100").compareTo(latestBalance(cardId)));
+
+        long secondCut = snapshot(firstCut);
+        assertTrue(secondCut > firstCut);
+        assertEquals(0, new BigDecimal("140").compareTo(latestBalance(cardId)));
+        assertEquals(0, new BigDecimal("140").compareTo(journalEntryRepository.sumNetAmount(
+                cardId, 0L, LocalDateTime.now().plusMinutes(1))));
+    }
+
+    private long snapshot(long fromXmin) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            long toXmin = journalEntryRepository.findCommittedXmin();
+            balanceSnapshotRepository.insertSnapshots(fromXmin, toXmin, LocalDateTime.now());
+            return toXmin;
+        });
+    }
+
+    private BigDecimal latestBalance(Long cardId) {
+        return balanceSnapshotRepository
+                .findFirstByCardIdAndJournalCutoffLessThanEqualOrderByJournalXminDesc(
+                        cardId, LocalDateTime.now().plusMinutes(1))
+                .orElseThrow()
+                .getBalance();
+    }
+}
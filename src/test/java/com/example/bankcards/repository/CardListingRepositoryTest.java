@@ -0,0 +1,230 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.projection.CardExportRow;
+import com.example.bankcards.repository.projection.CardListingRow;
+import com.example.bankcards.repository.projection.CardListingSlice;
+import com.example.bankcards.util.CardSpecifications;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Counts the JDBC statements behind one card page with Hibernate statistics, against an
+ * in-memory schema generated from the entities.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:card-listing;MODE=PostgreSQL;NON_KEYWORDS=DAY,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class CardListingRepositoryTest {
+
+    private static final int CARDS = 60;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User alice;
+    private User bob;
+    private CardStatus active;
+
+    @BeforeEach
+    void setUp() {
+        active = persist(CardStatus.builder().name("ACTIVE").build());
+        CardStatus blocked = persist(CardStatus.builder().name("BLOCKED").build());
+        alice = persist(User.builder().username("alice").password("x").role(Role.USER).build());
+        bob = persist(User.builder().username("bob").password("x").role(Role.USER).build());
+
+        for (int i = 0; i < CARDS; i++) {
+            persist(Card.builder()
+                    .number("encrypted-" + i)
+                    .numberHash("hash-" + i)
+                    .last4(String.format("%04d", i))
+                    .owner(i % 2 == 0 ? alice : bob)
+                    .status(i % 3 == 0 ? blocked : active)
+                    .expiration(java.sql.Date.valueOf(LocalDate.of(2030, 1 + i % 12, 1)))
+                    .balance(i < 10 ? BigDecimal.TEN : BigDecimal.valueOf(i % 7))
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 50})
+    void findListing_ShouldUseOneStatement_WhateverThePageSize(int pageSize) {
+        Page<CardListingRow> page = cardRepository.findListing(
+                Specification.allOf(CardSpecifications.hasOwner(alice), CardSpecifications.hasStatus(active)),
+                PageRequest.of(0, pageSize, Sort.by("id")));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(Math.min(pageSize, 20), page.getNumberOfElements());
+        assertEquals(20, page.getTotalElements());
+        page.forEach(row -> {
+            assertEquals("alice", row.owner());
+            assertEquals("ACTIVE", row.status());
+        });
+    }
+
+    @Test
+    void lazyStatus_ShouldResolveFromSecondLevelCache() {
+        // inserted natively: Hibernate never caches an entity it inserted in the running transaction
+        entityManager.createNativeQuery("INSERT INTO card_status (name) VALUES ('FROZEN')").executeUpdate();
+        Long frozenId = entityManager.createQuery("select s.id from CardStatus s where s.name = 'FROZEN'", Long.class)
+                .getSingleResult();
+        entityManager.createNativeQuery("UPDATE cards SET status_id = :status WHERE number_hash = 'hash-1'")
+                .setParameter("status", frozenId)
+                .executeUpdate();
+        entityManager.find(CardStatus.class, frozenId);
+        entityManager.clear();
+        statistics.clear();
+
+        Specification<Card> byHash = (root, query, cb) -> cb.equal(root.get("numberHash"), "hash-1");
+        Card card = cardRepository.findOne(byHash).orElseThrow();
+
+        assertEquals("FROZEN", card.getStatus().getName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    void findByIdAndOwnerId_ShouldLoadOwnedCardWithOneStatement() {
+        Long cardId = cardRepository.findListing(CardSpecifications.hasOwner(alice), PageRequest.of(0, 1))
+                .getContent().get(0).id();
+        entityManager.clear();
+        statistics.clear();
+
+        Card card = cardRepository.findByIdAndOwnerId(cardId, alice.getId()).orElseThrow();
+
+        assertEquals("alice", card.getOwner().getUsername());
+        assertEquals("BLOCKED", card.getStatus().getName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertTrue(cardRepository.findByIdAndOwnerId(cardId, bob.getId()).isEmpty());
+    }
+
+    @Test
+    void findListing_ShouldCountSeparately_OnlyPastTheLastPage() {
+        Page<CardListingRow> page = cardRepository.findListing(
+                Specification.allOf(CardSpecifications.hasOwner(alice)), PageRequest.of(5, 10));
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, page.getNumberOfElements());
+        assertEquals(30, page.getTotalElements());
+    }
+
+    @Test
+    void findListing_ShouldIncludePendingSubBalances() {
+        Long cardId = cardRepository.findListing(Specification.allOf(), PageRequest.of(0, 1))
+                .getContent().get(0).id();
+        entityManager.createNativeQuery("INSERT INTO card_balance_shards (card_id, shard, balance) VALUES (:id, 0, 5), (:id, 1, 2)")
+                .setParameter("id", cardId)
+                .executeUpdate();
+
+        CardListingRow row = cardRepository.findListing(Specification.allOf(), PageRequest.of(0, 1))
+                .getContent().get(0);
+
+        assertEquals(0, new BigDecimal("17").compareTo(row.balance()));
+    }
+
+    @Test
+    void streamAllForExport_ShouldSumPendingSubBalancesPerCard() {
+        Long cardId = cardRepository.findListing(Specification.allOf(), PageRequest.of(0, 1))
+                .getContent().get(0).id();
+        entityManager.createNativeQuery("INSERT INTO card_balance_shards (card_id, shard, balance) VALUES (:id, 0, 5), (:id, 1, 2)")
+                .setParameter("id", cardId)
+                .executeUpdate();
+
+        List<CardExportRow> rows = cardRepository.streamAllForExport().toList();
+
+        assertEquals(CARDS, rows.size());
+        for (CardExportRow row : rows) {
+            assertEquals(row.getId().equals(cardId) ? new BigDecimal("7") : null,
+                    row.getPendingBalance() != null ? row.getPendingBalance().stripTrailingZeros() : null);
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({"id,false", "balance,false", "balance,true", "expiration,false", "expiration,true"})
+    void findListingAfter_ShouldWalkEveryCardOnce_WithOneStatementPerSlice(String sort, boolean descending) {
+        Set<Long> seen = new HashSet<>();
+        Object afterKey = null;
+        Long afterId = null;
+        int slices = 0;
+        CardListingSlice slice;
+        do {
+            statistics.clear();
+            slice = cardRepository.findListingAfter(Specification.allOf(), sort, descending, afterKey, afterId, 7);
+            assertEquals(1, statistics.getPrepareStatementCount());
+            slice.rows().forEach(row -> assertTrue(seen.add(row.id()), "card returned twice: " + row.id()));
+            if (!slice.rows().isEmpty()) {
+                afterKey = slice.lastKey();
+                afterId = slice.rows().get(slice.rows().size() - 1).id();
+            }
+            slices++;
+        } while (slice.hasNext());
+
+        assertEquals(CARDS, seen.size());
+        assertEquals((CARDS + 6) / 7, slices);
+    }
+
+    @Test
+    void findListingAfter_ShouldBreakTiesById() {
+        long firstId = cardRepository.findListingAfter(Specification.allOf(), "id", false, null, null, 1)
+                .rows().get(0).id();
+
+        // the ten highest balances are equal, so within them the order is by id alone
+        CardListingSlice first = cardRepository.findListingAfter(
+                Specification.allOf(), "balance", true, null, null, 3);
+        CardListingSlice second = cardRepository.findListingAfter(
+                Specification.allOf(), "balance", true, first.lastKey(), first.rows().get(2).id(), 3);
+
+        assertEquals(List.of(firstId + 9, firstId + 8, firstId + 7),
+                first.rows().stream().map(CardListingRow::id).toList());
+        assertEquals(List.of(firstId + 6, firstId + 5, firstId + 4),
+                second.rows().stream().map(CardListingRow::id).toList());
+    }
+
+    private <T> T persist(T entity) {
+        entityManager.persist(entity);
+        return entity;
+    }
+}
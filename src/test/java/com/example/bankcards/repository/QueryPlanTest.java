@@ -0,0 +1,180 @@
+package com.example.bankcards.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+/**
+ * Runs the real migrations on an embedded Postgres, seeds a dataset big enough for the
+ * planner to prefer indexes, and fails when a hot query falls back to a sequential scan
+ * on one of the large tables. The queries are the SQL Hibernate and Spring Data generate
+ * for the repository methods named next to them, with literals in place of parameters.
+ */
+class QueryPlanTest {
+
+    private static final int USERS = 50_000;
+    private static final int CARDS = 100_000;
+    private static final int TRANSFERS = 200_000;
+
+    private static EmbeddedPostgres postgres;
+
+    @BeforeAll
+    static void migrateAndSeed() throws Exception {
+        postgres = EmbeddedPostgres.start();
+        DataSource dataSource = postgres.getPostgresDatabase();
+
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.yaml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    INSERT INTO users (username, password, role)
+                    SELECT 'user' || n, 'x', 'USER' FROM generate_series(1, %d) n
+                    """.formatted(USERS));
+            statement.execute("""
+                    INSERT INTO cards (number, number_hash, last4, owner_id, expiration, status_id, balance)
+                    SELECT 'enc' || n, md5(n::text), lpad((n %% 10000)::text, 4, '0'),
+                           (n %% %d) + 1, date '2026-01-01' + (n %% 1500),
+                           (SELECT min(id) FROM card_status) + (n %% 3), n %% 100000
+                    FROM generate_series(1, %d) n
+                    """.formatted(USERS, CARDS));
+            statement.execute("""
+                    INSERT INTO transfers (from_card_id, to_card_id, amount, created_at)
+                    SELECT (n %% %1$d) + 1, ((n * 7) %% %1$d) + 1, 100,
+                           timestamp '2025-01-01' + n * interval '1 minute'
+                    FROM generate_series(1, %2$d) n
+                    """.formatted(CARDS, TRANSFERS));
+            statement.execute("""
+                    INSERT INTO journal_entries (transfer_id, card_id, direction, amount, created_at)
+                    SELECT id, from_card_id, 'DEBIT', amount, created_at FROM transfers
+                    UNION ALL
+                    SELECT id, to_card_id, 'CREDIT', amount, created_at FROM transfers
+                    """);
+            // a sample larger than every table makes the statistics, and so the plans, repeatable
+            statement.execute("SET default_statistics_target = 2000");
+            statement.execute("ANALYZE");
+        }
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    static Stream<Arguments> hotQueries() {
+        return Stream.of(
+                Arguments.of("cards by owner and status (CardListingRepository.findListing)", """
+                        SELECT c.id, c.number, c.last4, o.username, c.expiration, s.name, c.balance, count(c.id) OVER ()
+                        FROM cards c JOIN users o ON o.id = c.owner_id JOIN card_status s ON s.id = c.status_id
+                        WHERE c.owner_id = 42 AND c.status_id = (SELECT min(id) FROM card_status)
+                        ORDER BY c.id LIMIT 20
+                        """),
+                Arguments.of("cards by status (CardListingRepository.findListing)", """
+                        SELECT c.id, c.balance FROM cards c
+                        WHERE c.status_id = (SELECT min(id) FROM card_status) AND c.id > 5000
+                        ORDER BY c.id LIMIT 20
+                        """),
+                Arguments.of("cards by expiration after a key (CardListingRepository.findListingAfter)", """
+                        SELECT c.id, c.balance FROM cards c
+                        WHERE c.expiration >= date '2027-01-01'
+                          AND (c.expiration > date '2027-01-01' OR c.id > 1000)
+                        ORDER BY c.expiration, c.id LIMIT 21
+                        """),
+                Arguments.of("own cards by balance (CardListingRepository.findListingAfter)", """
+                        SELECT c.id, c.balance FROM cards c
+                        WHERE c.owner_id = 42 AND c.balance >= 500 AND (c.balance > 500 OR c.id > 1000)
+                        ORDER BY c.balance, c.id LIMIT 21
+                        """),
+                Arguments.of("outgoing history (TransferRepository.findOutgoingHistory)", """
+                        SELECT t.id, t.from_card_id, t.to_card_id, t.amount, t.created_at FROM transfers t
+                        WHERE t.from_card_id = 42
+                          AND t.created_at >= timestamp '2025-01-01' AND t.created_at < timestamp '2026-01-01'
+                          AND t.created_at <= timestamp '2025-06-01'
+                          AND (t.created_at < timestamp '2025-06-01' OR t.id < 1000000)
+                        ORDER BY t.created_at DESC, t.id DESC LIMIT 20
+                        """),
+                Arguments.of("incoming history (TransferRepository.findIncomingHistory)", """
+                        SELECT t.id, t.from_card_id, t.to_card_id, t.amount, t.created_at FROM transfers t
+                        WHERE t.to_card_id = 42
+                          AND t.created_at >= timestamp '2025-01-01' AND t.created_at < timestamp '2026-01-01'
+                          AND t.created_at <= timestamp '2025-06-01'
+                          AND (t.created_at < timestamp '2025-06-01' OR t.id < 1000000)
+                        ORDER BY t.created_at DESC, t.id DESC LIMIT 20
+                        """),
+                Arguments.of("journal lines of a transfer (journal_entries.transfer_id foreign key)", """
+                        SELECT j.seq, j.card_id, j.direction FROM journal_entries j WHERE j.transfer_id = 42
+                        """),
+                Arguments.of("journal range of a snapshot (BalanceSnapshotRepository.insertSnapshots)", """
+                        SELECT card_id, max(seq), sum(CASE WHEN direction = 'CREDIT' THEN amount ELSE -amount END)
+                        FROM journal_entries
+                        WHERE txid >= 1000000 AND txid < 1000500
+                        GROUP BY card_id
+                        """),
+                Arguments.of("username search count (UserRepository.findByUsernameContainingIgnoreCase)", """
+                        SELECT count(u.id) FROM users u WHERE upper(u.username) LIKE upper('%r123%')
+                        """),
+                Arguments.of("username search page (UserRepository.findByUsernameContainingIgnoreCase)", """
+                        SELECT u.id, u.username, u.role FROM users u WHERE upper(u.username) LIKE upper('%r123%')
+                        ORDER BY u.id LIMIT 20
+                        """));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void hotQuery_ShouldNotScanLargeTables(String description, String sql) throws SQLException {
+        String plan = explain(sql);
+
+        for (String table : new String[]{"users", "cards", "transfers", "journal_entries"}) {
+            assertFalse(plan.contains("Seq Scan on " + table + " "),
+                    () -> description + " scans " + table + " sequentially:\n" + plan);
+        }
+    }
+
+    @Test
+    void cardIndexes_ShouldLeaveBalanceUnindexed() throws SQLException {
+        // every transfer rewrites balance; an index on it would add a write per update and rule out HOT updates
+        try (Connection connection = postgres.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("""
+                     SELECT string_agg(i.indexrelid::regclass::text, ', ')
+                     FROM pg_index i JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = ANY (i.indkey)
+                     WHERE i.indrelid = 'cards'::regclass AND a.attname = 'balance'
+                     """)) {
+            rows.next();
+            assertNull(rows.getString(1), "indexes on cards.balance");
+        }
+    }
+
+    private static String explain(String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Connection connection = postgres.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("EXPLAIN " + sql)) {
+            while (rows.next()) {
+                plan.append(rows.getString(1)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
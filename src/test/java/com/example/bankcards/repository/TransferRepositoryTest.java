@@ -0,0 +1,112 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.repository.projection.TransferOutcome;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Runs the guarded transfer statement on an embedded Postgres with the real migrations,
+ * since its CTEs and shard sub-balances are beyond what the in-memory schema models.
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=none")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class TransferRepositoryTest {
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Long ownerId;
+    private Long activeId;
+    private Long shardedCardId;
+    private Long targetCardId;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        try {
+            postgres = EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        ownerId = id("INSERT INTO users (username, password, role) VALUES ('alice', 'x', 'USER') RETURNING id");
+        activeId = id("SELECT id FROM card_status WHERE name = 'ACTIVE'");
+        shardedCardId = card("1111", 30, 4);
+        targetCardId = card("2222", 0, 1);
+        entityManager.createNativeQuery("INSERT INTO card_balance_shards (card_id, shard, balance) VALUES (?1, 0, 50), (?1, 1, 40)")
+                .setParameter(1, shardedCardId)
+                .executeUpdate();
+    }
+
+    @Test
+    void transferIfSufficient_ShouldSpendShardCredits_WhenCardRowIsShort() {
+        TransferOutcome outcome = transferRepository.transferIfSufficient(
+                shardedCardId, targetCardId, ownerId, activeId, new BigDecimal("100"), LocalDateTime.now());
+
+        assertEquals(1, outcome.getDebited());
+        assertEquals(1, outcome.getCredited());
+        assertEquals(0, new BigDecimal("20").compareTo(totalBalance(shardedCardId)));
+        assertEquals(0, new BigDecimal("100").compareTo(totalBalance(targetCardId)));
+    }
+
+    @Test
+    void transferIfSufficient_ShouldMatchNothing_WhenShardsDoNotCoverEither() {
+        TransferOutcome outcome = transferRepository.transferIfSufficient(
+                shardedCardId, targetCardId, ownerId, activeId, new BigDecimal("121"), LocalDateTime.now());
+
+        assertEquals(0, outcome.getDebited());
+        assertEquals(0, outcome.getCredited());
+        assertNull(outcome.getTransferId());
+        assertEquals(0, new BigDecimal("120").compareTo(totalBalance(shardedCardId)));
+    }
+
+    private Long card(String last4, long balance, int shards) {
+        return id("""
+                INSERT INTO cards (number, number_hash, last4, owner_id, expiration, status_id, balance, balance_shards)
+                VALUES ('enc-%1$s', 'hash-%1$s', '%1$s', %2$d, date '2030-01-01', %3$d, %4$d, %5$d)
+                RETURNING id
+                """.formatted(last4, ownerId, activeId, balance, shards));
+    }
+
+    private BigDecimal totalBalance(Long cardId) {
+        return new BigDecimal(entityManager.createNativeQuery("""
+                SELECT c.balance + coalesce((SELECT sum(s.balance) FROM card_balance_shards s WHERE s.card_id = c.id), 0)
+                FROM cards c WHERE c.id = ?1
+                """).setParameter(1, cardId).getSingleResult().toString());
+    }
+
+    private Long id(String sql) {
+        return ((Number) entityManager.createNativeQuery(sql).getSingleResult()).longValue();
+    }
+}
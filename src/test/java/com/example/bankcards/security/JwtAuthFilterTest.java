@@ -0,0 +1,125 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.util.properties.JwtProperties;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JwtAuthFilterTest {
+
+    private static final UserPrincipal USER = new UserPrincipal(42L, "john", "encoded", Role.ADMIN, 3);
+
+    @Mock
+    private TokenVersions tokenVersions;
+
+    @Mock
+    private FilterChain filterChain;
+
+    private JwtUtils jwtUtils;
+    private JwtAuthFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        JwtProperties properties = new JwtProperties();
+        properties.setSecret("a78c7e3ad8f446d9b6156a67b40b9dc28fa1d9ce72d884a195347d5b13886ad9");
+        properties.setAccessExpirationMs(60000);
+        properties.setRefreshExpirationMs(120000);
+        jwtUtils = new JwtUtils(properties);
+        jwtUtils.init();
+        filter = new JwtAuthFilter(jwtUtils, tokenVersions);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_ShouldAuthenticateFromClaims() throws Exception {
+        when(tokenVersions.isCurrent(42L, 3)).thenReturn(true);
+
+        filter.doFilter(request(jwtUtils.generateAccessToken(USER)), new MockHttpServletResponse(), filterChain);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserPrincipal principal = (UserPrincipal) authentication.getPrincipal();
+        assertEquals("john", authentication.getName());
+        assertEquals(42L, principal.getId());
+        assertEquals(Role.ADMIN, principal.getRole());
+        assertEquals("ROLE_ADMIN", authentication.getAuthorities().iterator().next().getAuthority());
+        verify(filterChain).doFilter(any(), any());
+    }
+
+    @Test
+    void doFilter_ShouldNotAuthenticate_WhenTokenVersionRevoked() throws Exception {
+        when(tokenVersions.isCurrent(42L, 3)).thenReturn(false);
+
+        filter.doFilter(request(jwtUtils.generateAccessToken(USER)), new MockHttpServletResponse(), filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(filterChain).doFilter(any(), any());
+    }
+
+    @Test
+    void doFilter_ShouldNotAuthenticate_WithRefreshOrForgedToken() throws Exception {
+        filter.doFilter(request(jwtUtils.generateRefreshToken(USER)), new MockHttpServletResponse(), filterChain);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+
+        filter.doFilter(request("not.a.token"), new MockHttpServletResponse(), filterChain);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+
+        verify(tokenVersions, never()).isCurrent(any(), anyInt());
+    }
+
+    @Test
+    void parseAccessToken_ShouldServeRepeatedToken_ButNotForgedPayloadWithCachedSignature() {
+        String token = jwtUtils.generateAccessToken(USER);
+        String[] parts = token.split("\\.");
+        String forgedPayload = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8)
+                        .replace("\"ADMIN\"", "\"USER\"")
+                        .getBytes(StandardCharsets.UTF_8));
+        String forged = parts[0] + "." + forgedPayload + "." + parts[2];
+
+        assertEquals(Role.ADMIN, jwtUtils.parseAccessToken(token).orElseThrow().getRole());
+        assertSame(jwtUtils.parseAccessToken(token).orElseThrow(), jwtUtils.parseAccessToken(token).orElseThrow());
+        assertTrue(jwtUtils.parseAccessToken(forged).isEmpty());
+    }
+
+    @Test
+    void isTokenValid_ShouldReject_WhenTokenVersionOlderThanUser() {
+        String refreshToken = jwtUtils.generateRefreshToken(USER);
+
+        assertTrue(jwtUtils.isTokenValid(refreshToken, USER));
+        assertFalse(jwtUtils.isTokenValid(refreshToken, new UserPrincipal(42L, "john", "encoded", Role.ADMIN, 4)));
+    }
+
+    private static MockHttpServletRequest request(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+}
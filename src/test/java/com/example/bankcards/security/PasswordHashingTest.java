@@ -0,0 +1,105 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.LoginRejectedException;
+import com.example.bankcards.util.properties.PasswordProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHashingTest {
+
+    private PasswordHashing passwordHashing;
+
+    @AfterEach
+    void tearDown() {
+        if (passwordHashing != null) {
+            passwordHashing.shutdown();
+        }
+    }
+
+    @Test
+    void verify_ShouldReturnUpgradedHash_WhenCostDiffers() {
+        passwordHashing = hashing(new BCryptPasswordEncoder(5), 5, 1, 4);
+        String stored = new BCryptPasswordEncoder(4).encode("secret");
+
+        PasswordHashing.Verification verification = passwordHashing.verify("secret", stored);
+
+        assertTrue(verification.matches());
+        assertNotNull(verification.upgradedHash());
+        assertTrue(verification.upgradedHash().startsWith("$2a$05$"));
+    }
+
+    @Test
+    void verify_ShouldKeepHash_WhenCostMatches() {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(4);
+        passwordHashing = hashing(encoder, 4, 1, 4);
+
+        PasswordHashing.Verification verification = passwordHashing.verify("secret", encoder.encode("secret"));
+
+        assertTrue(verification.matches());
+        assertNull(verification.upgradedHash());
+    }
+
+    @Test
+    void verify_ShouldNotUpgrade_WhenPasswordIsWrong() {
+        passwordHashing = hashing(new BCryptPasswordEncoder(5), 5, 1, 4);
+
+        PasswordHashing.Verification verification =
+                passwordHashing.verify("wrong", new BCryptPasswordEncoder(4).encode("secret"));
+
+        assertFalse(verification.matches());
+        assertNull(verification.upgradedHash());
+    }
+
+    @Test
+    void verify_ShouldRejectAtOnce_WhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        PasswordEncoder blocking = new BCryptPasswordEncoder(4) {
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return false;
+            }
+        };
+        passwordHashing = hashing(blocking, 4, 1, 1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            callers.submit(() -> passwordHashing.verify("a", "hash"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            callers.submit(() -> passwordHashing.verify("b", "hash"));
+            Thread.sleep(100);
+
+            assertThrows(LoginRejectedException.class, () -> passwordHashing.verify("c", "hash"));
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    private PasswordHashing hashing(PasswordEncoder encoder, int strength, int workers, int queueCapacity) {
+        PasswordProperties properties = new PasswordProperties();
+        properties.setBcryptStrength(strength);
+        properties.setWorkers(workers);
+        properties.setQueueCapacity(queueCapacity);
+        return new PasswordHashing(encoder, properties, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.properties.JwtProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TokenVersionsTest {
+
+    private static final Long USER_ID = 42L;
+    private static final String KEY = "auth:token-version:" + USER_ID;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private TokenVersions tokenVersions;
+
+    @BeforeEach
+    void setUp() {
+        JwtProperties properties = new JwtProperties();
+        properties.setAccessExpirationMs(60000);
+        // every check goes to Redis, so the fallbacks are what is under test
+        properties.setRevocationCheckMs(0);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        tokenVersions = new TokenVersions(redisTemplate, userRepository, properties);
+    }
+
+    @Test
+    void isCurrent_ShouldKeepLastKnownVersion_WhenRedisFails() {
+        when(valueOperations.get(KEY))
+                .thenReturn("5")
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertTrue(tokenVersions.isCurrent(USER_ID, 5));
+        assertFalse(tokenVersions.isCurrent(USER_ID, 4));
+        verify(userRepository, never()).findTokenVersionById(USER_ID);
+    }
+
+    @Test
+    void isCurrent_ShouldCheckDatabase_WhenRedisFailsForUnknownUser() {
+        when(valueOperations.get(KEY)).thenThrow(new RedisConnectionFailureException("down"));
+        when(userRepository.findTokenVersionById(USER_ID)).thenReturn(Optional.of(3));
+
+        assertFalse(tokenVersions.isCurrent(USER_ID, 2));
+        assertTrue(tokenVersions.isCurrent(USER_ID, 3));
+    }
+
+    @Test
+    void isCurrent_ShouldRefuse_WhenRedisFailsAndUserIsGone() {
+        when(valueOperations.get(KEY)).thenThrow(new RedisConnectionFailureException("down"));
+        when(userRepository.findTokenVersionById(USER_ID)).thenReturn(Optional.empty());
+
+        assertFalse(tokenVersions.isCurrent(USER_ID, 0));
+    }
+
+    @Test
+    void isCurrent_ShouldRefuse_WhenRedisAndDatabaseFail() {
+        when(valueOperations.get(KEY)).thenThrow(new RedisConnectionFailureException("down"));
+        when(userRepository.findTokenVersionById(USER_ID))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertFalse(tokenVersions.isCurrent(USER_ID, 0));
+    }
+}
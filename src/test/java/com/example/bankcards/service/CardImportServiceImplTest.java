@@ -0,0 +1,211 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardImportFormat;
+import com.example.bankcards.dto.responce.CardImportLineError;
+import com.example.bankcards.dto.responce.CardImportResponse;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.repository.CardImportRepository.ImportedCard;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardStatusRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.card.CardStatusRegistry;
+import com.example.bankcards.util.CardEncryptor;
+import com.example.bankcards.util.properties.CardProperties;
+import com.example.bankcards.util.validator.CardServiceValidator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CardImportServiceImplTest {
+
+    private static final String NUMBER_A = "1111222233334444";
+    private static final String NUMBER_B = "5555666677778888";
+    private static final String NUMBER_C = "9999000011112222";
+    private static final long ACTIVE_ID = 1L;
+    private static final long EXPIRED_ID = 3L;
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private CardStatusRepository cardStatusRepository;
+
+    @Mock
+    private CardEncryptor cardEncryptor;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private CardImportServiceImpl importService;
+
+    @BeforeEach
+    void setUp() {
+        CardProperties properties = new CardProperties();
+        properties.getStatus().setActive("ACTIVE");
+        properties.getStatus().setExpired("EXPIRED");
+        properties.getBulkImport().setBatchSize(2);
+        properties.getBulkImport().setWorkers(2);
+
+        List<CardStatus> statuses = List.of(
+                new CardStatus(ACTIVE_ID, "ACTIVE"),
+                new CardStatus(2L, "BLOCKED"),
+                new CardStatus(EXPIRED_ID, "EXPIRED"));
+        lenient().when(cardStatusRepository.findAll()).thenReturn(statuses);
+        CardStatusRegistry cardStatusRegistry = new CardStatusRegistry(cardStatusRepository, null, properties);
+        cardStatusRegistry.refresh();
+
+        importService = new CardImportServiceImpl(
+                cardRepository,
+                userRepository,
+                cardStatusRegistry,
+                new CardServiceValidator(cardStatusRegistry, properties),
+                cardEncryptor,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapper(),
+                transactionTemplate,
+                properties);
+
+        lenient().when(userRepository.findAllIds()).thenReturn(List.of(1L, 2L));
+        lenient().when(cardEncryptor.encrypt(anyString())).thenAnswer(invocation -> "enc-" + invocation.getArgument(0));
+        lenient().when(cardEncryptor.blindIndex(anyString())).thenAnswer(invocation -> "hash-" + invocation.getArgument(0));
+        lenient().when(cardEncryptor.lastFour(anyString())).thenAnswer(invocation ->
+                invocation.<String>getArgument(0).substring(12));
+        lenient().when(cardRepository.insertImported(anyList(), anyInt(), any())).thenAnswer(invocation ->
+                invocation.<List<ImportedCard>>getArgument(0).stream()
+                        .map(ImportedCard::numberHash)
+                        .collect(Collectors.toSet()));
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        importService.shutdown();
+    }
+
+    @Test
+    void importCards_ShouldInsertCsvInBatches_AndSkipHeader() {
+        CardImportResponse response = importService.importCards(body("""
+                number,ownerId,expiration,balance
+                %s,1,2099-12-31,100.00
+                %s,2,2000-01-31,0
+
+                %s,1,2099-12-31,5
+                """.formatted(NUMBER_A, NUMBER_B, NUMBER_C)), CardImportFormat.CSV, "partner-1");
+
+        assertEquals("partner-1", response.importId());
+        assertEquals(CardImportResponse.Status.COMPLETED, response.status());
+        assertEquals(3, response.lines());
+        assertEquals(3, response.imported());
+        assertEquals(0, response.failed());
+
+        ArgumentCaptor<List<ImportedCard>> batches = ArgumentCaptor.captor();
+        verify(cardRepository, times(2)).insertImported(batches.capture(), eq(0), any());
+        List<ImportedCard> first = batches.getAllValues().get(0);
+        assertEquals(new ImportedCard("enc-" + NUMBER_A, "hash-" + NUMBER_A, "4444", 1L,
+                LocalDate.of(2099, 12, 31), ACTIVE_ID, new BigDecimal("100.00")), first.get(0));
+        assertEquals(EXPIRED_ID, first.get(1).statusId());
+        assertEquals(List.of("hash-" + NUMBER_C),
+                batches.getAllValues().get(1).stream().map(ImportedCard::numberHash).toList());
+        verify(userRepository, times(1)).findAllIds();
+        verify(cardStatusRepository, times(1)).findAll();
+    }
+
+    @Test
+    void importCards_ShouldReportBadLines_WithoutStoppingImport() {
+        CardImportResponse response = importService.importCards(body("""
+                %s,1,2099-12-31,100
+                123,1,2099-12-31,100
+                %s,7,2099-12-31,100
+                %s,1,not-a-date,100
+                %s,1
+                """.formatted(NUMBER_A, NUMBER_B, NUMBER_C, NUMBER_C)), CardImportFormat.CSV, null);
+
+        assertEquals(5, response.lines());
+        assertEquals(1, response.imported());
+        assertEquals(4, response.failed());
+        assertEquals(List.of(2L, 3L, 4L, 5L), response.errors().stream().map(CardImportLineError::line).toList());
+        assertEquals("number: Card number must be 16 digits", response.errors().get(0).error());
+        assertEquals("User not found: 7", response.errors().get(1).error());
+        assertTrue(response.errors().get(2).error().startsWith("Malformed value"));
+    }
+
+    @Test
+    void importCards_ShouldReportDuplicates_WithinBatchAndAgainstExistingCards() {
+        when(cardRepository.insertImported(anyList(), anyInt(), any())).thenReturn(Set.of("hash-" + NUMBER_B));
+
+        CardImportResponse response = importService.importCards(body("""
+                %s,1,2099-12-31,1
+                %s,1,2099-12-31,1
+                %s,1,2099-12-31,1
+                """.formatted(NUMBER_A, NUMBER_A, NUMBER_B)), CardImportFormat.CSV, null);
+
+        assertEquals(1, response.imported());
+        assertEquals(List.of(
+                        new CardImportLineError(1, "Card with this number already exists"),
+                        new CardImportLineError(2, "Card with this number already exists")),
+                response.errors());
+    }
+
+    @Test
+    void importCards_ShouldParseNdjson() {
+        CardImportResponse response = importService.importCards(body("""
+                {"number":"%s","ownerId":2,"expiration":"2099-12-31","balance":10}
+                {"number":"%s","ownerId":2
+                """.formatted(NUMBER_A, NUMBER_B)), CardImportFormat.NDJSON, null);
+
+        assertEquals(1, response.imported());
+        assertEquals(1, response.failed());
+        assertTrue(response.errors().get(0).error().startsWith("Malformed JSON"));
+    }
+
+    @Test
+    void getImport_ShouldReturnFinishedImport_AndRejectUnknownId() {
+        importService.importCards(body(NUMBER_A + ",1,2099-12-31,1\n"), CardImportFormat.CSV, "job-1");
+
+        CardImportResponse progress = importService.getImport("job-1");
+
+        assertEquals(CardImportResponse.Status.COMPLETED, progress.status());
+        assertEquals(1, progress.imported());
+        assertThrows(CardNotFoundException.class, () -> importService.getImport("missing"));
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,44 +1,82 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BatchTransferDTO;
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardSort;
 import com.example.bankcards.dto.TransferDTO;
+import com.example.bankcards.dto.TransferDirection;
+import com.example.bankcards.dto.responce.BatchTransferResponse;
+import com.example.bankcards.dto.responce.CardBalanceResponse;
 import com.example.bankcards.dto.responce.CardResponse;
+import com.example.bankcards.dto.responce.CardRollupResponse;
+import com.example.bankcards.dto.responce.SliceResponse;
+import com.example.bankcards.dto.responce.TransferHistoryItem;
+import com.example.bankcards.dto.responce.TransferHistoryResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.Transfer;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardException;
 import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.TransferConflictException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.projection.CardListingRow;
+import com.example.bankcards.repository.projection.CardListingSlice;
+import com.example.bankcards.repository.projection.TransferOutcome;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.service.transfer.BalanceShards;
+import com.example.bankcards.service.transfer.ShardedTransferEngine;
+import com.example.bankcards.service.transfer.TransferExecutor;
 import com.example.bankcards.util.CardEncryptor;
+import com.example.bankcards.util.KeysetCursor;
+import com.example.bankcards.util.SortCursor;
 import com.example.bankcards.util.mapper.CardMapper;
 import com.example.bankcards.util.properties.CardProperties;
+import com.example.bankcards.util.properties.PagingProperties;
+import com.example.bankcards.util.properties.TransferProperties;
 import com.example.bankcards.util.validator.CardServiceValidator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -70,6 +108,30 @@ class CardServiceImplTest {
     @Mock
     private CardMapper cardMapper;
 
+    @Mock
+    private TransferExecutor transferExecutor;
+
+    @Mock
+    private TransferProperties transferProperties;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private RollupService rollupService;
+
+    @Mock
+    private BalanceShards balanceShards;
+
+    @Mock
+    private ShardedTransferEngine transferEngine;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Spy
+    private PagingProperties pagingProperties = new PagingProperties();
+
     @InjectMocks
     private CardServiceImpl cardService;
 
@@ -78,11 +140,13 @@ class CardServiceImplTest {
     private static final String USERNAME = "testuser";
     private static final String CARD_NUMBER = "1234567812345678";
     private static final String ENCRYPTED_NUMBER = "encrypted12345678";
+    private static final String NUMBER_HASH = "5f2b0c9d";
     private static final BigDecimal BALANCE = new BigDecimal("1000.00");
     private static final BigDecimal TRANSFER_AMOUNT = new BigDecimal("100.00");
 
     private Card testCard;
     private User testUser;
+    private UserPrincipal principal;
     private CardStatus activeStatus;
     private CardStatus blockedStatus;
     private CardStatus expiredStatus;
@@ -94,15 +158,11 @@ class CardServiceImplTest {
         testUser.setId(USER_ID);
         testUser.setUsername(USERNAME);
         testUser.setRole(Role.USER);
+        principal = UserPrincipal.of(testUser);
 
-        activeStatus = new CardStatus();
-        activeStatus.setName("ACTIVE");
-
-        blockedStatus = new CardStatus();
-        blockedStatus.setName("BLOCKED");
-
-        expiredStatus = new CardStatus();
-        expiredStatus.setName("EXPIRED");
+        activeStatus = new CardStatus(1L, "ACTIVE");
+        blockedStatus = new CardStatus(2L, "BLOCKED");
+        expiredStatus = new CardStatus(3L, "EXPIRED");
 
         testCard = new Card();
         testCard.setId(CARD_ID);
@@ -120,6 +180,28 @@ class CardServiceImplTest {
         lenient().when(statusProperties.getExpired()).thenReturn("EXPIRED");
 
         lenient().when(cardProperties.getStatus()).thenReturn(statusProperties);
+
+        lenient().when(transferProperties.getMode()).thenReturn(TransferProperties.Mode.PESSIMISTIC);
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(transferExecutor).run(any(), any());
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(transferExecutor).runWithRetry(any());
+        lenient().when(transferExecutor.execute(any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+
+        TransferProperties.Batch batchProperties = new TransferProperties.Batch();
+        batchProperties.setMaxSize(3);
+        lenient().when(transferProperties.getBatch()).thenReturn(batchProperties);
+
+        TransferProperties.Shards shardProperties = new TransferProperties.Shards();
+        shardProperties.setMaxCount(16);
+        lenient().when(transferProperties.getShards()).thenReturn(shardProperties);
+        lenient().when(transferProperties.getEngine()).thenReturn(new TransferProperties.Engine());
+        lenient().when(transferProperties.getHistory()).thenReturn(new TransferProperties.History());
     }
 
     @Test
@@ -129,6 +211,8 @@ class CardServiceImplTest {
                 CARD_ID, "1234********5678", USERNAME, new Date(), "ACTIVE", BALANCE);
 
         when(cardEncryptor.encrypt(CARD_NUMBER)).thenReturn(ENCRYPTED_NUMBER);
+        when(cardEncryptor.blindIndex(CARD_NUMBER)).thenReturn(NUMBER_HASH);
+        when(cardEncryptor.lastFour(CARD_NUMBER)).thenReturn("5678");
         when(userService.requireUserById(USER_ID)).thenReturn(testUser);
         when(validator.determineCardStatus(any())).thenReturn(activeStatus);
         when(cardRepository.save(any(Card.class))).thenReturn(testCard);
@@ -138,47 +222,108 @@ class CardServiceImplTest {
 
         assertNotNull(response);
         verify(cardEncryptor).encrypt(CARD_NUMBER);
+        verify(cardRepository).save(argThat(card ->
+                NUMBER_HASH.equals(card.getNumberHash()) && "5678".equals(card.getLast4())));
         verify(userService).requireUserById(USER_ID);
         verify(validator).determineCardStatus(any());
         verify(cardRepository).save(any(Card.class));
+        verify(ledgerService).recordAdjustment(CARD_ID, BALANCE);
         verify(cardMapper).toResponseWithMask(testCard);
     }
 
+    @Test
+    void createCard_ShouldReject_WhenNumberAlreadyIndexed() {
+        CardDTO cardDTO = new CardDTO(CARD_NUMBER, USER_ID, new Date(), BALANCE);
+
+        when(cardEncryptor.blindIndex(CARD_NUMBER)).thenReturn(NUMBER_HASH);
+        when(cardRepository.existsByNumberHash(NUMBER_HASH)).thenReturn(true);
+
+        assertThrows(CardException.class, () -> cardService.createCard(cardDTO));
+        verify(cardRepository, never()).save(any(Card.class));
+    }
+
+    @Test
+    void getCardByNumber_ShouldLookUpByBlindIndex() {
+        CardResponse cardResponse = new CardResponse(
+                CARD_ID, "**** **** **** 5678", USERNAME, new Date(), "ACTIVE", BALANCE);
+
+        when(cardEncryptor.blindIndex(CARD_NUMBER)).thenReturn(NUMBER_HASH);
+        when(cardRepository.findByNumberHash(NUMBER_HASH)).thenReturn(Optional.of(testCard));
+        when(balanceShards.loadPending(testCard)).thenReturn(testCard);
+        when(cardMapper.toResponseWithMask(testCard)).thenReturn(cardResponse);
+
+        assertEquals(cardResponse, cardService.getCardByNumber(CARD_NUMBER));
+        verify(cardEncryptor, never()).decrypt(any());
+    }
+
     @Test
     void getCards_ShouldReturnAllCardsForAdmin_WhenNoFilters() {
-        testUser.setRole(Role.ADMIN);
-        Page<Card> cardPage = new PageImpl<>(List.of(testCard));
+        UserPrincipal admin = new UserPrincipal(USER_ID, USERNAME, null, Role.ADMIN, 0);
+        CardListingRow row = new CardListingRow(
+                CARD_ID, ENCRYPTED_NUMBER, "5678", USERNAME, new Date(), "ACTIVE", BALANCE);
+        Page<CardListingRow> cardPage = new PageImpl<>(List.of(row));
         CardResponse cardResponse = new CardResponse(
                 CARD_ID, "1234********5678", USERNAME, new Date(), "ACTIVE", BALANCE);
 
-        when(userService.requireUserByUsername(USERNAME)).thenReturn(testUser);
-        when(cardRepository.findAll(any(Specification.class), eq(pageable))).thenReturn(cardPage);
-        when(cardMapper.toResponseWithMask(testCard)).thenReturn(cardResponse);
+        when(cardRepository.findListing(any(Specification.class), eq(pageable))).thenReturn(cardPage);
+        when(cardMapper.toResponseWithMask(row)).thenReturn(cardResponse);
 
-        Page<CardResponse> result = cardService.getCards(null, null, pageable, USERNAME);
+        Page<CardResponse> result = cardService.getCards(null, null, pageable, admin);
 
         assertNotNull(result);
         assertEquals(1, result.getTotalElements());
-        verify(userService).requireUserByUsername(USERNAME);
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
+        verify(userService, never()).requireUserByUsername(anyString());
+        verify(cardRepository).findListing(any(Specification.class), eq(pageable));
     }
 
     @Test
     void getCards_ShouldReturnFilteredCardsForUser() {
-        Page<Card> cardPage = new PageImpl<>(List.of(testCard));
+        CardListingRow row = new CardListingRow(
+                CARD_ID, ENCRYPTED_NUMBER, "5678", USERNAME, new Date(), "ACTIVE", BALANCE);
+        Page<CardListingRow> cardPage = new PageImpl<>(List.of(row));
         CardResponse cardResponse = new CardResponse(
                 CARD_ID, "1234********5678", USERNAME, new Date(), "ACTIVE", BALANCE);
 
-        when(userService.requireUserByUsername(USERNAME)).thenReturn(testUser);
-        when(cardRepository.findAll(any(Specification.class), eq(pageable))).thenReturn(cardPage);
-        when(cardMapper.toResponseWithMask(testCard)).thenReturn(cardResponse);
+        when(cardRepository.findListing(any(Specification.class), eq(pageable))).thenReturn(cardPage);
+        when(cardMapper.toResponseWithMask(row)).thenReturn(cardResponse);
 
-        Page<CardResponse> result = cardService.getCards("ACTIVE", null, pageable, USERNAME);
+        Page<CardResponse> result = cardService.getCards("ACTIVE", null, pageable, principal);
 
         assertNotNull(result);
         assertEquals(1, result.getTotalElements());
-        verify(userService).requireUserByUsername(USERNAME);
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
+        verify(userService, never()).requireUserByUsername(anyString());
+        verify(cardRepository).findListing(any(Specification.class), eq(pageable));
+    }
+
+    @Test
+    void scrollCards_ShouldResumeAfterCursorPosition() {
+        CardListingRow row = new CardListingRow(
+                CARD_ID, ENCRYPTED_NUMBER, "5678", USERNAME, new Date(), "ACTIVE", BALANCE);
+        CardResponse cardResponse = new CardResponse(
+                CARD_ID, "1234********5678", USERNAME, new Date(), "ACTIVE", BALANCE);
+        String cursor = new SortCursor("BALANCE", Sort.Direction.DESC, "250.00", 9L).encode();
+
+        when(cardRepository.findListingAfter(any(Specification.class), eq("balance"), eq(true),
+                eq(new BigDecimal("250.00")), eq(9L), eq(1)))
+                .thenReturn(new CardListingSlice(List.of(row), new BigDecimal("100.00"), true));
+        when(cardMapper.toResponseWithMask(row)).thenReturn(cardResponse);
+
+        SliceResponse<CardResponse> result = cardService.scrollCards(
+                null, null, CardSort.BALANCE, Sort.Direction.DESC, cursor, 1, principal);
+
+        assertEquals(List.of(cardResponse), result.items());
+        SortCursor next = SortCursor.decode(result.nextCursor(), "BALANCE", Sort.Direction.DESC);
+        assertEquals("100.00", next.key());
+        assertEquals(CARD_ID, next.id());
+    }
+
+    @Test
+    void scrollCards_ShouldRejectCursorOfAnotherSort() {
+        String cursor = new SortCursor("ID", Sort.Direction.ASC, "9", 9L).encode();
+
+        assertThrows(IllegalArgumentException.class, () -> cardService.scrollCards(
+                null, null, CardSort.EXPIRATION, Sort.Direction.ASC, cursor, 10, principal));
+        verify(cardRepository, never()).findListingAfter(any(), any(), anyBoolean(), any(), any(), anyInt());
     }
 
     @Test
@@ -186,29 +331,51 @@ class CardServiceImplTest {
         CardResponse cardResponse = new CardResponse(
                 CARD_ID, "1234********5678", USERNAME, new Date(), "ACTIVE", BALANCE);
 
-        when(cardRepository.findById(CARD_ID)).thenReturn(Optional.of(testCard));
-        when(userService.requireUserByUsername(USERNAME)).thenReturn(testUser);
-        doNothing().when(validator).validateCardAccess(testCard, testUser);
+        when(cardRepository.findByIdAndOwnerId(CARD_ID, USER_ID)).thenReturn(Optional.of(testCard));
+        when(balanceShards.loadPending(testCard)).thenReturn(testCard);
         when(cardMapper.toResponseWithMask(testCard)).thenReturn(cardResponse);
 
-        CardResponse response = cardService.getCardById(CARD_ID, USERNAME);
+        CardResponse response = cardService.getCardById(CARD_ID, principal);
 
         assertNotNull(response);
-        verify(cardRepository).findById(CARD_ID);
-        verify(userService).requireUserByUsername(USERNAME);
-        verify(validator).validateCardAccess(testCard, testUser);
+        verify(cardRepository).findByIdAndOwnerId(CARD_ID, USER_ID);
+        verify(cardRepository, never()).findById(any());
+        verify(cardRepository, never()).existsById(any());
+        verify(userService, never()).requireUserByUsername(anyString());
         verify(cardMapper).toResponseWithMask(testCard);
     }
 
+    @Test
+    void getCardById_ShouldReadAnyCard_WhenAdmin() {
+        UserPrincipal admin = new UserPrincipal(2L, "admin", null, Role.ADMIN, 0);
+        when(cardRepository.findById(CARD_ID)).thenReturn(Optional.of(testCard));
+        when(balanceShards.loadPending(testCard)).thenReturn(testCard);
+
+        cardService.getCardById(CARD_ID, admin);
+
+        verify(cardMapper).toResponseWithMask(testCard);
+        verify(cardRepository, never()).findByIdAndOwnerId(any(), any());
+    }
+
     @Test
     void getCardById_ShouldThrowException_WhenCardNotFound() {
-        when(cardRepository.findById(CARD_ID)).thenReturn(Optional.empty());
+        when(cardRepository.findByIdAndOwnerId(CARD_ID, USER_ID)).thenReturn(Optional.empty());
+        when(cardRepository.existsById(CARD_ID)).thenReturn(false);
 
-        assertThrows(CardNotFoundException.class, () -> cardService.getCardById(CARD_ID, USERNAME));
-        verify(cardRepository).findById(CARD_ID);
+        assertThrows(CardNotFoundException.class, () -> cardService.getCardById(CARD_ID, principal));
+        verify(cardRepository).findByIdAndOwnerId(CARD_ID, USER_ID);
         verify(userService, never()).requireUserByUsername(anyString());
     }
 
+    @Test
+    void getCardById_ShouldDenyAccess_WhenCardBelongsToAnotherUser() {
+        when(cardRepository.findByIdAndOwnerId(CARD_ID, USER_ID)).thenReturn(Optional.empty());
+        when(cardRepository.existsById(CARD_ID)).thenReturn(true);
+
+        assertThrows(SecurityException.class, () -> cardService.getCardById(CARD_ID, principal));
+        verify(cardMapper, never()).toResponseWithMask(any(Card.class));
+    }
+
     @Test
     void updateCard_ShouldUpdateCard_WhenValidData() {
         CardDTO cardDTO = new CardDTO("8765432187654321", USER_ID, new Date(), new BigDecimal("2000.00"));
@@ -217,6 +384,8 @@ class CardServiceImplTest {
 
         when(cardRepository.findById(CARD_ID)).thenReturn(Optional.of(testCard));
         when(cardEncryptor.encrypt("8765432187654321")).thenReturn("encrypted87654321");
+        when(cardEncryptor.blindIndex("8765432187654321")).thenReturn(NUMBER_HASH);
+        when(cardRepository.existsByNumberHashAndIdNot(NUMBER_HASH, CARD_ID)).thenReturn(false);
         when(userService.requireUserById(USER_ID)).thenReturn(testUser);
         when(cardRepository.save(testCard)).thenReturn(testCard);
         when(cardMapper.toResponse(testCard)).thenReturn(cardResponse);
@@ -228,9 +397,133 @@ class CardServiceImplTest {
         verify(cardEncryptor).encrypt("8765432187654321");
         verify(userService).requireUserById(USER_ID);
         verify(cardRepository).save(testCard);
+        verify(ledgerService).recordAdjustment(CARD_ID, new BigDecimal("1000.00"));
         verify(cardMapper).toResponse(testCard);
     }
 
+    @Test
+    void getBalanceAt_ShouldReadLedger_WhenUserHasAccess() {
+        LocalDateTime asOf = LocalDateTime.of(2025, 1, 1, 12, 0);
+        CardBalanceResponse balance = new CardBalanceResponse(CARD_ID, BALANCE, 42L, asOf);
+
+        when(cardRepository.existsByIdAndOwnerId(CARD_ID, USER_ID)).thenReturn(true);
+        when(ledgerService.getBalanceAt(CARD_ID, asOf)).thenReturn(balance);
+
+        CardBalanceResponse response = cardService.getBalanceAt(CARD_ID, asOf, principal);
+
+        assertEquals(balance, response);
+        verify(cardRepository, never()).findById(any());
+    }
+
+    @Test
+    void getRollups_ShouldReadRollups_WhenUserHasAccess() {
+        LocalDate from = LocalDate.of(2025, 1, 1);
+        LocalDate to = LocalDate.of(2025, 1, 31);
+        CardRollupResponse rollups = new CardRollupResponse(
+                CARD_ID, from, to, BigDecimal.ZERO, 0, BigDecimal.ZERO, 0, List.of());
+
+        when(cardRepository.existsByIdAndOwnerId(CARD_ID, USER_ID)).thenReturn(true);
+        when(rollupService.getRollups(CARD_ID, from, to)).thenReturn(rollups);
+
+        CardRollupResponse response = cardService.getRollups(CARD_ID, from, to, principal);
+
+        assertEquals(rollups, response);
+        verify(cardRepository, never()).findById(any());
+    }
+
+    @Test
+    void getTransferHistory_ShouldReturnNextCursor_WhenMoreRowsThanPageSize() {
+        LocalDateTime now = LocalDateTime.of(2025, 1, 1, 12, 0);
+        List<TransferHistoryItem> rows = List.of(
+                historyItem(30L, now, "OUT"),
+                historyItem(20L, now.minusMinutes(1), "OUT"),
+                historyItem(10L, now.minusMinutes(2), "OUT"));
+
+        when(cardRepository.existsByIdAndOwnerId(CARD_ID, USER_ID)).thenReturn(true);
+        when(transferRepository.findOutgoingHistory(
+                eq(CARD_ID), any(), any(), any(), eq(Long.MAX_VALUE), eq(Limit.of(3)))).thenReturn(rows);
+
+        TransferHistoryResponse response = cardService.getTransferHistory(
+                CARD_ID, TransferDirection.OUT, null, null, null, 2, principal);
+
+        assertEquals(2, response.items().size());
+        KeysetCursor next = KeysetCursor.decode(response.nextCursor());
+        assertEquals(20L, next.id());
+        assertEquals(now.minusMinutes(1), next.createdAt());
+        verify(cardRepository).existsByIdAndOwnerId(CARD_ID, USER_ID);
+        verify(transferRepository, never()).findIncomingHistory(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getTransferHistory_ShouldMergeDirectionsNewestFirst_WhenAll() {
+        LocalDateTime now = LocalDateTime.of(2025, 1, 1, 12, 0);
+        KeysetCursor cursor = new KeysetCursor(now, 100L);
+
+        when(cardRepository.existsByIdAndOwnerId(CARD_ID, USER_ID)).thenReturn(true);
+        when(transferRepository.findOutgoingHistory(CARD_ID, LocalDateTime.of(1970, 1, 1, 0, 0),
+                LocalDateTime.of(9999, 12, 31, 0, 0), now, 100L, Limit.of(6)))
+                .thenReturn(List.of(historyItem(50L, now.minusMinutes(1), "OUT"),
+                        historyItem(30L, now.minusMinutes(3), "OUT")));
+        when(transferRepository.findIncomingHistory(CARD_ID, LocalDateTime.of(1970, 1, 1, 0, 0),
+                LocalDateTime.of(9999, 12, 31, 0, 0), now, 100L, Limit.of(6)))
+                .thenReturn(List.of(historyItem(40L, now.minusMinutes(2), "IN")));
+
+        TransferHistoryResponse response = cardService.getTransferHistory(
+                CARD_ID, TransferDirection.ALL, null, null, cursor.encode(), 5, principal);
+
+        assertEquals(List.of(50L, 40L, 30L), response.items().stream().map(TransferHistoryItem::id).toList());
+        assertNull(response.nextCursor());
+    }
+
+    @Test
+    void getTransferHistory_ShouldReject_WhenCursorIsMalformed() {
+        when(cardRepository.existsByIdAndOwnerId(CARD_ID, USER_ID)).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> cardService.getTransferHistory(
+                CARD_ID, TransferDirection.IN, null, null, "not-a-cursor", 20, principal));
+    }
+
+    @Test
+    void getTransferHistory_ShouldDenyAccess_WhenCardBelongsToAnotherUser() {
+        when(cardRepository.existsByIdAndOwnerId(CARD_ID, USER_ID)).thenReturn(false);
+        when(cardRepository.existsById(CARD_ID)).thenReturn(true);
+
+        assertThrows(SecurityException.class, () -> cardService.getTransferHistory(
+                CARD_ID, TransferDirection.OUT, null, null, null, 20, principal));
+        verify(transferRepository, never()).findOutgoingHistory(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void updateBalanceShards_ShouldSetCountAndEvictCachedCount() {
+        when(cardRepository.findByIdForUpdate(CARD_ID)).thenReturn(Optional.of(testCard));
+        when(cardRepository.save(testCard)).thenReturn(testCard);
+
+        cardService.updateBalanceShards(CARD_ID, 8);
+
+        assertEquals(8, testCard.getBalanceShards());
+        verify(balanceShards, never()).consolidate(any());
+        verify(balanceShards).loadPending(testCard);
+        verify(balanceShards).evict(CARD_ID);
+    }
+
+    @Test
+    void updateBalanceShards_ShouldFoldShards_WhenShardingIsTurnedOff() {
+        testCard.setBalanceShards(8);
+        when(cardRepository.findByIdForUpdate(CARD_ID)).thenReturn(Optional.of(testCard));
+        when(cardRepository.save(testCard)).thenReturn(testCard);
+
+        cardService.updateBalanceShards(CARD_ID, 1);
+
+        assertEquals(1, testCard.getBalanceShards());
+        verify(balanceShards).consolidate(testCard);
+    }
+
+    @Test
+    void updateBalanceShards_ShouldReject_WhenCountAboveMax() {
+        assertThrows(IllegalArgumentException.class, () -> cardService.updateBalanceShards(CARD_ID, 17));
+        verify(cardRepository, never()).findByIdForUpdate(any());
+    }
+
     @Test
     void deleteCard_ShouldDeleteCard_WhenCardExists() {
         when(cardRepository.findById(CARD_ID)).thenReturn(Optional.of(testCard));
@@ -260,56 +553,322 @@ class CardServiceImplTest {
         toCard.setBalance(new BigDecimal("500.00"));
         toCard.setStatus(activeStatus);
 
-        when(userService.requireUserByUsername(USERNAME)).thenReturn(testUser);
-        when(cardRepository.findById(CARD_ID)).thenReturn(Optional.of(testCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
-        doNothing().when(validator).validateCardOwnership(testCard, toCard, testUser);
+        when(cardRepository.findAllByIdAndOwnerIdForUpdate(List.of(CARD_ID, 2L), USER_ID))
+                .thenReturn(List.of(testCard, toCard));
+        doNothing().when(validator).validateCardOwnership(testCard, toCard, principal);
         doNothing().when(validator).validateCardStatus(testCard, toCard);
         doNothing().when(validator).validateSufficientBalance(testCard, TRANSFER_AMOUNT);
         when(cardRepository.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(transferRepository.save(any(Transfer.class))).thenReturn(new Transfer());
 
-        cardService.transfer(transferDTO, USERNAME);
+        cardService.transfer(transferDTO, principal);
 
         assertEquals(new BigDecimal("900.00"), testCard.getBalance());
         assertEquals(new BigDecimal("600.00"), toCard.getBalance());
-        verify(userService).requireUserByUsername(USERNAME);
-        verify(cardRepository, times(2)).findById(any());
-        verify(validator).validateCardOwnership(testCard, toCard, testUser);
+        verify(userService, never()).requireUserByUsername(anyString());
+        verify(cardRepository, times(1)).findAllByIdAndOwnerIdForUpdate(any(), any());
+        verify(cardRepository, never()).findByIdForUpdate(any());
+        verify(validator).validateCardOwnership(testCard, toCard, principal);
         verify(validator).validateCardStatus(testCard, toCard);
         verify(validator).validateSufficientBalance(testCard, TRANSFER_AMOUNT);
         verify(cardRepository, times(2)).save(any(Card.class));
         verify(transferRepository).save(any(Transfer.class));
+        verify(ledgerService).recordTransfer(any(Transfer.class));
+        verify(rollupService).recordTransfer(any(Transfer.class), eq(false));
+    }
+
+    @Test
+    void transfer_ShouldCreditShardWithoutLockingTarget_WhenTargetIsSharded() {
+        TransferDTO transferDTO = new TransferDTO(CARD_ID, 2L, TRANSFER_AMOUNT);
+        Card toCard = new Card();
+        toCard.setId(2L);
+        toCard.setOwner(testUser);
+        toCard.setBalance(new BigDecimal("500.00"));
+        toCard.setStatus(activeStatus);
+        toCard.setBalanceShards(8);
+
+        when(balanceShards.isSharded(2L)).thenReturn(true);
+        when(cardRepository.findAllByIdAndOwnerIdForUpdate(List.of(CARD_ID), USER_ID)).thenReturn(List.of(testCard));
+        when(cardRepository.findByIdAndOwnerId(2L, USER_ID)).thenReturn(Optional.of(toCard));
+
+        cardService.transfer(transferDTO, principal);
+
+        assertEquals(new BigDecimal("900.00"), testCard.getBalance());
+        assertEquals(new BigDecimal("500.00"), toCard.getBalance());
+        verify(transferExecutor).run(eq(List.of(CARD_ID)), any());
+        verify(cardRepository, never()).findByIdForUpdate(any());
+        verify(balanceShards).consolidateIfShort(testCard, TRANSFER_AMOUNT);
+        verify(balanceShards).credit(toCard, TRANSFER_AMOUNT);
+        verify(cardRepository).save(testCard);
+        verify(cardRepository, never()).save(toCard);
+    }
+
+    @Test
+    void transfer_ShouldLockBothCardsInOneStatement_WhenFromIdIsGreater() {
+        TransferDTO transferDTO = new TransferDTO(2L, CARD_ID, TRANSFER_AMOUNT);
+        Card fromCard = new Card();
+        fromCard.setId(2L);
+        fromCard.setOwner(testUser);
+        fromCard.setBalance(new BigDecimal("500.00"));
+        fromCard.setStatus(activeStatus);
+
+        // the locking query orders by id, so the rows come back and are locked ascending
+        when(cardRepository.findAllByIdAndOwnerIdForUpdate(List.of(2L, CARD_ID), USER_ID))
+                .thenReturn(List.of(testCard, fromCard));
+
+        cardService.transfer(transferDTO, principal);
+
+        verify(cardRepository).findAllByIdAndOwnerIdForUpdate(List.of(2L, CARD_ID), USER_ID);
+        verify(cardRepository, never()).findByIdForUpdate(any());
+        verify(transferExecutor).run(eq(List.of(2L, CARD_ID)), any());
+        assertEquals(new BigDecimal("400.00"), fromCard.getBalance());
+        assertEquals(new BigDecimal("1100.00"), testCard.getBalance());
     }
 
     @Test
     void transfer_ShouldThrowException_WhenFromCardNotFound() {
         TransferDTO transferDTO = new TransferDTO(CARD_ID, 2L, TRANSFER_AMOUNT);
-        when(userService.requireUserByUsername(USERNAME)).thenReturn(testUser);
-        when(cardRepository.findById(CARD_ID)).thenReturn(Optional.empty());
+        Card toCard = new Card();
+        toCard.setId(2L);
+        when(cardRepository.findAllByIdAndOwnerIdForUpdate(List.of(CARD_ID, 2L), USER_ID)).thenReturn(List.of(toCard));
+        when(cardRepository.existsById(CARD_ID)).thenReturn(false);
 
-        assertThrows(CardNotFoundException.class, () -> cardService.transfer(transferDTO, USERNAME));
-        verify(userService).requireUserByUsername(USERNAME);
-        verify(cardRepository).findById(CARD_ID);
-        verify(cardRepository, never()).findById(2L);
+        assertThrows(CardNotFoundException.class, () -> cardService.transfer(transferDTO, principal));
+        verify(cardRepository).existsById(CARD_ID);
         verify(validator, never()).validateCardOwnership(any(), any(), any());
     }
 
     @Test
-    void requestBlock_ShouldBlockCard_WhenUserIsOwnerAndCardActive() {
+    void transfer_ShouldDenyAccess_WhenTargetBelongsToAnotherUser() {
+        TransferDTO transferDTO = new TransferDTO(CARD_ID, 2L, TRANSFER_AMOUNT);
+        when(cardRepository.findAllByIdAndOwnerIdForUpdate(List.of(CARD_ID, 2L), USER_ID)).thenReturn(List.of(testCard));
+        when(cardRepository.existsById(2L)).thenReturn(true);
+
+        SecurityException ex = assertThrows(SecurityException.class, () -> cardService.transfer(transferDTO, principal));
+
+        assertEquals("Access denied: Cards must belong to user", ex.getMessage());
+        assertEquals(BALANCE, testCard.getBalance());
+        verify(transferRepository, never()).save(any(Transfer.class));
+    }
+
+    @Test
+    void transfer_ShouldUseGuardedStatement_WhenConditionalMode() {
+        TransferDTO transferDTO = new TransferDTO(CARD_ID, 2L, TRANSFER_AMOUNT);
+        TransferOutcome outcome = outcome(1L, 1L);
+
+        when(transferProperties.getMode()).thenReturn(TransferProperties.Mode.CONDITIONAL);
+        when(validator.requireStatus("ACTIVE")).thenReturn(activeStatus);
+        when(transferRepository.transferIfSufficient(
+                eq(CARD_ID), eq(2L), eq(USER_ID), eq(1L), eq(TRANSFER_AMOUNT), any()))
+                .thenReturn(outcome);
+
+        cardService.transfer(transferDTO, principal);
+
+        verify(validator).validateDistinctCards(CARD_ID, 2L);
+        verify(cardRepository, never()).findByIdForUpdate(any());
+        verify(cardRepository, never()).save(any(Card.class));
+        verify(transferRepository, never()).save(any(Transfer.class));
+    }
+
+    @Test
+    void transfer_ShouldReportFailedGuard_WhenConditionalStatementMatchesNothing() {
+        TransferDTO transferDTO = new TransferDTO(CARD_ID, 2L, new BigDecimal("2000.00"));
+        Card toCard = new Card();
+        toCard.setId(2L);
+        toCard.setOwner(testUser);
+        toCard.setStatus(activeStatus);
+        TransferOutcome outcome = outcome(0L, 0L);
+
+        when(transferProperties.getMode()).thenReturn(TransferProperties.Mode.CONDITIONAL);
+        when(validator.requireStatus("ACTIVE")).thenReturn(activeStatus);
+        when(transferRepository.transferIfSufficient(any(), any(), any(), any(), any(), any()))
+                .thenReturn(outcome);
+        when(cardRepository.findById(CARD_ID)).thenReturn(Optional.of(testCard));
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        doThrow(new CardException("Insufficient balance on source card"))
+                .when(validator).validateSufficientBalance(testCard, new BigDecimal("2000.00"));
+
+        CardException ex = assertThrows(CardException.class, () -> cardService.transfer(transferDTO, principal));
+
+        assertEquals("Insufficient balance on source card", ex.getMessage());
+        verify(validator).validateCardOwnership(testCard, toCard, principal);
+        verify(validator).validateCardStatus(testCard, toCard);
+        InOrder inOrder = inOrder(balanceShards, validator);
+        inOrder.verify(balanceShards).consolidateIfShort(testCard, new BigDecimal("2000.00"));
+        inOrder.verify(validator).validateSufficientBalance(testCard, new BigDecimal("2000.00"));
+    }
+
+    @Test
+    void transfer_ShouldThrowConflict_WhenConditionalGuardFailsButCardsLookValid() {
+        TransferDTO transferDTO = new TransferDTO(CARD_ID, 2L, TRANSFER_AMOUNT);
+        Card toCard = new Card();
+        toCard.setId(2L);
+        TransferOutcome outcome = outcome(1L, 0L);
+
+        when(transferProperties.getMode()).thenReturn(TransferProperties.Mode.CONDITIONAL);
+        when(validator.requireStatus("ACTIVE")).thenReturn(activeStatus);
+        when(transferRepository.transferIfSufficient(any(), any(), any(), any(), any(), any()))
+                .thenReturn(outcome);
         when(cardRepository.findById(CARD_ID)).thenReturn(Optional.of(testCard));
-        when(userService.requireUserByUsername(USERNAME)).thenReturn(testUser);
-        doNothing().when(validator).validateCardOwnership(testCard, testUser);
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+
+        assertThrows(TransferConflictException.class, () -> cardService.transfer(transferDTO, principal));
+    }
+
+    @Test
+    void transfer_ShouldReadCardsWithoutLocksAndRetry_WhenOptimisticMode() {
+        TransferDTO transferDTO = new TransferDTO(CARD_ID, 2L, TRANSFER_AMOUNT);
+        Card toCard = new Card();
+        toCard.setId(2L);
+        toCard.setOwner(testUser);
+        toCard.setBalance(new BigDecimal("500.00"));
+        toCard.setStatus(activeStatus);
+
+        when(transferProperties.getMode()).thenReturn(TransferProperties.Mode.OPTIMISTIC);
+        when(cardRepository.findAllByIdAndOwnerId(List.of(CARD_ID, 2L), USER_ID)).thenReturn(List.of(testCard, toCard));
+
+        cardService.transfer(transferDTO, principal);
+
+        assertEquals(new BigDecimal("900.00"), testCard.getBalance());
+        assertEquals(new BigDecimal("600.00"), toCard.getBalance());
+        verify(transferExecutor).runWithRetry(any());
+        verify(transferExecutor, never()).run(any(), any());
+        verify(cardRepository, never()).findByIdForUpdate(any());
+        verify(cardRepository, never()).findById(any());
+        verify(transferRepository).save(any(Transfer.class));
+    }
+
+    @Test
+    void transferBatch_ShouldApplyValidItemsAndReportRejected_WhenNotAtomic() {
+        Card toCard = new Card();
+        toCard.setId(2L);
+        toCard.setOwner(testUser);
+        toCard.setBalance(new BigDecimal("500.00"));
+        toCard.setStatus(activeStatus);
+        BatchTransferDTO batch = new BatchTransferDTO(List.of(
+                new TransferDTO(CARD_ID, 2L, TRANSFER_AMOUNT),
+                new TransferDTO(CARD_ID, 3L, TRANSFER_AMOUNT),
+                new TransferDTO(2L, CARD_ID, new BigDecimal("50.00"))
+        ), false);
+
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(List.of(testCard, toCard));
+
+        BatchTransferResponse response = cardService.transferBatch(batch, principal);
+
+        assertEquals(2, response.succeeded());
+        assertEquals(1, response.failed());
+        assertFalse(response.results().get(1).success());
+        assertEquals(new BigDecimal("950.00"), testCard.getBalance());
+        assertEquals(new BigDecimal("550.00"), toCard.getBalance());
+        verify(transferExecutor).execute(eq(new TreeSet<>(List.of(CARD_ID, 2L, 3L))), any());
+        verify(validator).validateCardOwnership(testCard, principal);
+        verify(validator).validateCardOwnership(toCard, principal);
+        verify(transferRepository).saveAll(argThat(records -> ((List<?>) records).size() == 2));
+        verify(ledgerService).recordTransfers(argThat(records -> records.size() == 2));
+        verify(rollupService).recordTransfers(argThat(records -> records.size() == 2));
+    }
+
+    @Test
+    void transferBatch_ShouldConsolidateShardsBeforeBalanceCheck() {
+        Card toCard = new Card();
+        toCard.setId(2L);
+        toCard.setOwner(testUser);
+        toCard.setBalance(new BigDecimal("500.00"));
+        toCard.setStatus(activeStatus);
+        BatchTransferDTO batch = new BatchTransferDTO(List.of(
+                new TransferDTO(CARD_ID, 2L, TRANSFER_AMOUNT),
+                new TransferDTO(2L, CARD_ID, new BigDecimal("50.00"))
+        ), true);
+
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(List.of(testCard, toCard));
+
+        cardService.transferBatch(batch, principal);
+
+        InOrder inOrder = inOrder(balanceShards, validator);
+        inOrder.verify(balanceShards).consolidateIfShort(testCard, TRANSFER_AMOUNT);
+        inOrder.verify(validator).validateSufficientBalance(testCard, TRANSFER_AMOUNT);
+        inOrder.verify(balanceShards).consolidateIfShort(toCard, new BigDecimal("50.00"));
+        inOrder.verify(validator).validateSufficientBalance(toCard, new BigDecimal("50.00"));
+    }
+
+    @Test
+    void transferBatch_ShouldAbortWholeBatch_WhenAtomicAndItemRejected() {
+        BatchTransferDTO batch = new BatchTransferDTO(List.of(
+                new TransferDTO(CARD_ID, 2L, TRANSFER_AMOUNT)
+        ), true);
+
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(List.of(testCard));
+
+        assertThrows(CardException.class, () -> cardService.transferBatch(batch, principal));
+        verify(transferRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void transfer_ShouldHandOffToEngine_WhenEngineMode() {
+        TransferDTO transferDTO = new TransferDTO(CARD_ID, 2L, TRANSFER_AMOUNT);
+
+        when(transferProperties.getMode()).thenReturn(TransferProperties.Mode.ENGINE);
+
+        cardService.transfer(transferDTO, principal);
+
+        verify(transferEngine).transfer(CARD_ID, 2L, TRANSFER_AMOUNT, principal);
+        verify(userService, never()).requireUserByUsername(anyString());
+        verify(transferExecutor, never()).run(any(), any());
+        verify(cardRepository, never()).findByIdForUpdate(any());
+    }
+
+    @Test
+    void transferBatch_ShouldReportEngineOutcomePerItem_WhenEngineMode() {
+        BatchTransferDTO batch = new BatchTransferDTO(List.of(
+                new TransferDTO(CARD_ID, 2L, TRANSFER_AMOUNT),
+                new TransferDTO(CARD_ID, 3L, TRANSFER_AMOUNT)
+        ), false);
+
+        when(transferProperties.getMode()).thenReturn(TransferProperties.Mode.ENGINE);
+        when(transferEngine.submit(CARD_ID, 2L, TRANSFER_AMOUNT, principal))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(transferEngine.submit(CARD_ID, 3L, TRANSFER_AMOUNT, principal))
+                .thenReturn(CompletableFuture.failedFuture(new CardException("Insufficient balance on source card")));
+
+        BatchTransferResponse response = cardService.transferBatch(batch, principal);
+
+        assertEquals(1, response.succeeded());
+        assertEquals("Insufficient balance on source card", response.results().get(1).error());
+        verify(transferExecutor, never()).execute(any(), any());
+    }
+
+    @Test
+    void transferBatch_ShouldRejectIdempotencyKey_WhenEngineMode() {
+        BatchTransferDTO batch = new BatchTransferDTO(List.of(new TransferDTO(CARD_ID, 2L, TRANSFER_AMOUNT)), false);
+
+        when(transferProperties.getMode()).thenReturn(TransferProperties.Mode.ENGINE);
+        when(idempotencyService.currentClaim()).thenReturn(new IdempotencyClaim(USERNAME, "key-1", "abc"));
+
+        assertThrows(IllegalArgumentException.class, () -> cardService.transferBatch(batch, principal));
+        verify(transferEngine, never()).submit(any(), any(), any(), any());
+    }
+
+    @Test
+    void transferBatch_ShouldRejectBatch_WhenLargerThanMaxSize() {
+        TransferDTO item = new TransferDTO(CARD_ID, 2L, TRANSFER_AMOUNT);
+        BatchTransferDTO batch = new BatchTransferDTO(List.of(item, item, item, item), false);
+
+        assertThrows(IllegalArgumentException.class, () -> cardService.transferBatch(batch, principal));
+        verify(transferExecutor, never()).execute(any(), any());
+    }
+
+    @Test
+    void requestBlock_ShouldBlockCard_WhenUserIsOwnerAndCardActive() {
+        when(cardRepository.findByIdAndOwnerId(CARD_ID, USER_ID)).thenReturn(Optional.of(testCard));
         doNothing().when(validator).validateCardIsActive(testCard);
         when(validator.requireStatus("BLOCKED")).thenReturn(blockedStatus);
         when(cardRepository.save(testCard)).thenReturn(testCard);
 
-        cardService.requestBlock(CARD_ID, USERNAME);
+        cardService.requestBlock(CARD_ID, principal);
 
         assertEquals(blockedStatus, testCard.getStatus());
-        verify(cardRepository).findById(CARD_ID);
-        verify(userService).requireUserByUsername(USERNAME);
-        verify(validator).validateCardOwnership(testCard, testUser);
+        verify(cardRepository).findByIdAndOwnerId(CARD_ID, USER_ID);
+        verify(userService, never()).requireUserByUsername(anyString());
         verify(validator).validateCardIsActive(testCard);
         verify(validator).requireStatus("BLOCKED");
         verify(cardRepository).save(testCard);
@@ -353,15 +912,14 @@ class CardServiceImplTest {
         toCard.setBalance(new BigDecimal("500.00"));
         toCard.setStatus(activeStatus);
 
-        when(userService.requireUserByUsername(USERNAME)).thenReturn(testUser);
-        when(cardRepository.findById(CARD_ID)).thenReturn(Optional.of(testCard));
-        when(cardRepository.findById(2L)).thenReturn(Optional.of(toCard));
-        doNothing().when(validator).validateCardOwnership(testCard, toCard, testUser);
+        when(cardRepository.findAllByIdAndOwnerIdForUpdate(List.of(CARD_ID, 2L), USER_ID))
+                .thenReturn(List.of(testCard, toCard));
+        doNothing().when(validator).validateCardOwnership(testCard, toCard, principal);
         doNothing().when(validator).validateCardStatus(testCard, toCard);
         doThrow(new RuntimeException("Insufficient balance"))
                 .when(validator).validateSufficientBalance(testCard, new BigDecimal("2000.00"));
 
-        assertThrows(RuntimeException.class, () -> cardService.transfer(transferDTO, USERNAME));
+        assertThrows(RuntimeException.class, () -> cardService.transfer(transferDTO, principal));
         verify(validator).validateSufficientBalance(testCard, new BigDecimal("2000.00"));
         verify(cardRepository, never()).save(any(Card.class));
     }
@@ -369,14 +927,23 @@ class CardServiceImplTest {
     @Test
     void requestBlock_ShouldThrowException_WhenCardNotActive() {
         testCard.setStatus(blockedStatus);
-        when(cardRepository.findById(CARD_ID)).thenReturn(Optional.of(testCard));
-        when(userService.requireUserByUsername(USERNAME)).thenReturn(testUser);
-        doNothing().when(validator).validateCardOwnership(testCard, testUser);
+        when(cardRepository.findByIdAndOwnerId(CARD_ID, USER_ID)).thenReturn(Optional.of(testCard));
         doThrow(new RuntimeException("Card is not active"))
                 .when(validator).validateCardIsActive(testCard);
 
-        assertThrows(RuntimeException.class, () -> cardService.requestBlock(CARD_ID, USERNAME));
+        assertThrows(RuntimeException.class, () -> cardService.requestBlock(CARD_ID, principal));
         verify(validator).validateCardIsActive(testCard);
         verify(cardRepository, never()).save(any(Card.class));
     }
+
+    private static TransferOutcome outcome(Long debited, Long credited) {
+        TransferOutcome outcome = mock(TransferOutcome.class);
+        lenient().when(outcome.getDebited()).thenReturn(debited);
+        lenient().when(outcome.getCredited()).thenReturn(credited);
+        return outcome;
+    }
+
+    private TransferHistoryItem historyItem(Long id, LocalDateTime createdAt, String direction) {
+        return new TransferHistoryItem(id, CARD_ID, 2L, TRANSFER_AMOUNT, createdAt, direction);
+    }
 }
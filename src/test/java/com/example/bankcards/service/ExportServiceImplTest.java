@@ -0,0 +1,134 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.ExportFormat;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.projection.CardExportRow;
+import com.example.bankcards.repository.projection.TransferExportRow;
+import com.example.bankcards.util.CardEncryptor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ExportServiceImplTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private CardEncryptor cardEncryptor;
+
+    private ExportServiceImpl exportService;
+
+    @BeforeEach
+    void setUp() {
+        exportService = new ExportServiceImpl(cardRepository, transferRepository, cardEncryptor, new ObjectMapper());
+
+        lenient().when(cardEncryptor.maskStored(eq("4444"), any())).thenReturn("**** **** **** 4444");
+        lenient().when(cardEncryptor.maskStored(eq(null), eq("enc-2"))).thenReturn("**** **** **** 8888");
+    }
+
+    @Test
+    void exportCards_ShouldWriteMaskedCsv_AndCloseCursor() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<CardExportRow> rows = Stream.of(
+                        card(1L, "enc-1", "4444", "smith, john", "100", null),
+                        card(2L, "enc-2", null, "jane", "50", "25"))
+                .onClose(() -> closed.set(true));
+        when(cardRepository.streamAllForExport()).thenReturn(rows);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportCards(out, ExportFormat.CSV);
+
+        assertEquals(List.of(
+                        "id,cardNumber,ownerId,owner,expiryDate,status,balance",
+                        "1,**** **** **** 4444,7,\"smith, john\",2030-12-31,ACTIVE,100",
+                        "2,**** **** **** 8888,7,jane,2030-12-31,ACTIVE,75"),
+                out.toString(StandardCharsets.UTF_8).lines().toList());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void exportCards_ShouldWriteOneJsonObjectPerLine() throws Exception {
+        Stream<CardExportRow> rows = Stream.of(card(1L, "enc-1", "4444", "john", "100.50", null));
+        when(cardRepository.streamAllForExport()).thenReturn(rows);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportCards(out, ExportFormat.NDJSON);
+
+        assertEquals("""
+                {"id":1,"cardNumber":"**** **** **** 4444","ownerId":7,"owner":"john",\
+                "expiryDate":"2030-12-31","status":"ACTIVE","balance":100.50}
+                """, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportTransfers_ShouldStreamRange() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 2, 1, 0, 0);
+        TransferExportRow transfer = mock(TransferExportRow.class);
+        when(transfer.getId()).thenReturn(10L);
+        when(transfer.getFromCardId()).thenReturn(1L);
+        when(transfer.getToCardId()).thenReturn(2L);
+        when(transfer.getAmount()).thenReturn(new BigDecimal("5.00"));
+        when(transfer.getCreatedAt()).thenReturn(LocalDateTime.of(2025, 1, 15, 10, 30));
+        when(transferRepository.streamForExport(from, to)).thenReturn(Stream.of(transfer));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportTransfers(out, ExportFormat.CSV, from, to);
+
+        assertEquals(List.of("id,fromCardId,toCardId,amount,createdAt", "10,1,2,5.00,2025-01-15T10:30"),
+                out.toString(StandardCharsets.UTF_8).lines().toList());
+    }
+
+    @Test
+    void exportTransfers_ShouldReject_WhenRangeEmpty() {
+        LocalDateTime at = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> exportService.exportTransfers(new ByteArrayOutputStream(), ExportFormat.CSV, at, at));
+        verify(transferRepository, never()).streamForExport(any(), any());
+    }
+
+    private CardExportRow card(Long id, String number, String last4, String owner, String balance, String pending) {
+        CardExportRow row = mock(CardExportRow.class);
+        lenient().when(row.getId()).thenReturn(id);
+        lenient().when(row.getNumber()).thenReturn(number);
+        lenient().when(row.getLast4()).thenReturn(last4);
+        lenient().when(row.getOwnerId()).thenReturn(7L);
+        lenient().when(row.getOwner()).thenReturn(owner);
+        lenient().when(row.getExpiration()).thenReturn(Date.valueOf(LocalDate.of(2030, 12, 31)));
+        lenient().when(row.getStatus()).thenReturn("ACTIVE");
+        lenient().when(row.getBalance()).thenReturn(new BigDecimal(balance));
+        lenient().when(row.getPendingBalance()).thenReturn(pending != null ? new BigDecimal(pending) : null);
+        return row;
+    }
+}
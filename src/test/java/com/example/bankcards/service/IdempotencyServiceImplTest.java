@@ -0,0 +1,236 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferDTO;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.entity.IdempotencyKeyId;
+import com.example.bankcards.exception.IdempotencyKeyException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.util.properties.TransferProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceImplTest {
+
+    private static final String USERNAME = "testuser";
+    private static final String KEY = "key-1";
+    private static final String REDIS_KEY = "idempotency:testuser:key-1";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TransferDTO request = new TransferDTO(1L, 2L, new BigDecimal("100.00"));
+
+    private IdempotencyServiceImpl idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        idempotencyService = new IdempotencyServiceImpl(
+                redisTemplate, idempotencyKeyRepository, objectMapper, new TransferProperties());
+    }
+
+    @Test
+    void execute_ShouldRunActionDirectly_WhenNoKey() {
+        String result = idempotencyService.execute(USERNAME, null, request, String.class, () -> "done");
+
+        assertEquals("done", result);
+        verify(redisTemplate, never()).opsForValue();
+    }
+
+    @Test
+    void execute_ShouldRunOnceAndStoreResult_WhenKeyIsNew() {
+        when(valueOperations.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class))).thenReturn(true);
+        AtomicInteger runs = new AtomicInteger();
+
+        String first = idempotencyService.execute(USERNAME, KEY, request, String.class,
+                () -> "done-" + runs.incrementAndGet());
+        String second = idempotencyService.execute(USERNAME, KEY, request, String.class,
+                () -> "done-" + runs.incrementAndGet());
+
+        assertEquals("done-1", first);
+        assertEquals("done-1", second);
+        assertEquals(1, runs.get());
+        verify(valueOperations).set(eq(REDIS_KEY), anyString(), eq(Duration.ofSeconds(86400)));
+    }
+
+    @Test
+    void execute_ShouldReplayStoredResult_WhenCompletedOnAnotherNode() throws Exception {
+        String fingerprint = fingerprint();
+        String stored = objectMapper.writeValueAsString(new IdempotencyServiceImpl.IdempotencyRecord(
+                IdempotencyServiceImpl.Status.COMPLETED, fingerprint, "\"remote\""));
+        when(valueOperations.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(REDIS_KEY)).thenReturn(stored);
+
+        String result = idempotencyService.execute(USERNAME, KEY, request, String.class, () -> "local");
+
+        assertEquals("remote", result);
+    }
+
+    @Test
+    void execute_ShouldRejectKey_WhenReusedForDifferentRequest() {
+        when(valueOperations.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class))).thenReturn(true);
+        idempotencyService.execute(USERNAME, KEY, request, String.class, () -> "done");
+
+        TransferDTO other = new TransferDTO(1L, 2L, new BigDecimal("999.00"));
+
+        assertThrows(IdempotencyKeyException.class,
+                () -> idempotencyService.execute(USERNAME, KEY, other, String.class, () -> "again"));
+    }
+
+    @Test
+    void execute_ShouldReleaseKey_WhenActionFails() {
+        when(valueOperations.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class))).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute(
+                USERNAME, KEY, request, String.class, () -> {
+                    throw new IllegalStateException("boom");
+                }));
+        verify(redisTemplate).delete(REDIS_KEY);
+    }
+
+    @Test
+    void execute_ShouldKeepCommittedOutcome_WhenActionFailsAfterCommit() throws Exception {
+        when(valueOperations.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class))).thenReturn(true);
+        when(idempotencyKeyRepository.findById(new IdempotencyKeyId(USERNAME, KEY)))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(committed("\"committed\"")));
+
+        String result = idempotencyService.execute(USERNAME, KEY, request, String.class, () -> {
+            throw new IllegalStateException("failed after commit");
+        });
+
+        assertEquals("committed", result);
+        verify(redisTemplate, never()).delete(REDIS_KEY);
+        verify(valueOperations).set(eq(REDIS_KEY), anyString(), eq(Duration.ofSeconds(86400)));
+    }
+
+    @Test
+    void execute_ShouldReplayCommittedOutcome_WhenLeaseExpiredBeforeRetry() throws Exception {
+        when(valueOperations.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class))).thenReturn(true);
+        when(idempotencyKeyRepository.findById(new IdempotencyKeyId(USERNAME, KEY)))
+                .thenReturn(Optional.of(committed("\"committed\"")));
+        AtomicInteger runs = new AtomicInteger();
+
+        String result = idempotencyService.execute(USERNAME, KEY, request, String.class,
+                () -> "again-" + runs.incrementAndGet());
+
+        assertEquals("committed", result);
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void execute_ShouldExposeClaimOnlyWhileActionRuns() {
+        when(valueOperations.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class))).thenReturn(true);
+
+        IdempotencyClaim claim = idempotencyService.execute(USERNAME, KEY, request, IdempotencyClaim.class,
+                idempotencyService::currentClaim);
+
+        assertEquals(USERNAME, claim.scope());
+        assertEquals(KEY, claim.key());
+        assertNull(idempotencyService.currentClaim());
+    }
+
+    @Test
+    void execute_ShouldRunAction_WhenRedisIsDown() {
+        when(valueOperations.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        String result = idempotencyService.execute(USERNAME, KEY, request, String.class, () -> "done");
+
+        assertEquals("done", result);
+    }
+
+    @Test
+    void record_ShouldInsertOutcome() {
+        idempotencyService.record(new IdempotencyClaim(USERNAME, KEY, "abc"), "done");
+
+        verify(idempotencyKeyRepository).insert(eq(USERNAME), eq(KEY), eq("abc"), eq("\"done\""),
+                any(LocalDateTime.class));
+    }
+
+    @Test
+    void execute_ShouldCollapseConcurrentRequests_WhenSameKey() throws Exception {
+        when(valueOperations.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class))).thenReturn(true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> leader = executor.submit(() -> idempotencyService.execute(
+                    USERNAME, KEY, request, String.class, () -> {
+                        runs.incrementAndGet();
+                        started.countDown();
+                        await(release);
+                        return "done";
+                    }));
+            started.await(5, TimeUnit.SECONDS);
+            Future<String> follower = executor.submit(() -> idempotencyService.execute(
+                    USERNAME, KEY, request, String.class, () -> "again-" + runs.incrementAndGet()));
+            release.countDown();
+
+            assertEquals("done", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("done", follower.get(5, TimeUnit.SECONDS));
+            assertEquals(1, runs.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private IdempotencyKey committed(String response) throws Exception {
+        return new IdempotencyKey(new IdempotencyKeyId(USERNAME, KEY), fingerprint(), response, LocalDateTime.now());
+    }
+
+    private String fingerprint() throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(objectMapper.writeValueAsBytes(request));
+        return HexFormat.of().formatHex(digest);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
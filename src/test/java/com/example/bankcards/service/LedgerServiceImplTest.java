@@ -0,0 +1,180 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.responce.CardBalanceResponse;
+import com.example.bankcards.entity.BalanceSnapshot;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.EntryDirection;
+import com.example.bankcards.entity.JournalEntry;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.repository.BalanceSnapshotRepository;
+import com.example.bankcards.repository.JournalEntryRepository;
+import com.example.bankcards.repository.projection.LedgerMismatch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerServiceImplTest {
+
+    @Mock
+    private JournalEntryRepository journalEntryRepository;
+
+    @Mock
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private LedgerServiceImpl ledgerService;
+
+    private static final Long CARD_ID = 1L;
+    private static final LocalDateTime AS_OF = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ledgerService = new LedgerServiceImpl(
+                journalEntryRepository, balanceSnapshotRepository, meterRegistry);
+    }
+
+    @Test
+    void recordTransfer_ShouldPostDebitAndCreditLines() {
+        Card fromCard = new Card();
+        fromCard.setId(CARD_ID);
+        Card toCard = new Card();
+        toCard.setId(2L);
+        Transfer transfer = Transfer.builder()
+                .id(7L)
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .amount(new BigDecimal("100.00"))
+                .build();
+
+        ledgerService.recordTransfer(transfer);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<JournalEntry>> lines = ArgumentCaptor.forClass(List.class);
+        verify(journalEntryRepository).saveAll(lines.capture());
+        assertEquals(2, lines.getValue().size());
+        assertEquals(EntryDirection.DEBIT, lines.getValue().get(0).getDirection());
+        assertEquals(CARD_ID, lines.getValue().get(0).getCardId());
+        assertEquals(EntryDirection.CREDIT, lines.getValue().get(1).getDirection());
+        assertEquals(2L, lines.getValue().get(1).getCardId());
+        assertEquals(7L, lines.getValue().get(1).getTransferId());
+    }
+
+    @Test
+    void recordAdjustment_ShouldPostSingleDebitLine_WhenBalanceDecreases() {
+        ledgerService.recordAdjustment(CARD_ID, new BigDecimal("-50.00"));
+
+        ArgumentCaptor<JournalEntry> line = ArgumentCaptor.forClass(JournalEntry.class);
+        verify(journalEntryRepository).save(line.capture());
+        assertEquals(EntryDirection.DEBIT, line.getValue().getDirection());
+        assertEquals(new BigDecimal("50.00"), line.getValue().getAmount());
+        assertNull(line.getValue().getTransferId());
+    }
+
+    @Test
+    void recordAdjustment_ShouldSkip_WhenDeltaIsZero() {
+        ledgerService.recordAdjustment(CARD_ID, BigDecimal.ZERO);
+
+        verify(journalEntryRepository, never()).save(any());
+    }
+
+    @Test
+    void getBalanceAt_ShouldAddJournalTailToLatestSnapshot() {
+        BalanceSnapshot snapshot = BalanceSnapshot.builder()
+                .cardId(CARD_ID)
+                .journalSeq(90L)
+                .journalXmin(5000L)
+                .journalCutoff(AS_OF.minusHours(1))
+                .balance(new BigDecimal("900.00"))
+                .build();
+
+        when(journalEntryRepository.findLastSequenceForCard(CARD_ID, AS_OF)).thenReturn(Optional.of(45L));
+        when(balanceSnapshotRepository
+                .findFirstByCardIdAndJournalCutoffLessThanEqualOrderByJournalXminDesc(CARD_ID, AS_OF))
+                .thenReturn(Optional.of(snapshot));
+        when(journalEntryRepository.sumNetAmount(CARD_ID, 5000L, AS_OF)).thenReturn(new BigDecimal("-100.00"));
+
+        CardBalanceResponse response = ledgerService.getBalanceAt(CARD_ID, AS_OF);
+
+        assertEquals(new BigDecimal("800.00"), response.balance());
+        assertEquals(45L, response.journalSeq());
+    }
+
+    @Test
+    void getBalanceAt_ShouldReturnZero_WhenCardHasNoEntriesYet() {
+        when(journalEntryRepository.findLastSequenceForCard(CARD_ID, AS_OF)).thenReturn(Optional.empty());
+
+        CardBalanceResponse response = ledgerService.getBalanceAt(CARD_ID, AS_OF);
+
+        assertEquals(BigDecimal.ZERO, response.balance());
+        verify(balanceSnapshotRepository, never())
+                .findFirstByCardIdAndJournalCutoffLessThanEqualOrderByJournalXminDesc(any(), any());
+    }
+
+    @Test
+    void getBalanceAt_ShouldSumWholeJournal_WhenCardHasNoSnapshot() {
+        when(journalEntryRepository.findLastSequenceForCard(CARD_ID, AS_OF)).thenReturn(Optional.of(3L));
+        when(balanceSnapshotRepository
+                .findFirstByCardIdAndJournalCutoffLessThanEqualOrderByJournalXminDesc(CARD_ID, AS_OF))
+                .thenReturn(Optional.empty());
+        when(journalEntryRepository.sumNetAmount(CARD_ID, 0L, AS_OF)).thenReturn(new BigDecimal("250.00"));
+
+        CardBalanceResponse response = ledgerService.getBalanceAt(CARD_ID, AS_OF);
+
+        assertEquals(new BigDecimal("250.00"), response.balance());
+    }
+
+    @Test
+    void takeSnapshot_ShouldRollForwardUpToOldestRunningTransactionAndReconcile() {
+        LedgerMismatch mismatch = mock(LedgerMismatch.class);
+        when(balanceSnapshotRepository.findLatestXmin()).thenReturn(Optional.of(5000L));
+        when(journalEntryRepository.findCommittedXmin()).thenReturn(5200L);
+        when(balanceSnapshotRepository.insertSnapshots(eq(5000L), eq(5200L), any())).thenReturn(12);
+        when(balanceSnapshotRepository.findMismatches(5200L)).thenReturn(List.of(mismatch));
+
+        int cards = ledgerService.takeSnapshot();
+
+        assertEquals(12, cards);
+        assertEquals(12.0, meterRegistry.counter("ledger.snapshot.cards").count());
+        assertEquals(1.0, meterRegistry.counter("ledger.reconcile.mismatches").count());
+    }
+
+    @Test
+    void takeSnapshot_ShouldSkip_WhenNoTransactionFinishedSincePreviousSnapshot() {
+        when(balanceSnapshotRepository.findLatestXmin()).thenReturn(Optional.of(5000L));
+        when(journalEntryRepository.findCommittedXmin()).thenReturn(5000L);
+
+        assertEquals(0, ledgerService.takeSnapshot());
+        verify(balanceSnapshotRepository, never()).insertSnapshots(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void takeSnapshot_ShouldFoldWholeJournal_WhenNoSnapshotExists() {
+        when(balanceSnapshotRepository.findLatestXmin()).thenReturn(Optional.empty());
+        when(journalEntryRepository.findCommittedXmin()).thenReturn(5000L);
+        when(balanceSnapshotRepository.insertSnapshots(eq(0L), eq(5000L), any())).thenReturn(0);
+
+        assertEquals(0, ledgerService.takeSnapshot());
+        verify(balanceSnapshotRepository, never()).findMismatches(anyLong());
+    }
+}
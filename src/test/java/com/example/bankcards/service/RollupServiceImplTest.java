@@ -0,0 +1,171 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.responce.CardRollupResponse;
+import com.example.bankcards.dto.responce.RollupRebuildResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.repository.CardDailyRollupRepository;
+import com.example.bankcards.repository.projection.DailyRollupView;
+import com.example.bankcards.util.properties.RollupProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.intThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RollupServiceImplTest {
+
+    @Mock
+    private CardDailyRollupRepository rollupRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private RollupServiceImpl rollupService;
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 1, 1, 12, 0);
+    private static final LocalDate DAY = CREATED_AT.toLocalDate();
+    private static final BigDecimal AMOUNT = new BigDecimal("100.00");
+
+    @BeforeEach
+    void setUp() {
+        rollupService = new RollupServiceImpl(rollupRepository, transactionTemplate, new RollupProperties());
+
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        rollupService.shutdown();
+    }
+
+    @Test
+    void recordTransfer_ShouldUpsertLowerCardIdFirst() {
+        rollupService.recordTransfer(transfer(5L, 2L), false);
+
+        InOrder order = inOrder(rollupRepository);
+        order.verify(rollupRepository).accumulate(2L, DAY, 0, AMOUNT, 1, BigDecimal.ZERO, 0);
+        order.verify(rollupRepository).accumulate(5L, DAY, 0, BigDecimal.ZERO, 0, AMOUNT, 1);
+    }
+
+    @Test
+    void recordTransfer_ShouldSpreadInflowOverShardSlots_WhenTargetIsSharded() {
+        Transfer transfer = transfer(1L, 2L);
+        transfer.getToCard().setBalanceShards(4);
+
+        rollupService.recordTransfer(transfer, true);
+
+        verify(rollupRepository).accumulate(eq(1L), eq(DAY), eq(0), any(), anyLong(), eq(AMOUNT), eq(1L));
+        verify(rollupRepository).accumulate(eq(2L), eq(DAY),
+                intThat(slot -> slot >= 0 && slot < 4),
+                eq(AMOUNT), eq(1L), any(), anyLong());
+    }
+
+    @Test
+    void recordTransfers_ShouldWriteOneRowPerCardAndDay() {
+        rollupService.recordTransfers(List.of(transfer(1L, 2L), transfer(1L, 2L), transfer(2L, 3L)));
+
+        InOrder order = inOrder(rollupRepository);
+        order.verify(rollupRepository).accumulate(1L, DAY, 0, BigDecimal.ZERO, 0, new BigDecimal("200.00"), 2);
+        order.verify(rollupRepository).accumulate(2L, DAY, 0, new BigDecimal("200.00"), 2, AMOUNT, 1);
+        order.verify(rollupRepository).accumulate(3L, DAY, 0, AMOUNT, 1, BigDecimal.ZERO, 0);
+    }
+
+    @Test
+    void getRollups_ShouldSumDailyRows() {
+        LocalDate to = DAY.plusDays(1);
+        List<DailyRollupView> rows = List.of(
+                view(DAY, "300", 2, "100", 1),
+                view(to, "50", 1, "0", 0));
+        when(rollupRepository.findDaily(1L, DAY, to)).thenReturn(rows);
+
+        CardRollupResponse response = rollupService.getRollups(1L, DAY, to);
+
+        assertEquals(2, response.days().size());
+        assertEquals(new BigDecimal("350"), response.inflowAmount());
+        assertEquals(3, response.inflowCount());
+        assertEquals(new BigDecimal("100"), response.outflowAmount());
+        assertEquals(1, response.outflowCount());
+    }
+
+    @Test
+    void getRollups_ShouldReject_WhenRangeTooLong() {
+        assertThrows(IllegalArgumentException.class,
+                () -> rollupService.getRollups(1L, DAY, DAY.plusDays(367)));
+        verify(rollupRepository, never()).findDaily(anyLong(), any(), any());
+    }
+
+    @Test
+    void rebuild_ShouldRecomputeClosedDaysInChunks() {
+        LocalDate to = DAY.plusDays(9);
+
+        RollupRebuildResponse response = rollupService.rebuild(DAY, to);
+
+        assertEquals(2, response.chunks());
+        verify(rollupRepository, timeout(5000)).deleteDays(DAY, DAY.plusDays(7));
+        verify(rollupRepository, timeout(5000)).insertFromTransfers(
+                DAY.atStartOfDay(), DAY.plusDays(7).atStartOfDay());
+        verify(rollupRepository, timeout(5000)).deleteDays(DAY.plusDays(7), to.plusDays(1));
+        verify(rollupRepository, timeout(5000)).insertFromTransfers(
+                DAY.plusDays(7).atStartOfDay(), to.plusDays(1).atStartOfDay());
+    }
+
+    @Test
+    void rebuild_ShouldReject_WhenRangeIncludesOpenDay() {
+        LocalDate today = LocalDate.now();
+
+        assertThrows(IllegalArgumentException.class, () -> rollupService.rebuild(today.minusDays(3), today));
+        verify(transactionTemplate, never()).execute(any());
+        verify(rollupRepository, never()).deleteDays(any(), any());
+        verify(rollupRepository, never()).accumulate(anyLong(), any(), anyInt(), any(), anyLong(), any(), anyLong());
+    }
+
+    private Transfer transfer(Long fromCardId, Long toCardId) {
+        Card fromCard = new Card();
+        fromCard.setId(fromCardId);
+        Card toCard = new Card();
+        toCard.setId(toCardId);
+        return Transfer.builder()
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .amount(AMOUNT)
+                .createdAt(CREATED_AT)
+                .build();
+    }
+
+    private DailyRollupView view(LocalDate day, String inflow, long inflowCount, String outflow, long outflowCount) {
+        DailyRollupView view = mock(DailyRollupView.class);
+        when(view.getDay()).thenReturn(day);
+        when(view.getInflowAmount()).thenReturn(new BigDecimal(inflow));
+        when(view.getInflowCount()).thenReturn(inflowCount);
+        when(view.getOutflowAmount()).thenReturn(new BigDecimal(outflow));
+        when(view.getOutflowCount()).thenReturn(outflowCount);
+        return view;
+    }
+}
@@ -2,18 +2,26 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.UserDTO;
 import com.example.bankcards.dto.UserUpdateDTO;
+import com.example.bankcards.dto.responce.SliceResponse;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.TokenVersions;
+import com.example.bankcards.service.user.UserCache;
+import com.example.bankcards.util.SortCursor;
+import com.example.bankcards.util.properties.PagingProperties;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.List;
@@ -21,8 +29,10 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.never;
@@ -38,6 +48,15 @@ class UserAdminServiceImplTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private TokenVersions tokenVersions;
+
+    @Mock
+    private UserCache userCache;
+
+    @Spy
+    private PagingProperties pagingProperties = new PagingProperties();
+
     @InjectMocks
     private UserAdminServiceImpl userAdminService;
 
@@ -62,6 +81,36 @@ class UserAdminServiceImplTest {
         pageable = Pageable.ofSize(10).withPage(0);
     }
 
+    @Test
+    void scroll_ShouldReturnCursor_WhenMoreUsersFollow() {
+        User second = new User();
+        second.setId(2L);
+        when(userRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(2))).thenReturn(List.of(testUser, second));
+
+        SliceResponse<User> result = userAdminService.scroll(null, null, 1);
+
+        assertEquals(List.of(testUser), result.items());
+        assertEquals(USER_ID, SortCursor.decode(result.nextCursor(), "ID", Sort.Direction.ASC).id());
+    }
+
+    @Test
+    void scroll_ShouldSeekPastCursor_WhenSearching() {
+        String cursor = new SortCursor("ID", Sort.Direction.ASC, "5", 5L).encode();
+        when(userRepository.findByUsernameContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc("test", 5L, Limit.of(11)))
+                .thenReturn(List.of(testUser));
+
+        SliceResponse<User> result = userAdminService.scroll("test", cursor, 10);
+
+        assertEquals(List.of(testUser), result.items());
+        assertNull(result.nextCursor());
+        verify(userRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void scroll_ShouldRejectOversizedSlice() {
+        assertThrows(IllegalArgumentException.class, () -> userAdminService.scroll(null, null, 101));
+    }
+
     @Test
     void list_ShouldReturnAllUsers_WhenQueryIsNull() {
         Page<User> expectedPage = new PageImpl<>(List.of(testUser));
@@ -207,10 +256,12 @@ class UserAdminServiceImplTest {
         assertEquals(USERNAME, testUser.getUsername());
         assertEquals(ENCODED_PASSWORD, testUser.getPassword());
         assertEquals(Role.ADMIN, testUser.getRole());
+        assertEquals(1, testUser.getTokenVersion());
 
         verify(userRepository).findById(USER_ID);
         verify(passwordEncoder, never()).encode(anyString());
         verify(userRepository).save(testUser);
+        verify(tokenVersions).advance(USER_ID, 1);
     }
 
     @Test
@@ -225,10 +276,12 @@ class UserAdminServiceImplTest {
         assertEquals(USERNAME, testUser.getUsername());
         assertEquals(ENCODED_PASSWORD, testUser.getPassword());
         assertEquals(Role.USER, testUser.getRole());
+        assertEquals(0, testUser.getTokenVersion());
 
         verify(userRepository).findById(USER_ID);
         verify(passwordEncoder, never()).encode(anyString());
         verify(userRepository).save(testUser);
+        verify(tokenVersions, never()).advance(any(), anyInt());
     }
 
     @Test
@@ -278,6 +331,7 @@ class UserAdminServiceImplTest {
         verify(userRepository).findById(USER_ID);
         verify(passwordEncoder, never()).encode(anyString());
         verify(userRepository).save(testUser);
+        verify(userCache).evict(USER_ID, USERNAME, NEW_USERNAME);
     }
 
     @Test
@@ -289,6 +343,8 @@ class UserAdminServiceImplTest {
 
         verify(userRepository).findById(USER_ID);
         verify(userRepository).delete(testUser);
+        verify(userCache).evict(USER_ID, USERNAME);
+        verify(tokenVersions).revokeAll(USER_ID);
     }
 
     @Test
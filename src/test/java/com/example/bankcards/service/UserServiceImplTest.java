@@ -11,6 +11,8 @@ import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.CustomUserDetails;
 import com.example.bankcards.security.JwtUtils;
+import com.example.bankcards.security.PasswordHashing;
+import com.example.bankcards.service.user.UserCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -24,6 +26,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Optional;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -31,6 +34,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -53,6 +57,12 @@ class UserServiceImplTest {
     @Mock
     private AuthenticationManager authManager;
 
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private PasswordHashing passwordHashing;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -79,6 +89,11 @@ class UserServiceImplTest {
                 .password(ENCODED_PASSWORD)
                 .roles("USER")
                 .build();
+
+        lenient().when(userCache.findByUsername(any(), any())).thenAnswer(invocation ->
+                invocation.<Function<String, Optional<User>>>getArgument(1).apply(invocation.getArgument(0)));
+        lenient().when(userCache.findById(any(), any())).thenAnswer(invocation ->
+                invocation.<Function<Long, Optional<User>>>getArgument(1).apply(invocation.getArgument(0)));
     }
 
     @Test
@@ -103,6 +118,58 @@ class UserServiceImplTest {
         verify(jwtUtils).generateRefreshToken(userDetails);
     }
 
+    @Test
+    void login_ShouldLoadUserOnce_AndIssueTokens() {
+        when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(testUser));
+        when(passwordHashing.verify(PASSWORD, ENCODED_PASSWORD))
+                .thenReturn(new PasswordHashing.Verification(true, null));
+        when(jwtUtils.generateAccessToken(any())).thenReturn(ACCESS_TOKEN);
+        when(jwtUtils.generateRefreshToken(any())).thenReturn(REFRESH_TOKEN);
+
+        AuthResponse response = userService.login(new LoginRequest(USERNAME, PASSWORD));
+
+        assertEquals(ACCESS_TOKEN, response.accessToken());
+        assertEquals(REFRESH_TOKEN, response.refreshToken());
+        verify(userRepository).findByUsername(USERNAME);
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(userRepository, never()).replacePassword(any(), any(), any());
+    }
+
+    @Test
+    void login_ShouldThrowBadCredentials_WhenPasswordDoesNotMatch() {
+        when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(testUser));
+        when(passwordHashing.verify("wrong", ENCODED_PASSWORD))
+                .thenReturn(new PasswordHashing.Verification(false, null));
+
+        assertThrows(BadCredentialsException.class,
+                () -> userService.login(new LoginRequest(USERNAME, "wrong")));
+
+        verify(jwtUtils, never()).generateAccessToken(any());
+    }
+
+    @Test
+    void login_ShouldThrowUserNotFound_WithoutCheckingPassword() {
+        when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.empty());
+
+        assertThrows(UserNotFoundException.class,
+                () -> userService.login(new LoginRequest(USERNAME, PASSWORD)));
+
+        verify(passwordHashing, never()).verify(anyString(), anyString());
+    }
+
+    @Test
+    void login_ShouldStoreUpgradedHash_WhenCostChanged() {
+        when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(testUser));
+        when(passwordHashing.verify(PASSWORD, ENCODED_PASSWORD))
+                .thenReturn(new PasswordHashing.Verification(true, "rehashed"));
+        when(userRepository.replacePassword(USER_ID, ENCODED_PASSWORD, "rehashed")).thenReturn(1);
+
+        userService.login(new LoginRequest(USERNAME, PASSWORD));
+
+        verify(userRepository).replacePassword(USER_ID, ENCODED_PASSWORD, "rehashed");
+        verify(userCache).evict(USER_ID, USERNAME);
+    }
+
     @Test
     void refresh_ShouldReturnNewAuthResponse_WhenValidRefreshToken() {
         RefreshRequest request = new RefreshRequest(REFRESH_TOKEN);
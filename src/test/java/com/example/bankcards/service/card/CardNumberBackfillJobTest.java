@@ -0,0 +1,123 @@
+package com.example.bankcards.service.card;
+
+import com.example.bankcards.exception.EncryptionException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.projection.EncryptedCardNumber;
+import com.example.bankcards.util.CardEncryptor;
+import com.example.bankcards.util.properties.EncryptionProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CardNumberBackfillJobTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardEncryptor cardEncryptor;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private CardNumberBackfillJob job;
+
+    @BeforeEach
+    void setUp() {
+        EncryptionProperties properties = new EncryptionProperties();
+        properties.getBackfill().setBatchSize(2);
+        job = new CardNumberBackfillJob(cardRepository, cardEncryptor, properties, transactionTemplate);
+
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        lenient().when(cardEncryptor.decrypt(any())).thenAnswer(invocation ->
+                invocation.<String>getArgument(0).replace("enc-", ""));
+        lenient().when(cardEncryptor.blindIndex(any())).thenAnswer(invocation ->
+                "hash-" + invocation.getArgument(0));
+        lenient().when(cardEncryptor.lastFour(any())).thenAnswer(invocation ->
+                "000" + invocation.getArgument(0));
+    }
+
+    @Test
+    void backfillAll_ShouldWalkBatchesInIdOrder() {
+        List<EncryptedCardNumber> first = List.of(row(1L), row(2L));
+        List<EncryptedCardNumber> second = List.of(row(5L));
+        when(cardRepository.findWithoutDerivedNumber(0L, Limit.of(2))).thenReturn(first);
+        when(cardRepository.findWithoutDerivedNumber(2L, Limit.of(2))).thenReturn(second);
+        when(cardRepository.findWithoutDerivedNumber(5L, Limit.of(2))).thenReturn(List.of());
+        when(cardRepository.setNumberHash(anyLong(), any())).thenReturn(1);
+
+        int indexed = job.backfillAll();
+
+        assertEquals(3, indexed);
+        verify(cardRepository).setNumberHash(1L, "hash-1");
+        verify(cardRepository).setNumberHash(2L, "hash-2");
+        verify(cardRepository).setNumberHash(5L, "hash-5");
+        verify(cardRepository).setLast4(1L, "0001");
+        verify(cardRepository).setLast4(5L, "0005");
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
+    @Test
+    void backfillAll_ShouldSkipUndecryptableAndDuplicateRows() {
+        List<EncryptedCardNumber> rows = List.of(row(1L), row(2L));
+        when(cardRepository.findWithoutDerivedNumber(0L, Limit.of(2))).thenReturn(rows);
+        when(cardRepository.findWithoutDerivedNumber(2L, Limit.of(2))).thenReturn(List.of());
+        when(cardEncryptor.decrypt("enc-1")).thenThrow(new EncryptionException("Decryption failed"));
+        when(cardRepository.setNumberHash(2L, "hash-2")).thenReturn(0);
+
+        int indexed = job.backfillAll();
+
+        assertEquals(0, indexed);
+        verify(cardRepository, never()).setNumberHash(eq(1L), any());
+    }
+
+    @Test
+    void backfillAll_ShouldOnlyFillMissingColumns() {
+        EncryptedCardNumber indexed = row(3L);
+        when(indexed.getNumberHash()).thenReturn("hash-3");
+        List<EncryptedCardNumber> rows = List.of(indexed);
+        when(cardRepository.findWithoutDerivedNumber(0L, Limit.of(2))).thenReturn(rows);
+        when(cardRepository.findWithoutDerivedNumber(3L, Limit.of(2))).thenReturn(List.of());
+        when(cardRepository.setLast4(3L, "0003")).thenReturn(1);
+
+        assertEquals(1, job.backfillAll());
+        verify(cardRepository, never()).setNumberHash(anyLong(), any());
+    }
+
+    @Test
+    void backfill_ShouldStopQuerying_AfterCompletePass() {
+        when(cardRepository.findWithoutDerivedNumber(0L, Limit.of(2))).thenReturn(List.of());
+
+        job.backfill();
+        job.backfill();
+
+        verify(cardRepository, times(1)).findWithoutDerivedNumber(anyLong(), any());
+    }
+
+    private EncryptedCardNumber row(Long id) {
+        EncryptedCardNumber row = mock(EncryptedCardNumber.class);
+        lenient().when(row.getId()).thenReturn(id);
+        lenient().when(row.getNumber()).thenReturn("enc-" + id);
+        return row;
+    }
+}
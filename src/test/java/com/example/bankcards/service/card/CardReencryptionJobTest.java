@@ -0,0 +1,108 @@
+package com.example.bankcards.service.card;
+
+import com.example.bankcards.exception.EncryptionException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.projection.EncryptedCardNumber;
+import com.example.bankcards.util.CardEncryptor;
+import com.example.bankcards.util.properties.EncryptionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CardReencryptionJobTest {
+
+    private static final int KEY_VERSION = 2;
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardEncryptor cardEncryptor;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardReencryptionJob job;
+
+    @BeforeEach
+    void setUp() {
+        EncryptionProperties properties = new EncryptionProperties();
+        properties.getReencryption().setChunkSize(2);
+        properties.getReencryption().setWorkers(2);
+        meterRegistry = new SimpleMeterRegistry();
+        job = new CardReencryptionJob(cardRepository, cardEncryptor, properties, transactionTemplate, meterRegistry);
+
+        lenient().when(cardEncryptor.activeKeyVersion()).thenReturn(KEY_VERSION);
+        lenient().when(cardEncryptor.reencrypt(any())).thenAnswer(invocation ->
+                "v2:" + invocation.getArgument(0));
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        job.shutdown();
+    }
+
+    @Test
+    void reencryptAll_ShouldRewriteChunksInIdOrder() {
+        List<EncryptedCardNumber> first = List.of(row(1L), row(2L));
+        List<EncryptedCardNumber> second = List.of(row(7L));
+        when(cardRepository.findEncryptedWithOtherKey(KEY_VERSION, 0L, Limit.of(2))).thenReturn(first);
+        when(cardRepository.findEncryptedWithOtherKey(KEY_VERSION, 2L, Limit.of(2))).thenReturn(second);
+        when(cardRepository.findEncryptedWithOtherKey(KEY_VERSION, 7L, Limit.of(2))).thenReturn(List.of());
+        when(cardRepository.replaceNumber(anyLong(), any(), any(), eq(KEY_VERSION))).thenReturn(1);
+
+        assertEquals(3, job.reencryptAll());
+
+        verify(cardRepository).replaceNumber(1L, "old-1", "v2:old-1", KEY_VERSION);
+        verify(cardRepository).replaceNumber(2L, "old-2", "v2:old-2", KEY_VERSION);
+        verify(cardRepository).replaceNumber(7L, "old-7", "v2:old-7", KEY_VERSION);
+        verify(transactionTemplate, times(2)).execute(any());
+        assertEquals(3.0, meterRegistry.counter("encryption.reencrypt.cards").count());
+    }
+
+    @Test
+    void reencryptAll_ShouldCountConflicts_AndSkipUndecryptableRows() {
+        List<EncryptedCardNumber> rows = List.of(row(1L), row(2L));
+        when(cardRepository.findEncryptedWithOtherKey(KEY_VERSION, 0L, Limit.of(2))).thenReturn(rows);
+        when(cardRepository.findEncryptedWithOtherKey(KEY_VERSION, 2L, Limit.of(2))).thenReturn(List.of());
+        when(cardEncryptor.reencrypt("old-1")).thenThrow(new EncryptionException("Decryption failed"));
+        when(cardRepository.replaceNumber(2L, "old-2", "v2:old-2", KEY_VERSION)).thenReturn(0);
+
+        assertEquals(0, job.reencryptAll());
+
+        verify(cardRepository, never()).replaceNumber(eq(1L), any(), any(), anyInt());
+        assertEquals(1.0, meterRegistry.counter("encryption.reencrypt.conflicts").count());
+    }
+
+    private EncryptedCardNumber row(Long id) {
+        EncryptedCardNumber row = mock(EncryptedCardNumber.class);
+        lenient().when(row.getId()).thenReturn(id);
+        lenient().when(row.getNumber()).thenReturn("old-" + id);
+        return row;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.bankcards.service.card;
+
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.StatusCardException;
+import com.example.bankcards.repository.CardStatusRepository;
+import com.example.bankcards.util.properties.CardProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CardStatusRegistryTest {
+
+    @Mock
+    private CardStatusRepository cardStatusRepository;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private CardStatusRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new CardStatusRegistry(cardStatusRepository, redisTemplate, new CardProperties());
+    }
+
+    @Test
+    void require_ShouldServeLoadedStatuses_WithoutQueryingAgain() {
+        CardStatus active = new CardStatus(1L, "ACTIVE");
+        when(cardStatusRepository.findAll()).thenReturn(List.of(active, new CardStatus(2L, "BLOCKED")));
+        registry.refresh();
+
+        CardStatus first = registry.require("ACTIVE");
+        CardStatus second = registry.require("ACTIVE");
+
+        assertEquals(1L, first.getId());
+        assertNotSame(active, first);
+        assertEquals(2L, registry.requireId("BLOCKED"));
+        assertEquals(first, second);
+        verify(cardStatusRepository, times(1)).findAll();
+    }
+
+    @Test
+    void require_ShouldThrow_WhenStatusUnknown() {
+        when(cardStatusRepository.findAll()).thenReturn(List.of(new CardStatus(1L, "ACTIVE")));
+        registry.refresh();
+
+        assertThrows(StatusCardException.class, () -> registry.require("EXPIRED"));
+    }
+
+    @Test
+    void refreshEverywhere_ShouldReloadAndPublish_EvenWhenRedisIsDown() {
+        when(cardStatusRepository.findAll())
+                .thenReturn(List.of(new CardStatus(1L, "ACTIVE")))
+                .thenReturn(List.of(new CardStatus(1L, "ACTIVE"), new CardStatus(3L, "EXPIRED")));
+        registry.refresh();
+        when(redisTemplate.convertAndSend(anyString(), anyString()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        List<String> names = registry.refreshEverywhere();
+
+        assertEquals(List.of("ACTIVE", "EXPIRED"), names);
+        assertEquals(3L, registry.requireId("EXPIRED"));
+        verify(redisTemplate).convertAndSend("card-status:refresh", "refresh");
+    }
+
+    @Test
+    void onMessage_ShouldReload() {
+        when(cardStatusRepository.findAll())
+                .thenReturn(List.of())
+                .thenReturn(List.of(new CardStatus(2L, "BLOCKED")));
+        registry.refresh();
+
+        registry.onMessage(new DefaultMessage(new byte[0], new byte[0]), null);
+
+        assertEquals(2L, registry.requireId("BLOCKED"));
+    }
+}
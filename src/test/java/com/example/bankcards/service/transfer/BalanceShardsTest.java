@@ -0,0 +1,96 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.properties.TransferProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.intThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceShardsTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    private BalanceShards balanceShards;
+    private Card card;
+
+    @BeforeEach
+    void setUp() {
+        balanceShards = new BalanceShards(cardRepository, new TransferProperties());
+
+        card = new Card();
+        card.setId(1L);
+        card.setBalance(new BigDecimal("100.00"));
+        card.setBalanceShards(4);
+    }
+
+    @Test
+    void isSharded_ShouldQueryOnce_WhenCountIsCached() {
+        when(cardRepository.findBalanceShardsById(1L)).thenReturn(Optional.of(4));
+
+        assertTrue(balanceShards.isSharded(1L));
+        assertTrue(balanceShards.isSharded(1L));
+        verify(cardRepository, times(1)).findBalanceShardsById(1L);
+    }
+
+    @Test
+    void isSharded_ShouldReloadCount_WhenEvicted() {
+        when(cardRepository.findBalanceShardsById(1L)).thenReturn(Optional.of(4), Optional.of(1));
+
+        assertTrue(balanceShards.isSharded(1L));
+        balanceShards.evict(1L);
+        assertFalse(balanceShards.isSharded(1L));
+    }
+
+    @Test
+    void credit_ShouldHitOneOfTheCardShards() {
+        balanceShards.credit(card, BigDecimal.TEN);
+
+        verify(cardRepository).creditShard(eq(1L), intThat(shard -> shard >= 0 && shard < 4), eq(BigDecimal.TEN));
+    }
+
+    @Test
+    void consolidateIfShort_ShouldFoldShards_WhenCardRowCannotCoverDebit() {
+        when(cardRepository.drainShards(1L)).thenReturn(new BigDecimal("250.00"));
+
+        balanceShards.consolidateIfShort(card, new BigDecimal("300.00"));
+
+        assertEquals(new BigDecimal("350.00"), card.getBalance());
+        assertEquals(new BigDecimal("350.00"), card.getTotalBalance());
+    }
+
+    @Test
+    void consolidateIfShort_ShouldLeaveShards_WhenCardRowCoversDebit() {
+        balanceShards.consolidateIfShort(card, new BigDecimal("50.00"));
+
+        verify(cardRepository, never()).drainShards(1L);
+        assertEquals(new BigDecimal("100.00"), card.getBalance());
+    }
+
+    @Test
+    void loadPending_ShouldAddShardSumToTotal() {
+        when(cardRepository.sumShardBalances(1L)).thenReturn(new BigDecimal("40.00"));
+
+        balanceShards.loadPending(card);
+
+        assertEquals(new BigDecimal("100.00"), card.getBalance());
+        assertEquals(new BigDecimal("140.00"), card.getTotalBalance());
+    }
+}
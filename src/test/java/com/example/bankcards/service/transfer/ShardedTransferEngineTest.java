@@ -0,0 +1,314 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardException;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardStatusRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.service.IdempotencyClaim;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.RollupService;
+import com.example.bankcards.service.card.CardStatusRegistry;
+import com.example.bankcards.util.properties.CardProperties;
+import com.example.bankcards.util.properties.TransferProperties;
+import com.example.bankcards.util.validator.CardServiceValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ShardedTransferEngineTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private RollupService rollupService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private CardStatusRepository cardStatusRepository;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    private ShardedTransferEngine engine;
+    private TransferProperties transferProperties;
+    private User owner;
+    private UserPrincipal principal;
+    private CardStatus activeStatus;
+    private CardStatus blockedStatus;
+
+    private static final BigDecimal BALANCE = new BigDecimal("100.00");
+
+    @BeforeEach
+    void setUp() {
+        transferProperties = new TransferProperties();
+        transferProperties.setMode(TransferProperties.Mode.ENGINE);
+        transferProperties.getEngine().setShards(2);
+        transferProperties.getEngine().setCommitIntervalMs(1);
+        transferProperties.getEngine().setAckTimeoutMs(2000);
+
+        CardProperties cardProperties = new CardProperties();
+        cardProperties.getStatus().setActive("ACTIVE");
+
+        owner = new User();
+        owner.setId(1L);
+        principal = new UserPrincipal(1L, "owner", null, Role.USER, 0);
+        activeStatus = new CardStatus(1L, "ACTIVE");
+        blockedStatus = new CardStatus(2L, "BLOCKED");
+        lenient().when(cardStatusRepository.findAll()).thenReturn(List.of(activeStatus, blockedStatus));
+        CardStatusRegistry cardStatusRegistry = new CardStatusRegistry(cardStatusRepository, null, cardProperties);
+        cardStatusRegistry.refresh();
+
+        engine = new ShardedTransferEngine(cardRepository, transferRepository, ledgerService, rollupService,
+                idempotencyService,
+                new CardServiceValidator(cardStatusRegistry, cardProperties), transactionTemplate,
+                transferProperties, new SimpleMeterRegistry());
+
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        engine.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.stop();
+    }
+
+    @Test
+    void transfer_ShouldPersistBothDeltasInGroupCommit_WhenCardsShareShard() {
+        long[] ids = cardsOnShard(0, 2);
+        stubCard(ids[0], activeStatus);
+        stubCard(ids[1], activeStatus);
+
+        engine.transfer(ids[0], ids[1], new BigDecimal("40.00"), principal);
+
+        verify(cardRepository).addToBalanceIfCovered(ids[0], new BigDecimal("-40.00"));
+        verify(cardRepository).addToBalanceIfCovered(ids[1], new BigDecimal("40.00"));
+        verify(transferRepository).saveAll(any());
+        verify(ledgerService).recordTransfers(any());
+        verify(rollupService).recordTransfers(any());
+    }
+
+    @Test
+    void transfer_ShouldCommitOnTargetShard_WhenCardsOnDifferentShards() {
+        long from = cardsOnShard(0, 1)[0];
+        long to = cardsOnShard(1, 1)[0];
+        stubCard(from, activeStatus);
+        stubCard(to, activeStatus);
+
+        engine.transfer(from, to, BALANCE, principal);
+
+        verify(cardRepository).addToBalanceIfCovered(from, BALANCE.negate());
+        verify(cardRepository).addToBalanceIfCovered(to, BALANCE);
+    }
+
+    @Test
+    void transfer_ShouldReject_WhenCommittedBalanceIsInsufficient() {
+        long[] ids = cardsOnShard(0, 2);
+        stubCard(ids[0], activeStatus);
+        stubCard(ids[1], activeStatus);
+
+        engine.transfer(ids[0], ids[1], new BigDecimal("60.00"), principal);
+
+        assertThrows(CardException.class,
+                () -> engine.transfer(ids[0], ids[1], new BigDecimal("60.00"), principal));
+    }
+
+    @Test
+    void transfer_ShouldReleaseReservation_WhenTargetShardRejectsCredit() {
+        long from = cardsOnShard(0, 1)[0];
+        long[] targets = cardsOnShard(1, 2);
+        stubCard(from, activeStatus);
+        stubCard(targets[0], blockedStatus);
+        stubCard(targets[1], activeStatus);
+
+        CardException rejected = assertThrows(CardException.class,
+                () -> engine.transfer(from, targets[0], BALANCE, principal));
+        engine.transfer(from, targets[1], BALANCE, principal);
+
+        assertEquals("Card must be active for transfer: " + targets[0], rejected.getMessage());
+        verify(cardRepository, never()).addToBalanceIfCovered(targets[0], BALANCE);
+        verify(cardRepository).addToBalanceIfCovered(targets[1], BALANCE);
+    }
+
+    @Test
+    void transfer_ShouldFailAndReleaseReservation_WhenGroupCommitFails() {
+        long[] ids = cardsOnShard(0, 2);
+        stubCard(ids[0], activeStatus);
+        stubCard(ids[1], activeStatus);
+        doThrow(new IllegalStateException("connection lost"))
+                .doAnswer(invocation -> {
+                    invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+                    return null;
+                })
+                .when(transactionTemplate).executeWithoutResult(any());
+
+        assertThrows(TransferConflictException.class, () -> engine.transfer(ids[0], ids[1], BALANCE, principal));
+        engine.transfer(ids[0], ids[1], BALANCE, principal);
+
+        verify(cardRepository).addToBalanceIfCovered(ids[0], BALANCE.negate());
+    }
+
+    @Test
+    void transfer_ShouldFailGroupAndReloadCard_WhenStoredBalanceDoesNotCoverDebit() {
+        long[] ids = cardsOnShard(0, 2);
+        stubCard(ids[0], activeStatus);
+        stubCard(ids[1], activeStatus);
+        // another writer already spent the money this node still has cached
+        when(cardRepository.addToBalanceIfCovered(ids[0], BALANCE.negate())).thenReturn(0).thenReturn(1);
+
+        assertThrows(TransferConflictException.class, () -> engine.transfer(ids[0], ids[1], BALANCE, principal));
+        engine.transfer(ids[0], ids[1], BALANCE, principal);
+
+        verify(cardRepository, times(2)).findById(ids[0]);
+        verify(cardRepository, times(1)).addToBalanceIfCovered(ids[1], BALANCE);
+    }
+
+    @Test
+    void transfer_ShouldCommitRestOfGroup_WhenOneDebitIsNotCovered() {
+        long[] ids = cardsOnShard(0, 3);
+        stubCard(ids[0], activeStatus);
+        stubCard(ids[1], activeStatus);
+        stubCard(ids[2], activeStatus);
+        when(cardRepository.addToBalanceIfCovered(ids[0], BALANCE.negate())).thenReturn(0);
+
+        List<CompletableFuture<Void>> acks = inOneGroup(
+                () -> engine.transfer(ids[0], ids[2], BALANCE, principal),
+                () -> engine.transfer(ids[1], ids[2], BALANCE, principal));
+
+        CompletionException failure = assertThrows(CompletionException.class, acks.get(0)::join);
+        assertInstanceOf(TransferConflictException.class, failure.getCause());
+        acks.get(1).join();
+        verify(cardRepository).addToBalanceIfCovered(ids[2], BALANCE);
+        verify(cardRepository, never()).addToBalanceIfCovered(ids[2], BALANCE.add(BALANCE));
+    }
+
+    @Test
+    void transfer_ShouldCommitRestOfGroup_WhenOneIdempotencyKeyAlreadyCommitted() {
+        long[] ids = cardsOnShard(0, 3);
+        stubCard(ids[0], activeStatus);
+        stubCard(ids[1], activeStatus);
+        stubCard(ids[2], activeStatus);
+        IdempotencyClaim committed = new IdempotencyClaim("owner", "key-1", "abc");
+        IdempotencyClaim fresh = new IdempotencyClaim("owner", "key-2", "def");
+        when(idempotencyService.currentClaim()).thenReturn(committed, fresh);
+        lenient().doThrow(new DuplicateKeyException("duplicate key value violates idempotency_keys_pkey"))
+                .when(idempotencyService).record(committed, null);
+
+        List<CompletableFuture<Void>> acks = inOneGroup(
+                () -> engine.transfer(ids[0], ids[2], BALANCE, principal),
+                () -> engine.transfer(ids[1], ids[2], BALANCE, principal));
+
+        // either caller may have drawn the committed key
+        assertEquals(1, acks.stream().filter(ack -> ack.handle((ok, e) -> e != null).join()).count());
+        verify(idempotencyService, atLeastOnce()).record(fresh, null);
+        verify(cardRepository, times(2)).addToBalanceIfCovered(ids[2], BALANCE);
+    }
+
+    @Test
+    void transfer_ShouldDropLeastRecentlyUsedAccounts_WhenOverLimit() {
+        transferProperties.getEngine().setMaxCachedCards(1);
+        long[] ids = cardsOnShard(0, 2);
+        stubCard(ids[0], activeStatus);
+        stubCard(ids[1], activeStatus);
+
+        engine.transfer(ids[0], ids[1], new BigDecimal("10.00"), principal);
+        engine.transfer(ids[0], ids[1], new BigDecimal("10.00"), principal);
+
+        // the source held a reservation while the limit was enforced, so only the target was dropped
+        verify(cardRepository, times(1)).findById(ids[0]);
+        verify(cardRepository, times(2)).findById(ids[1]);
+    }
+
+    @Test
+    void transfer_ShouldRecordIdempotentOutcomeInGroupCommit() {
+        long[] ids = cardsOnShard(0, 2);
+        stubCard(ids[0], activeStatus);
+        stubCard(ids[1], activeStatus);
+        IdempotencyClaim claim = new IdempotencyClaim("owner", "key-1", "abc");
+        when(idempotencyService.currentClaim()).thenReturn(claim);
+
+        engine.transfer(ids[0], ids[1], BALANCE, principal);
+
+        verify(idempotencyService).record(claim, null);
+    }
+
+    /**
+     * Restarts the engine so that the given transfers can only commit together, as one
+     * group that fills up once all of them are applied.
+     */
+    private List<CompletableFuture<Void>> inOneGroup(Runnable... transfers) {
+        engine.stop();
+        transferProperties.getEngine().setCommitIntervalMs(60_000);
+        transferProperties.getEngine().setMaxGroupSize(transfers.length);
+        engine.start();
+        return Stream.of(transfers).map(CompletableFuture::runAsync).toList();
+    }
+
+    private void stubCard(long id, CardStatus status) {
+        Card card = new Card();
+        card.setId(id);
+        card.setOwner(owner);
+        card.setStatus(status);
+        card.setBalance(BALANCE);
+        lenient().when(cardRepository.findById(id)).thenReturn(Optional.of(card));
+        lenient().when(cardRepository.getReferenceById(id)).thenReturn(card);
+        lenient().when(cardRepository.addToBalanceIfCovered(anyLong(), any())).thenReturn(1);
+    }
+
+    private long[] cardsOnShard(int shard, int count) {
+        return LongStream.iterate(1, id -> id + 1)
+                .filter(id -> engine.shardOf(id) == shard)
+                .limit(count)
+                .toArray();
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.bankcards.service.transfer;
+
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.service.IdempotencyClaim;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.util.properties.TransferProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransferExecutorTest {
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardLockTable cardLockTable;
+    private TransferExecutor transferExecutor;
+
+    @BeforeEach
+    void setUp() {
+        TransferProperties properties = new TransferProperties();
+        properties.setMode(TransferProperties.Mode.OPTIMISTIC);
+        properties.getRetry().setMaxAttempts(3);
+        properties.getRetry().setInitialBackoffMs(1);
+        properties.getRetry().setMaxBackoffMs(2);
+        properties.getLock().setTimeoutMs(100);
+
+        meterRegistry = new SimpleMeterRegistry();
+        cardLockTable = new CardLockTable(properties);
+        transferExecutor = new TransferExecutor(
+                cardLockTable, transactionTemplate, properties, idempotencyService, meterRegistry);
+
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void runWithRetry_ShouldRetryInNewTransaction_WhenVersionConflicts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        transferExecutor.runWithRetry(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Card", 1L);
+            }
+        });
+
+        assertEquals(3, attempts.get());
+        assertEquals(2.0, meterRegistry.counter("transfer.optimistic.retries").count());
+        assertEquals(0.0, meterRegistry.counter("transfer.optimistic.exhausted").count());
+    }
+
+    @Test
+    void runWithRetry_ShouldGiveUp_WhenAttemptsExhausted() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(TransferConflictException.class, () -> transferExecutor.runWithRetry(() -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Card", 1L);
+        }));
+
+        assertEquals(3, attempts.get());
+        assertEquals(1.0, meterRegistry.counter("transfer.optimistic.exhausted").count());
+    }
+
+    @Test
+    void runWithRetry_ShouldNotRetry_WhenBusinessRuleFails() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> transferExecutor.runWithRetry(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Insufficient balance");
+        }));
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void run_ShouldReleaseStripes_WhenWorkFails() throws Exception {
+        assertThrows(IllegalStateException.class, () -> transferExecutor.run(List.of(1L, 2L), () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        CompletableFuture.runAsync(() -> cardLockTable.acquire(2L, 1L).close())
+                .get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void execute_ShouldRecordIdempotentOutcomeInsideTransaction() {
+        IdempotencyClaim claim = new IdempotencyClaim("user", "key-1", "abc");
+        when(idempotencyService.currentClaim()).thenReturn(claim);
+
+        String result = transferExecutor.execute(List.of(1L, 2L), () -> "done");
+
+        assertEquals("done", result);
+        verify(idempotencyService).record(claim, "done");
+    }
+
+    @Test
+    void execute_ShouldNotRecordOutcome_WhenWorkFails() {
+        assertThrows(IllegalStateException.class, () -> transferExecutor.execute(List.of(1L), () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        verify(idempotencyService, never()).record(any(), any());
+    }
+}
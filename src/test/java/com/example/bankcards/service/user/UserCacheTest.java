@@ -0,0 +1,209 @@
+package com.example.bankcards.service.user;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.util.properties.UserCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserCacheTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private MeterRegistry meterRegistry;
+    private UserCache userCache;
+
+    private static final Long USER_ID = 7L;
+    private static final String USERNAME = "alice|admin";
+    private static final String ID_KEY = "user:v2:id:" + USER_ID;
+    private static final String NAME_KEY = "user:v2:name:" + USERNAME;
+    private static final String ID_GENERATION_KEY = "user:v2:gen:" + ID_KEY;
+    private static final String NAME_GENERATION_KEY = "user:v2:gen:" + NAME_KEY;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userCache = new UserCache(redisTemplate, new UserCacheProperties(), meterRegistry);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void findByUsername_ShouldServeSecondLookupFromLocalTier() {
+        when(valueOperations.multiGet(List.of(NAME_KEY, NAME_GENERATION_KEY))).thenReturn(Arrays.asList(null, null));
+        when(redisTemplate.execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), any(), any(), any()))
+                .thenReturn(1L);
+        AtomicInteger loads = new AtomicInteger();
+        User user = user();
+
+        User first = userCache.findByUsername(USERNAME, name -> {
+            loads.incrementAndGet();
+            return Optional.of(user);
+        }).orElseThrow();
+        User second = userCache.findByUsername(USERNAME, name -> Optional.empty()).orElseThrow();
+
+        assertEquals(1, loads.get());
+        assertNotSame(first, second);
+        assertEquals(USERNAME, second.getUsername());
+        assertEquals(Role.ADMIN, second.getRole());
+        assertEquals(3, second.getTokenVersion());
+        verify(redisTemplate).execute(ArgumentMatchers.<RedisScript<Long>>any(),
+                eq(List.of(NAME_KEY, NAME_GENERATION_KEY)), eq(""), eq(UserCache.encode(user)), eq("600"));
+        assertEquals(1.0, count("local", "hit"));
+        assertEquals(1.0, count("redis", "miss"));
+    }
+
+    @Test
+    void findById_ShouldUseRedisValue_WithoutCallingLoader() {
+        when(valueOperations.multiGet(List.of(ID_KEY, ID_GENERATION_KEY)))
+                .thenReturn(Arrays.asList(UserCache.encode(user()), "2"));
+
+        User result = userCache.findById(USER_ID, id -> {
+            throw new AssertionError("loader must not be called");
+        }).orElseThrow();
+
+        assertEquals(USER_ID, result.getId());
+        assertEquals(USERNAME, result.getUsername());
+        assertNull(result.getPassword());
+        assertEquals(1.0, count("redis", "hit"));
+    }
+
+    @Test
+    void findById_ShouldFallBackToLoader_WhenRedisIsDown() {
+        when(valueOperations.multiGet(anyList())).thenThrow(new RedisConnectionFailureException("down"));
+
+        Optional<User> result = userCache.findById(USER_ID, id -> Optional.of(user()));
+
+        assertTrue(result.isPresent());
+    }
+
+    @Test
+    void findById_ShouldNotCacheLoadedRow_WhenGenerationMovedDuringLoad() {
+        when(valueOperations.multiGet(List.of(ID_KEY, ID_GENERATION_KEY))).thenReturn(Arrays.asList(null, "4"));
+        // another node evicted between the read and the write-back
+        when(redisTemplate.execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), any(), any(), any()))
+                .thenReturn(0L);
+        AtomicInteger loads = new AtomicInteger();
+
+        userCache.findById(USER_ID, id -> {
+            loads.incrementAndGet();
+            return Optional.of(user());
+        });
+        userCache.findById(USER_ID, id -> {
+            loads.incrementAndGet();
+            return Optional.of(user());
+        });
+
+        assertEquals(2, loads.get());
+        verify(redisTemplate, times(2)).execute(ArgumentMatchers.<RedisScript<Long>>any(),
+                eq(List.of(ID_KEY, ID_GENERATION_KEY)), eq("4"), anyString(), eq("600"));
+    }
+
+    @Test
+    void findById_ShouldNotCacheLocally_WhenEvictedDuringLoad_AndRedisIsDown() {
+        when(valueOperations.multiGet(anyList())).thenThrow(new RedisConnectionFailureException("down"));
+        byte[] body = String.valueOf(USER_ID).getBytes(StandardCharsets.UTF_8);
+        AtomicInteger loads = new AtomicInteger();
+
+        userCache.findById(USER_ID, id -> {
+            loads.incrementAndGet();
+            userCache.onMessage(new DefaultMessage("user-cache:evict".getBytes(StandardCharsets.UTF_8), body), null);
+            return Optional.of(user());
+        });
+        userCache.findById(USER_ID, id -> {
+            loads.incrementAndGet();
+            return Optional.of(user());
+        });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void evict_ShouldDropBothTiersBumpGenerationsAndBroadcast() {
+        when(valueOperations.multiGet(List.of(ID_KEY, ID_GENERATION_KEY))).thenReturn(Arrays.asList(null, null));
+        when(redisTemplate.execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), any(), any(), any()))
+                .thenReturn(1L);
+        userCache.findById(USER_ID, id -> Optional.of(user()));
+
+        userCache.evict(USER_ID, USERNAME, "bob");
+        userCache.findById(USER_ID, id -> Optional.of(user()));
+
+        verify(redisTemplate).execute(ArgumentMatchers.<RedisScript<Long>>any(), eq(List.of(
+                ID_KEY, NAME_KEY, "user:v2:name:bob",
+                ID_GENERATION_KEY, NAME_GENERATION_KEY, "user:v2:gen:user:v2:name:bob")), eq("600"));
+        verify(redisTemplate).convertAndSend("user-cache:evict", USER_ID + "\n" + USERNAME + "\nbob");
+        verify(valueOperations, times(2)).multiGet(List.of(ID_KEY, ID_GENERATION_KEY));
+    }
+
+    @Test
+    void onMessage_ShouldDropLocalEntries() {
+        when(valueOperations.multiGet(List.of(NAME_KEY, NAME_GENERATION_KEY))).thenReturn(Arrays.asList(null, null));
+        when(redisTemplate.execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), any(), any(), any()))
+                .thenReturn(1L);
+        userCache.findByUsername(USERNAME, name -> Optional.of(user()));
+
+        byte[] body = (USER_ID + "\n" + USERNAME).getBytes(StandardCharsets.UTF_8);
+        userCache.onMessage(new DefaultMessage("user-cache:evict".getBytes(StandardCharsets.UTF_8), body), null);
+        userCache.findByUsername(USERNAME, name -> Optional.of(user()));
+
+        verify(valueOperations, times(2)).multiGet(List.of(NAME_KEY, NAME_GENERATION_KEY));
+    }
+
+    @Test
+    void encode_ShouldLeaveOutPasswordHash() {
+        User decoded = UserCache.decode(UserCache.encode(user()));
+
+        assertFalse(UserCache.encode(user()).contains("hash"));
+        assertNull(decoded.getPassword());
+        assertEquals(USERNAME, decoded.getUsername());
+    }
+
+    private User user() {
+        return User.builder()
+                .id(USER_ID)
+                .username(USERNAME)
+                .password("hash")
+                .role(Role.ADMIN)
+                .tokenVersion(3)
+                .build();
+    }
+
+    private double count(String tier, String result) {
+        return meterRegistry.get("user.cache.gets").tag("tier", tier).tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.EncryptionException;
+import com.example.bankcards.util.properties.EncryptionProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardEncryptorTest {
+
+    private static final String KEY = "0123456789abcdef";
+    private static final String NUMBER = "4111111111111111";
+
+    private CardEncryptor cardEncryptor;
+
+    @BeforeEach
+    void setUp() {
+        cardEncryptor = new CardEncryptor(properties(Map.of(), 0));
+    }
+
+    @Test
+    void encrypt_ShouldRoundTrip_WithFreshIvPerCall() {
+        String first = cardEncryptor.encrypt(NUMBER);
+        String second = cardEncryptor.encrypt(NUMBER);
+
+        assertNotEquals(first, second);
+        assertEquals(NUMBER, cardEncryptor.decrypt(first));
+        assertEquals(NUMBER, cardEncryptor.decrypt(second));
+    }
+
+    @Test
+    void encrypt_ShouldRoundTrip_ForEveryBase64PaddingLength() {
+        for (String value : List.of("", "1", "12", "123", "ключ", NUMBER)) {
+            assertEquals(value, cardEncryptor.decrypt(cardEncryptor.encrypt(value)));
+        }
+    }
+
+    @Test
+    void encrypt_ShouldProduceStoredFormat_ReadableByPlainJce() throws Exception {
+        byte[] sealed = Base64.getDecoder().decode(cardEncryptor.encrypt(NUMBER));
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(KEY.getBytes(StandardCharsets.UTF_8), "AES"),
+                new GCMParameterSpec(128, sealed, 0, 12));
+
+        assertEquals(NUMBER, new String(cipher.doFinal(sealed, 12, sealed.length - 12), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void decrypt_ShouldReadStoredFormat_WrittenByPlainJce() throws Exception {
+        byte[] iv = new byte[12];
+        Arrays.fill(iv, (byte) 7);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(KEY.getBytes(StandardCharsets.UTF_8), "AES"),
+                new GCMParameterSpec(128, iv));
+        byte[] encrypted = cipher.doFinal(NUMBER.getBytes(StandardCharsets.UTF_8));
+        byte[] sealed = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, sealed, 0, iv.length);
+        System.arraycopy(encrypted, 0, sealed, iv.length, encrypted.length);
+
+        assertEquals(NUMBER, cardEncryptor.decrypt(Base64.getEncoder().encodeToString(sealed)));
+    }
+
+    @Test
+    void decrypt_ShouldFail_WhenCiphertextTampered() {
+        char[] encrypted = cardEncryptor.encrypt(NUMBER).toCharArray();
+        encrypted[20] = encrypted[20] == 'A' ? 'B' : 'A';
+
+        assertThrows(EncryptionException.class, () -> cardEncryptor.decrypt(new String(encrypted)));
+        assertThrows(EncryptionException.class, () -> cardEncryptor.decrypt("not base64!"));
+    }
+
+    @Test
+    void byteBufferPaths_ShouldRoundTrip() {
+        ByteBuffer sealed = ByteBuffer.allocateDirect(64);
+        int sealedLength = cardEncryptor.encrypt(ByteBuffer.wrap(NUMBER.getBytes(StandardCharsets.UTF_8)), sealed);
+        ByteBuffer plain = ByteBuffer.allocate(64);
+
+        int plainLength = cardEncryptor.decrypt(cardEncryptor.activeKeyVersion(), sealed.flip(), plain);
+
+        assertEquals(12 + NUMBER.length() + 16, sealedLength);
+        assertEquals(NUMBER, new String(plain.array(), 0, plainLength, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void blindIndex_ShouldBeDeterministicHmacOfNumber() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("fedcba9876543210fedcba9876543210".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        String expected = HexFormat.of().formatHex(mac.doFinal(NUMBER.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(expected, cardEncryptor.blindIndex(NUMBER));
+        assertEquals(cardEncryptor.blindIndex(NUMBER), cardEncryptor.blindIndex(NUMBER));
+        assertNotEquals(cardEncryptor.blindIndex(NUMBER), cardEncryptor.blindIndex("4111111111111112"));
+    }
+
+    @Test
+    void constructor_ShouldReject_WhenIndexKeyEqualsEncryptionKey() {
+        EncryptionProperties properties = properties(Map.of(), 0);
+        properties.setIndexKey(KEY);
+
+        assertThrows(EncryptionException.class, () -> new CardEncryptor(properties));
+    }
+
+    @Test
+    void maskCardNumber_ShouldShowLastFourDigits_OrMaskOnFailure() {
+        assertEquals("**** **** **** 1111", cardEncryptor.maskCardNumber(cardEncryptor.encrypt(NUMBER)));
+        assertEquals("**** **** **** ****", cardEncryptor.maskCardNumber("broken"));
+    }
+
+    @Test
+    void maskCard_ShouldUseStoredLastFour_WithoutDecrypting() {
+        Card card = Card.builder().number("not decryptable").last4("4242").build();
+
+        assertEquals("**** **** **** 4242", cardEncryptor.maskCard(card));
+    }
+
+    @Test
+    void maskCard_ShouldDecrypt_WhenLastFourNotBackfilled() {
+        Card card = Card.builder().number(cardEncryptor.encrypt(NUMBER)).build();
+
+        assertEquals("**** **** **** 1111", cardEncryptor.maskCard(card));
+    }
+
+    @Test
+    void decrypt_ShouldReadEveryKeyVersion_AfterRotation() {
+        String legacy = cardEncryptor.encrypt(NUMBER);
+        CardEncryptor rotated = new CardEncryptor(properties(Map.of(1, "1111222233334444"), 1));
+        String current = rotated.encrypt(NUMBER);
+
+        assertEquals(0, rotated.keyVersion(legacy));
+        assertEquals(1, rotated.keyVersion(current));
+        assertTrue(current.startsWith("v1:"));
+        assertEquals(NUMBER, rotated.decrypt(legacy));
+        assertEquals(NUMBER, rotated.decrypt(current));
+        assertEquals(1, rotated.keyVersion(rotated.reencrypt(legacy)));
+        assertThrows(EncryptionException.class, () -> cardEncryptor.decrypt(current));
+    }
+
+    @Test
+    void byteBufferDecrypt_ShouldUseGivenKeyVersion_AfterRotation() {
+        ByteBuffer sealed = ByteBuffer.allocate(64);
+        cardEncryptor.encrypt(ByteBuffer.wrap(NUMBER.getBytes(StandardCharsets.UTF_8)), sealed);
+        CardEncryptor rotated = new CardEncryptor(properties(Map.of(1, "1111222233334444"), 1));
+        ByteBuffer plain = ByteBuffer.allocate(64);
+
+        int plainLength = rotated.decrypt(0, sealed.flip(), plain);
+
+        assertEquals(NUMBER, new String(plain.array(), 0, plainLength, StandardCharsets.UTF_8));
+        assertThrows(EncryptionException.class, () -> rotated.decrypt(1, sealed.rewind(), plain.clear()));
+    }
+
+    @Test
+    void constructor_ShouldReject_WhenActiveKeyVersionUnknown() {
+        assertThrows(EncryptionException.class, () -> new CardEncryptor(properties(Map.of(), 2)));
+    }
+
+    @Test
+    void encrypt_ShouldBeSafeAcrossThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String number = "400000000000" + (1000 + i);
+                tasks.add(() -> {
+                    for (int j = 0; j < 200; j++) {
+                        if (!number.equals(cardEncryptor.decrypt(cardEncryptor.encrypt(number)))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                });
+            }
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                assertEquals(true, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static EncryptionProperties properties(Map<Integer, String> keyring, int activeKeyVersion) {
+        EncryptionProperties properties = new EncryptionProperties();
+        properties.setKey(KEY);
+        properties.setKeyring(keyring);
+        properties.setActiveKeyVersion(activeKeyVersion);
+        properties.setAlgorithm("AES/GCM/NoPadding");
+        properties.setIvLength(12);
+        properties.setTagLength(16);
+        properties.setCharset("UTF-8");
+        properties.setMaskingPattern("**** **** **** %s");
+        properties.setIndexKey("fedcba9876543210fedcba9876543210");
+        return properties;
+    }
+}